@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.annotations.Beta;
+import com.google.common.io.ByteSource;
+
+/**
+ * Table-driven binary to text encodings for byte strings and byte sources. Besides returning
+ * strings, every encoding may write into caller-provided character arrays, appendables and byte
+ * buffers without intermediate copies, and may encode large sources as a stream. Decoding is
+ * case-insensitive for base 16 and base 32, and accepts missing padding.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class ByteEncoding {
+	/** Padding character. */
+	private static final char PAD = '=';
+	/** Size of the temporary character buffers. */
+	private static final int BUFFER_SIZE = 960;
+
+	/** Lowercase base 16. */
+	private static final ByteEncoding BASE16 = new ByteEncoding("hexadecimal", "0123456789abcdef", 1, false, true);
+	/** Uppercase base 16. */
+	private static final ByteEncoding BASE16_UPPER = new ByteEncoding("hexadecimal", "0123456789ABCDEF", 1, false,
+			true);
+	/** Base 32 (RFC 4648). */
+	private static final ByteEncoding BASE32 = new ByteEncoding("base32", "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567", 5, true,
+			true);
+	/** Base 64 (RFC 4648). */
+	private static final ByteEncoding BASE64 = new ByteEncoding("base64",
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", 3, true, false);
+	/** URL and filename safe base 64 (RFC 4648). */
+	private static final ByteEncoding BASE64_URL = new ByteEncoding("base64",
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", 3, true, false);
+
+	/** Lowercase base 16 (hexadecimal) encoding. */
+	public static ByteEncoding base16() {
+		return BASE16;
+	}
+
+	/** Uppercase base 16 (hexadecimal) encoding. */
+	public static ByteEncoding base16Upper() {
+		return BASE16_UPPER;
+	}
+
+	/** Base 32 encoding, as specified by RFC 4648. */
+	public static ByteEncoding base32() {
+		return BASE32;
+	}
+
+	/** Base 64 encoding, as specified by RFC 4648. */
+	public static ByteEncoding base64() {
+		return BASE64;
+	}
+
+	/** URL and filename safe base 64 encoding, as specified by RFC 4648. */
+	public static ByteEncoding base64Url() {
+		return BASE64_URL;
+	}
+
+	/** Encoding name, used in error messages. */
+	private final String name;
+	/** Encoding alphabet. */
+	private final char[] alphabet;
+	/** Decoding table for ASCII characters, with -1 for characters not in the alphabet. */
+	private final byte[] values;
+	/** Bits per character. */
+	private final int bits;
+	/** Bytes per block. */
+	private final int blockBytes;
+	/** Characters per block. */
+	private final int blockChars;
+	/** Whether incomplete blocks are padded. */
+	private final boolean padding;
+
+	/** Constructor. */
+	private ByteEncoding(String name, String alphabet, int blockBytes, boolean padding, boolean caseInsensitive) {
+		this.name = name;
+		this.alphabet = alphabet.toCharArray();
+		this.bits = Integer.numberOfTrailingZeros(this.alphabet.length);
+		this.blockBytes = blockBytes;
+		this.blockChars = blockBytes * 8 / bits;
+		this.padding = padding;
+		this.values = new byte[128];
+		Arrays.fill(values, (byte) -1);
+		for (int i = 0; i < this.alphabet.length; i++) {
+			final char c = this.alphabet[i];
+			values[c] = (byte) i;
+			if (caseInsensitive) {
+				values[Character.toLowerCase(c)] = (byte) i;
+				values[Character.toUpperCase(c)] = (byte) i;
+			}
+		}
+	}
+
+	/** Returns the number of characters needed to encode the provided number of bytes. */
+	public int encodedLength(int bytes) {
+		checkArgument(bytes >= 0, "The number of bytes must be >= 0");
+		final long blocks = bytes / blockBytes;
+		final int remainder = bytes % blockBytes;
+		long n = blocks * blockChars;
+		if (remainder > 0) {
+			n += padding ? blockChars : (remainder * 8 + bits - 1) / bits;
+		}
+		checkArgument(n <= Integer.MAX_VALUE, "Too many bytes to encode");
+		return (int) n;
+	}
+
+	/**
+	 * Encodes a range of bytes into a character array.
+	 * @param bytes Bytes to encode.
+	 * @param offset Offset of the first byte to encode.
+	 * @param length Number of bytes to encode.
+	 * @param target Target array.
+	 * @param targetOffset Offset of the first character to write.
+	 * @return The number of characters written.
+	 * @throws IndexOutOfBoundsException if any of the ranges is not valid.
+	 */
+	public int encode(byte[] bytes, int offset, int length, char[] target, int targetOffset) {
+		checkRange(offset, length, bytes.length);
+		final int n = encodedLength(length);
+		checkRange(targetOffset, n, target.length);
+		final char[] a = alphabet;
+		final int end = offset + length;
+		int j = targetOffset;
+		if (bits == 4) {
+			for (int i = offset; i < end; i++) {
+				final int b = bytes[i];
+				target[j++] = a[(b >> 4) & 0x0F];
+				target[j++] = a[b & 0x0F];
+			}
+			return n;
+		}
+		final int mask = a.length - 1;
+		final int blockBits = blockBytes * 8;
+		for (int i = offset; i < end;) {
+			final int k = Math.min(blockBytes, end - i);
+			long block = 0L;
+			for (int p = 0; p < blockBytes; p++) {
+				block = (block << 8) | (p < k ? bytes[i + p] & 0xFF : 0);
+			}
+			i += k;
+			final int used = (k * 8 + bits - 1) / bits;
+			for (int c = 0; c < used; c++) {
+				target[j++] = a[(int) (block >>> (blockBits - (c + 1) * bits)) & mask];
+			}
+			if (used < blockChars && padding) {
+				for (int c = used; c < blockChars; c++) {
+					target[j++] = PAD;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Encodes a byte string into a character array.
+	 * @return The number of characters written.
+	 * @throws IndexOutOfBoundsException if the encoded value does not fit in the target array.
+	 */
+	public int encode(ByteString value, char[] target, int targetOffset) {
+		return encode(value.array(), value.arrayOffset(), value.size(), target, targetOffset);
+	}
+
+	/** Encodes a range of bytes into a string. */
+	public String encode(byte[] bytes, int offset, int length) {
+		final char[] chars = new char[encodedLength(length)];
+		encode(bytes, offset, length, chars, 0);
+		return new String(chars);
+	}
+
+	/** Encodes a byte array into a string. */
+	public String encode(byte[] bytes) {
+		return encode(bytes, 0, bytes.length);
+	}
+
+	/** Encodes a byte string into a string. */
+	public String encode(ByteString value) {
+		return encode(value.array(), value.arrayOffset(), value.size());
+	}
+
+	/**
+	 * Encodes the remaining bytes of a buffer into a string. The buffer position is not modified.
+	 * Direct buffers are encoded in blocks through a temporary array.
+	 */
+	public String encode(ByteBuffer bytes) {
+		final ByteBuffer b = checkNotNull(bytes, "The buffer to encode must be provided").duplicate();
+		if (b.hasArray()) {
+			return encode(b.array(), b.arrayOffset() + b.position(), b.remaining());
+		}
+		final char[] chars = new char[encodedLength(b.remaining())];
+		final byte[] block = new byte[Math.min(step(), b.remaining())];
+		int j = 0;
+		while (b.hasRemaining()) {
+			final int n = Math.min(block.length, b.remaining());
+			b.get(block, 0, n);
+			j += encode(block, 0, n, chars, j);
+		}
+		return new String(chars);
+	}
+
+	/** Checks a range of an array, without overflowing if the range is too long. */
+	private static void checkRange(int offset, int length, int size) {
+		checkPositionIndex(offset, size, "offset");
+		checkPositionIndex(length, size - offset, "length");
+	}
+
+	/** Returns the number of bytes encoded in each step of a buffered operation. */
+	private int step() {
+		return BUFFER_SIZE / blockChars * blockBytes;
+	}
+
+	/** Appends a range of characters to an appendable. */
+	private static void append(Appendable target, char[] chars, int n) throws IOException {
+		if (target instanceof StringBuilder) {
+			((StringBuilder) target).append(chars, 0, n);
+		} else if (target instanceof Writer) {
+			((Writer) target).write(chars, 0, n);
+		} else {
+			target.append(CharBuffer.wrap(chars, 0, n));
+		}
+	}
+
+	/** Encodes a range of bytes into an appendable. */
+	public void encode(byte[] bytes, int offset, int length, Appendable target) throws IOException {
+		checkRange(offset, length, bytes.length);
+		checkNotNull(target, "The target appendable must be provided");
+		final char[] buffer = new char[BUFFER_SIZE];
+		final int step = step();
+		final int end = offset + length;
+		for (int i = offset; i < end; i += step) {
+			append(target, buffer, encode(bytes, i, Math.min(step, end - i), buffer, 0));
+		}
+	}
+
+	/** Encodes a byte string into an appendable. */
+	public void encode(ByteString value, Appendable target) throws IOException {
+		encode(value.array(), value.arrayOffset(), value.size(), target);
+	}
+
+	/**
+	 * Encodes a byte string into a byte buffer, as ASCII characters.
+	 * @throws BufferOverflowException if there is not enough room in the buffer.
+	 */
+	public void encode(ByteString value, ByteBuffer target) {
+		checkNotNull(target, "The target buffer must be provided");
+		final byte[] bytes = value.array();
+		final char[] buffer = new char[BUFFER_SIZE];
+		final int step = step();
+		final int end = value.arrayOffset() + value.size();
+		if (target.remaining() < encodedLength(value.size())) {
+			throw new BufferOverflowException();
+		}
+		for (int i = value.arrayOffset(); i < end; i += step) {
+			final int n = encode(bytes, i, Math.min(step, end - i), buffer, 0);
+			for (int j = 0; j < n; j++) {
+				target.put((byte) buffer[j]);
+			}
+		}
+	}
+
+	/**
+	 * Returns an output stream that encodes the bytes written to it into an appendable. Bytes are
+	 * buffered and encoded in blocks, and the last incomplete block is written when the stream is
+	 * closed. Closing the stream does not close the target, but flushes it if it is
+	 * {@link Flushable}.
+	 */
+	public OutputStream encodingStream(Appendable target) {
+		return new EncodingOutputStream(checkNotNull(target, "The target appendable must be provided"));
+	}
+
+	/**
+	 * Encodes the contents of a byte source into an appendable, as a stream.
+	 * @return The number of bytes encoded.
+	 */
+	public long encode(ByteSource source, Appendable target) throws IOException {
+		checkNotNull(source, "The byte source must be provided");
+		final OutputStream os = encodingStream(target);
+		final long n = source.copyTo(os);
+		os.close();
+		return n;
+	}
+
+	/**
+	 * Decodes a range of characters.
+	 * @throws IllegalArgumentException if the characters are not a valid encoded value.
+	 */
+	private byte[] decode(CharSequence chars, char[] array, int start, int end) {
+		if (padding) {
+			while (end > start && charAt(chars, array, end - 1) == PAD) {
+				end--;
+			}
+		}
+		final int n = end - start;
+		final int remainder = n % blockChars;
+		if (bits == 4) {
+			checkArgument(remainder == 0, "Odd number of characters.");
+		} else {
+			final int bytes = remainder * bits / 8;
+			checkArgument(remainder == 0 || (bytes > 0 && (bytes * 8 + bits - 1) / bits == remainder),
+					"Invalid %s length %s", name, n);
+		}
+		final byte[] out = new byte[(int) ((long) n * bits / 8)];
+		final byte[] v = values;
+		int o = 0;
+		int buffered = 0;
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			final char c = charAt(chars, array, i);
+			final int d = c < 128 ? v[c] : -1;
+			if (d < 0) {
+				throw new IllegalArgumentException("Illegal " + name + " character " + c + " at index " + (i - start));
+			}
+			buffered = (buffered << bits) | d;
+			count += bits;
+			if (count >= 8) {
+				count -= 8;
+				out[o++] = (byte) (buffered >>> count);
+				buffered &= (1 << count) - 1;
+			}
+		}
+		return out;
+	}
+
+	/** Returns a character from either a sequence or an array. */
+	private static char charAt(CharSequence chars, char[] array, int index) {
+		return array != null ? array[index] : chars.charAt(index);
+	}
+
+	/**
+	 * Decodes a character sequence.
+	 * @throws IllegalArgumentException if the characters are not a valid encoded value.
+	 */
+	public ByteString decode(CharSequence chars) {
+		checkNotNull(chars, "The characters to decode must be provided");
+		return ByteString.wrap(decode(chars, null, 0, chars.length()));
+	}
+
+	/**
+	 * Decodes a range of a character array.
+	 * @throws IllegalArgumentException if the characters are not a valid encoded value.
+	 */
+	public ByteString decode(char[] chars, int offset, int length) {
+		checkNotNull(chars, "The characters to decode must be provided");
+		checkRange(offset, length, chars.length);
+		return ByteString.wrap(decode(null, chars, offset, offset + length));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ByteEncoding(%s)", new String(alphabet));
+	}
+
+	/** Encoding output stream. */
+	private final class EncodingOutputStream extends OutputStream {
+		/** Target. */
+		private final Appendable target;
+		/** Pending bytes. */
+		private final byte[] pending = new byte[step()];
+		/** Encoded characters. */
+		private final char[] buffer = new char[BUFFER_SIZE];
+		/** Number of pending bytes. */
+		private int count = 0;
+		/** Whether the stream is closed. */
+		private boolean closed = false;
+
+		/** Constructor. */
+		EncodingOutputStream(Appendable target) {
+			this.target = target;
+		}
+
+		/** Encodes the pending bytes. */
+		private void encodePending() throws IOException {
+			if (count > 0) {
+				append(target, buffer, encode(pending, 0, count, buffer, 0));
+				count = 0;
+			}
+		}
+
+		/** Checks the stream is open. */
+		private void ensureOpen() throws IOException {
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			ensureOpen();
+			pending[count++] = (byte) b;
+			if (count == pending.length) {
+				encodePending();
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkRange(off, len, b.length);
+			ensureOpen();
+			while (len > 0) {
+				final int n = Math.min(len, pending.length - count);
+				System.arraycopy(b, off, pending, count, n);
+				count += n;
+				off += n;
+				len -= n;
+				if (count == pending.length) {
+					encodePending();
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (target instanceof Flushable) {
+				((Flushable) target).flush();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				encodePending();
+				closed = true;
+				flush();
+			}
+		}
+	}
+
+}
@@ -17,50 +17,66 @@
 package net.derquinse.common.base;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FilterOutputStream;
 import java.io.InputStream;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ReadOnlyBufferException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Charsets;
 import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.UnsignedBytes;
 
 /**
  * Immutable array of bytes. Based on Google's code in Protocol Buffers. A version of this class is
- * expected to appear in Guava. This implementation will be removed once that happens.
+ * expected to appear in Guava. This implementation will be removed once that happens. A byte string
+ * may be a view of a range of a larger array shared with other byte strings (e.g. those returned by
+ * {@link #substring(int, int)}), in which case {@link #trim()} may be used to release the rest of the
+ * array.
  * @author crazybob@google.com Bob Lee
  * @author kenton@google.com Kenton Varda
  * @author Andres Rodriguez
  */
 @Beta
-public final class ByteString implements Serializable {
+public final class ByteString implements Serializable, Comparable<ByteString> {
 	/** Serial UID. */
 	private static final long serialVersionUID = 5380545035055097521L;
+	/** Number of bytes in a long. */
+	private static final int LONG_BYTES = 8;
 
-	/** Used to build output as Hex. */
-	private static final char[] DIGITS_LOWER = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd',
-			'e', 'f' };
-
-	/** Used to build output as Hex. */
-	private static final char[] DIGITS_UPPER = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D',
-			'E', 'F' };
-
+	/** Backing array. */
 	private final byte[] bytes;
+	/** Offset of the first byte in the backing array. */
+	private final int offset;
+	/** Number of bytes. */
+	private final int length;
 
 	private ByteString(final byte[] bytes) {
+		this(bytes, 0, bytes.length);
+	}
+
+	private ByteString(final byte[] bytes, final int offset, final int length) {
 		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
 	}
 
 	/**
@@ -68,21 +84,101 @@ public final class ByteString implements Serializable {
 	 * @throws ArrayIndexOutOfBoundsException {@code index} is < 0 or >= size
 	 */
 	public byte byteAt(final int index) {
-		return bytes[index];
+		if (index < 0 || index >= length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return bytes[offset + index];
 	}
 
 	/**
 	 * Gets the number of bytes.
 	 */
 	public int size() {
-		return bytes.length;
+		return length;
 	}
 
 	/**
 	 * Returns {@code true} if the size is {@code 0}, {@code false} otherwise.
 	 */
 	public boolean isEmpty() {
-		return bytes.length == 0;
+		return length == 0;
+	}
+
+	/** Returns the backing array, which must not be modified. */
+	byte[] array() {
+		return bytes;
+	}
+
+	/** Returns the offset of the first byte in the backing array. */
+	int arrayOffset() {
+		return offset;
+	}
+
+	/**
+	 * Returns whether this byte string uses its whole backing array, so {@link #trim()} would return
+	 * the same object.
+	 */
+	public boolean isTrimmed() {
+		return offset == 0 && length == bytes.length;
+	}
+
+	// =================================================================
+	// Views
+
+	/**
+	 * Returns a byte string with the bytes from {@code beginIndex} (inclusive) to {@code endIndex}
+	 * (exclusive). No bytes are copied, the returned value shares the backing array of this one.
+	 * @throws IndexOutOfBoundsException if the indexes are not valid.
+	 */
+	public ByteString substring(final int beginIndex, final int endIndex) {
+		checkPositionIndexes(beginIndex, endIndex, length);
+		if (beginIndex == endIndex) {
+			return EMPTY;
+		} else if (beginIndex == 0 && endIndex == length) {
+			return this;
+		}
+		return new ByteString(bytes, offset + beginIndex, endIndex - beginIndex);
+	}
+
+	/**
+	 * Returns a byte string with the bytes from {@code beginIndex} (inclusive) to the end. No bytes
+	 * are copied, the returned value shares the backing array of this one.
+	 * @throws IndexOutOfBoundsException if the index is not valid.
+	 */
+	public ByteString substring(final int beginIndex) {
+		return substring(beginIndex, length);
+	}
+
+	/**
+	 * Concatenates this byte string with another one. No bytes are copied if any of them is empty or
+	 * if both are adjacent views of the same array.
+	 */
+	public ByteString concat(final ByteString other) {
+		checkNotNull(other, "The byte string to concatenate must be provided");
+		if (other.length == 0) {
+			return this;
+		} else if (length == 0) {
+			return other;
+		} else if (bytes == other.bytes && offset + length == other.offset) {
+			return new ByteString(bytes, offset, length + other.length);
+		}
+		final byte[] copy = new byte[length + other.length];
+		System.arraycopy(bytes, offset, copy, 0, length);
+		System.arraycopy(other.bytes, other.offset, copy, length, other.length);
+		return new ByteString(copy);
+	}
+
+	/**
+	 * Returns a byte string with the same contents as this one but not sharing the backing array with
+	 * any other one. Intended for long-lived values extracted from larger arrays, to allow the rest of
+	 * the array to be reclaimed.
+	 * @return This object if it already uses its whole backing array or a compacted copy otherwise.
+	 */
+	public ByteString trim() {
+		if (isTrimmed()) {
+			return this;
+		}
+		return new ByteString(toByteArray());
 	}
 
 	// =================================================================
@@ -93,6 +189,25 @@ public final class ByteString implements Serializable {
 	 */
 	public static final ByteString EMPTY = new ByteString(new byte[0]);
 
+	/**
+	 * Wraps the given bytes into a {@code ByteString} without copying them. The array must not be
+	 * modified afterwards.
+	 */
+	public static ByteString wrap(final byte[] bytes) {
+		return new ByteString(checkNotNull(bytes, "The bytes to wrap must be provided"));
+	}
+
+	/**
+	 * Wraps a range of the given bytes into a {@code ByteString} without copying them. The range must
+	 * not be modified afterwards.
+	 * @throws IndexOutOfBoundsException if the range is not valid.
+	 */
+	public static ByteString wrap(final byte[] bytes, final int offset, final int size) {
+		checkNotNull(bytes, "The bytes to wrap must be provided");
+		checkPositionIndexes(offset, offset + size, bytes.length);
+		return size == 0 ? EMPTY : new ByteString(bytes, offset, size);
+	}
+
 	/**
 	 * Copies the given bytes into a {@code ByteString}.
 	 */
@@ -145,19 +260,27 @@ public final class ByteString implements Serializable {
 	 * as a {@code ByteString}.
 	 */
 	public static ByteString copyFrom(final String text, final Charset charset) throws UnsupportedEncodingException {
-		return new ByteString(text.getBytes(charset.name()));
+		return new ByteString(text.getBytes(charset));
 	}
 
 	/**
 	 * Encodes {@code text} into a sequence of UTF-8 bytes and returns the result as a
-	 * {@code ByteString}.
+	 * {@code ByteString}. ASCII text is encoded directly into an array of the exact size.
 	 */
 	public static ByteString copyFromUtf8(final String text) {
-		try {
-			return copyFrom(text, Charsets.UTF_8.name());
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("UTF-8 not supported?", e);
+		final int n = text.length();
+		if (n == 0) {
+			return EMPTY;
+		}
+		final byte[] ascii = new byte[n];
+		for (int i = 0; i < n; i++) {
+			final char c = text.charAt(i);
+			if (c >= 0x80) {
+				return new ByteString(text.getBytes(Charsets.UTF_8));
+			}
+			ascii[i] = (byte) c;
 		}
+		return new ByteString(ascii);
 	}
 
 	/**
@@ -165,7 +288,8 @@ public final class ByteString implements Serializable {
 	 * <p>
 	 * The returned {@code ByteString} is not necessarily a unique object. If the list is empty, the
 	 * returned object is the singleton empty {@code ByteString}. If the list has only one element,
-	 * that {@code ByteString} will be returned without copying.
+	 * that {@code ByteString} will be returned without copying. If the elements are adjacent views of
+	 * the same array, a view of the whole range is returned without copying.
 	 */
 	public static ByteString copyFrom(List<ByteString> list) {
 		if (list.size() == 0) {
@@ -175,14 +299,24 @@ public final class ByteString implements Serializable {
 		}
 
 		int size = 0;
+		boolean adjacent = true;
+		ByteString previous = null;
 		for (ByteString str : list) {
 			size += str.size();
+			if (previous != null) {
+				adjacent &= str.bytes == previous.bytes && previous.offset + previous.length == str.offset;
+			}
+			previous = str;
+		}
+		if (adjacent) {
+			final ByteString first = list.get(0);
+			return size == 0 ? EMPTY : new ByteString(first.bytes, first.offset, size);
 		}
 		byte[] bytes = new byte[size];
 		int pos = 0;
 		for (ByteString str : list) {
-			System.arraycopy(str.bytes, 0, bytes, pos, str.size());
-			pos += str.size();
+			System.arraycopy(str.bytes, str.offset, bytes, pos, str.length);
+			pos += str.length;
 		}
 		return new ByteString(bytes);
 	}
@@ -197,18 +331,7 @@ public final class ByteString implements Serializable {
 	 * @throws IllegalArgumentException Thrown if an odd number or illegal of characters is supplied
 	 */
 	public static ByteString fromHexChars(char[] data) {
-		int len = data.length;
-		checkArgument((len & 0x01) == 0, "Odd number of characters.");
-		byte[] out = new byte[len >> 1];
-		// two characters form the hex value.
-		for (int i = 0, j = 0; j < len; i++) {
-			int f = toDigit(data[j], j) << 4;
-			j++;
-			f = f | toDigit(data[j], j);
-			j++;
-			out[i] = (byte) (f & 0xFF);
-		}
-		return new ByteString(out);
+		return ByteEncoding.base16().decode(data, 0, data.length);
 	}
 
 	/**
@@ -221,22 +344,7 @@ public final class ByteString implements Serializable {
 	 * @throws IllegalArgumentException Thrown if an odd number or illegal of characters is supplied
 	 */
 	public static ByteString fromHexString(String data) {
-		return fromHexChars(data.toCharArray());
-	}
-
-	/**
-	 * Converts a hexadecimal character to an integer.
-	 * @param ch A character to convert to an integer digit
-	 * @param index The index of the character in the source
-	 * @return An integer
-	 * @throws IllegalArgumentException Thrown if ch is an illegal hex character
-	 */
-	private static int toDigit(char ch, int index) {
-		int digit = Character.digit(ch, 16);
-		if (digit == -1) {
-			throw new IllegalArgumentException("Illegal hexadecimal character " + ch + " at index " + index);
-		}
-		return digit;
+		return ByteEncoding.base16().decode(data);
 	}
 
 	// =================================================================
@@ -248,7 +356,7 @@ public final class ByteString implements Serializable {
 	 * @param offset in the target buffer
 	 */
 	public void copyTo(final byte[] target, final int offset) {
-		System.arraycopy(bytes, 0, target, offset, bytes.length);
+		System.arraycopy(bytes, this.offset, target, offset, length);
 	}
 
 	/**
@@ -259,7 +367,8 @@ public final class ByteString implements Serializable {
 	 * @param size number of bytes to copy
 	 */
 	public void copyTo(final byte[] target, final int sourceOffset, final int targetOffset, final int size) {
-		System.arraycopy(bytes, sourceOffset, target, targetOffset, size);
+		checkPositionIndexes(sourceOffset, sourceOffset + size, length);
+		System.arraycopy(bytes, offset + sourceOffset, target, targetOffset, size);
 	}
 
 	/**
@@ -270,16 +379,15 @@ public final class ByteString implements Serializable {
 	 *           to hold the data.
 	 */
 	public void copyTo(ByteBuffer target) {
-		target.put(bytes, 0, bytes.length);
+		target.put(bytes, offset, length);
 	}
 
 	/**
 	 * Copies bytes to a {@code byte[]}.
 	 */
 	public byte[] toByteArray() {
-		final int size = bytes.length;
-		final byte[] copy = new byte[size];
-		System.arraycopy(bytes, 0, copy, 0, size);
+		final byte[] copy = new byte[length];
+		System.arraycopy(bytes, offset, copy, 0, length);
 		return copy;
 	}
 
@@ -288,15 +396,15 @@ public final class ByteString implements Serializable {
 	 * @throws IllegalStateException if the string is empty.
 	 */
 	public HashCode toHashCode() {
-		checkState(bytes.length > 0, "The byte string must not be empty");
-		return HashCode.fromBytes(bytes);
+		checkState(length > 0, "The byte string must not be empty");
+		return HashCode.fromBytes(isTrimmed() ? bytes : toByteArray());
 	}
 
 	/**
 	 * Constructs a new read-only {@code java.nio.ByteBuffer} with the same backing byte array.
 	 */
 	public ByteBuffer asReadOnlyByteBuffer() {
-		final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+		final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, offset, length).slice();
 		return byteBuffer.asReadOnlyBuffer();
 	}
 
@@ -304,25 +412,21 @@ public final class ByteString implements Serializable {
 	 * Constructs a new {@code String} by decoding the bytes using the specified charset.
 	 */
 	public String toString(final String charsetName) throws UnsupportedEncodingException {
-		return new String(bytes, charsetName);
+		return new String(bytes, offset, length, charsetName);
 	}
 
 	/**
 	 * Constructs a new {@code String} by decoding the bytes as UTF-8.
 	 */
 	public String toStringUtf8() {
-		try {
-			return new String(bytes, "UTF-8");
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException("UTF-8 not supported?", e);
-		}
+		return new String(bytes, offset, length, Charsets.UTF_8);
 	}
 
 	/**
 	 * Constructs a new {@code String} by encoding the bytes in hexadecimal.
 	 */
 	public String toHexString(boolean lowercase) {
-		return toHexString(lowercase ? DIGITS_LOWER : DIGITS_UPPER);
+		return (lowercase ? ByteEncoding.base16() : ByteEncoding.base16Upper()).encode(this);
 	}
 
 	/**
@@ -332,35 +436,14 @@ public final class ByteString implements Serializable {
 		return toHexString(true);
 	}
 
-	private String toHexString(char[] toDigits) {
-		final int length = 2 * bytes.length;
-		final StringBuilder b = new StringBuilder(length);
-		for (int i = 0; i < bytes.length; i++) {
-			b.append(toDigits[(0xF0 & bytes[i]) >>> 4]);
-			b.append(toDigits[0x0F & bytes[i]]);
-		}
-		return b.toString();
-	}
-
-	private String toHexString(char[] toDigits, int maxBytes) {
-		final int nBytes = Math.min(maxBytes, bytes.length);
-		final int length = 2 * nBytes;
-		final StringBuilder b = new StringBuilder(length);
-		for (int i = 0; i < nBytes; i++) {
-			b.append(toDigits[(0xF0 & bytes[i]) >>> 4]);
-			b.append(toDigits[0x0F & bytes[i]]);
-		}
-		return b.toString();
-	}
-
 	/**
 	 * Default toString = toHexString (max 32 chars)
 	 */
 	public String toString() {
-		if (bytes.length <= 16) {
+		if (length <= 16) {
 			return toHexString();
 		}
-		return toHexString(DIGITS_LOWER, 14) + "...";
+		return substring(0, 14).toHexString() + "...";
 	}
 
 	// =================================================================
@@ -377,20 +460,78 @@ public final class ByteString implements Serializable {
 		}
 
 		final ByteString other = (ByteString) o;
-		final int size = bytes.length;
-		if (size != other.bytes.length) {
+		final int size = length;
+		if (size != other.length) {
+			return false;
+		}
+
+		final int h1 = hash;
+		final int h2 = other.hash;
+		if (h1 != 0 && h2 != 0 && h1 != h2) {
 			return false;
 		}
 
+		if (isTrimmed() && other.isTrimmed()) {
+			return Arrays.equals(bytes, other.bytes);
+		}
+		return mismatch(other.bytes, other.offset, size) < 0;
+	}
+
+	/**
+	 * Returns whether the contents of this byte string are equal to a range of a byte array.
+	 * @throws IndexOutOfBoundsException if the range is not valid.
+	 */
+	public boolean contentEquals(final byte[] other, final int otherOffset, final int otherLength) {
+		checkNotNull(other, "The bytes to compare with must be provided");
+		checkPositionIndexes(otherOffset, otherOffset + otherLength, other.length);
+		return length == otherLength && mismatch(other, otherOffset, otherLength) < 0;
+	}
+
+	/** Reads a big-endian long from a byte array. */
+	private static long getLong(final byte[] b, final int i) {
+		return Longs.fromBytes(b[i], b[i + 1], b[i + 2], b[i + 3], b[i + 4], b[i + 5], b[i + 6], b[i + 7]);
+	}
+
+	/**
+	 * Compares the first bytes of this byte string with those of a byte array, 8 bytes at a time.
+	 * @param otherBytes Bytes to compare with.
+	 * @param otherOffset Offset of the first byte to compare with.
+	 * @param n Number of bytes to compare, which must not exceed the size of any of the ranges.
+	 * @return The index of the first different byte or -1 if there is none.
+	 */
+	private int mismatch(final byte[] otherBytes, final int otherOffset, final int n) {
 		final byte[] thisBytes = bytes;
-		final byte[] otherBytes = other.bytes;
-		for (int i = 0; i < size; i++) {
-			if (thisBytes[i] != otherBytes[i]) {
-				return false;
+		int i = 0;
+		for (final int end = n - LONG_BYTES; i <= end; i += LONG_BYTES) {
+			if (getLong(thisBytes, offset + i) != getLong(otherBytes, otherOffset + i)) {
+				break;
 			}
 		}
+		for (; i < n; i++) {
+			if (thisBytes[offset + i] != otherBytes[otherOffset + i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
 
-		return true;
+	/**
+	 * Compares the contents of this byte string with another one taking the same time regardless of
+	 * the position of the first different byte, if any. Intended for the verification of MACs and
+	 * other secrets. Only the sizes are compared in variable time.
+	 */
+	public boolean constantTimeEquals(final ByteString other) {
+		checkNotNull(other, "The byte string to compare with must be provided");
+		if (length != other.length) {
+			return false;
+		}
+		final byte[] thisBytes = bytes;
+		final byte[] otherBytes = other.bytes;
+		int result = 0;
+		for (int i = 0; i < length; i++) {
+			result |= thisBytes[offset + i] ^ otherBytes[other.offset + i];
+		}
+		return result == 0;
 	}
 
 	private volatile int hash = 0;
@@ -401,10 +542,10 @@ public final class ByteString implements Serializable {
 
 		if (h == 0) {
 			final byte[] thisBytes = bytes;
-			final int size = bytes.length;
+			final int size = length;
 
 			h = size;
-			for (int i = 0; i < size; i++) {
+			for (int i = offset, end = offset + size; i < end; i++) {
 				h = h * 31 + thisBytes[i];
 			}
 			if (h == 0) {
@@ -417,6 +558,59 @@ public final class ByteString implements Serializable {
 		return h;
 	}
 
+	/**
+	 * Returns a 64-bit hash of the contents (the first 8 bytes of their 128-bit Murmur3 hash), which
+	 * is computed in blocks of 16 bytes and distributes better than {@link #hashCode()}. The value is
+	 * not cached.
+	 */
+	public long hash64() {
+		return Hashing.murmur3_128().hashBytes(bytes, offset, length).asLong();
+	}
+
+	// =================================================================
+	// Ordering
+
+	/** Unsigned lexicographical comparator. */
+	private static final Comparator<ByteString> COMPARATOR = new Comparator<ByteString>() {
+		@Override
+		public int compare(ByteString o1, ByteString o2) {
+			return o1.compareTo(o2);
+		}
+
+		@Override
+		public String toString() {
+			return "ByteString.comparator()";
+		}
+	};
+
+	/**
+	 * Returns a comparator that orders byte strings lexicographically, comparing bytes as unsigned
+	 * values. It is consistent with the natural ordering.
+	 */
+	public static Comparator<ByteString> comparator() {
+		return COMPARATOR;
+	}
+
+	/**
+	 * Compares byte strings lexicographically, comparing bytes as unsigned values, 8 bytes at a time.
+	 * A byte string that is a prefix of another one is smaller than it.
+	 */
+	@Override
+	public int compareTo(final ByteString other) {
+		if (other == this) {
+			return 0;
+		}
+		if (isTrimmed() && other.isTrimmed()) {
+			return UnsignedBytes.lexicographicalComparator().compare(bytes, other.bytes);
+		}
+		final int n = Math.min(length, other.length);
+		final int i = mismatch(other.bytes, other.offset, n);
+		if (i < 0) {
+			return Ints.compare(length, other.length);
+		}
+		return UnsignedBytes.compare(bytes[offset + i], other.bytes[other.offset + i]);
+	}
+
 	// =================================================================
 	// Input stream
 
@@ -424,17 +618,19 @@ public final class ByteString implements Serializable {
 	 * Creates an {@code InputStream} which can be used to read the bytes.
 	 */
 	public InputStream newInput() {
-		return new ByteArrayInputStream(bytes);
+		return new ByteArrayInputStream(bytes, offset, length);
 	}
 
 	// =================================================================
 	// Output stream
 
 	/**
-	 * Creates a new {@link Output} with the given initial capacity.
+	 * Creates a new {@link Output} with the given initial capacity. If the final size is the initial
+	 * capacity the byte string is built without copying.
 	 */
 	public static Output newOutput(final int initialCapacity) {
-		return new Output(new ByteArrayOutputStream(initialCapacity));
+		checkArgument(initialCapacity >= 0, "The initial capacity must be >= 0");
+		return new Output(initialCapacity);
 	}
 
 	/**
@@ -446,24 +642,95 @@ public final class ByteString implements Serializable {
 
 	/**
 	 * Builder based on an output stream. Call {@link #build()} to create the {@code ByteString}
-	 * instance.
+	 * instance. Written bytes are stored in a list of chunks that grow geometrically, so they are
+	 * never copied while writing, and are copied once to build the byte string, unless they fit
+	 * exactly in a single chunk. Not thread-safe.
 	 */
-	public static final class Output extends FilterOutputStream implements Builder<ByteString> {
-		private final ByteArrayOutputStream bout;
+	public static final class Output extends OutputStream implements Builder<ByteString> {
+		/** Minimum size of new chunks. */
+		private static final int MIN_CHUNK_SIZE = 128;
+		/** Maximum size of new chunks, unless required by a single write. */
+		private static final int MAX_CHUNK_SIZE = 1 << 20;
+
+		/** Completed chunks. */
+		private final List<byte[]> chunks = new ArrayList<byte[]>();
+		/** Current chunk. */
+		private byte[] current;
+		/** Number of bytes in the current chunk. */
+		private int count = 0;
+		/** Number of bytes in the completed chunks. */
+		private int completed = 0;
 
 		/**
 		 * Constructs a new output with the given initial capacity.
 		 */
-		private Output(final ByteArrayOutputStream bout) {
-			super(bout);
-			this.bout = bout;
+		private Output(final int initialCapacity) {
+			this.current = new byte[initialCapacity];
+		}
+
+		/** Completes the current chunk and allocates a new one with room for at least the requested bytes. */
+		private void grow(int required) {
+			chunks.add(current);
+			completed += count;
+			final int size = Math.max(required, Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, completed)));
+			current = new byte[size];
+			count = 0;
+		}
+
+		@Override
+		public void write(final int b) {
+			if (count == current.length) {
+				grow(1);
+			}
+			current[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] b, int off, int len) {
+			checkPositionIndexes(off, off + len, b.length);
+			while (len > 0) {
+				int room = current.length - count;
+				if (room == 0) {
+					grow(len);
+					room = current.length;
+				}
+				final int n = Math.min(room, len);
+				System.arraycopy(b, off, current, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/** Writes the contents of a byte string. */
+		public void write(final ByteString value) {
+			write(value.bytes, value.offset, value.length);
+		}
+
+		/** Returns the number of written bytes. */
+		public int size() {
+			return completed + count;
 		}
 
 		/**
 		 * Creates a {@code ByteString} instance from this {@code Output}.
 		 */
 		public ByteString build() {
-			final byte[] byteArray = bout.toByteArray();
+			final int size = size();
+			if (size == 0) {
+				return EMPTY;
+			} else if (completed == 0 && count == current.length) {
+				// Exact size. The chunk is full so it will not be written again.
+				return new ByteString(current);
+			}
+			final byte[] byteArray = new byte[size];
+			int pos = 0;
+			for (byte[] chunk : chunks) {
+				final int n = Math.min(chunk.length, completed - pos);
+				System.arraycopy(chunk, 0, byteArray, pos, n);
+				pos += n;
+			}
+			System.arraycopy(current, 0, byteArray, pos, count);
 			return new ByteString(byteArray);
 		}
 	}
@@ -477,7 +744,7 @@ public final class ByteString implements Serializable {
 		private final byte[] bytes;
 
 		public SerializationProxy(ByteString s) {
-			this.bytes = s.bytes;
+			this.bytes = s.trim().bytes;
 		}
 
 		private Object readResolve() {
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Maps;
+
+/**
+ * Interner of byte strings keyed by content. Interned values are weakly referenced, so they are
+ * only kept while in use, and the number of tracked values may be bounded, in which case values are
+ * not interned once the limit is reached. Lookups use the cached hash code of the byte strings.
+ * Interned values are trimmed, so that interning a view does not retain its backing array.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class ByteStringInterner implements Interner<ByteString> {
+	/** Maximum number of tracked values. */
+	private final long maxSize;
+	/** Interned values. */
+	private final ConcurrentMap<Entry, Entry> map = Maps.newConcurrentMap();
+	/** Queue of collected values. */
+	private final ReferenceQueue<ByteString> queue = new ReferenceQueue<ByteString>();
+	/** Number of intern operations. */
+	private final AtomicLong internCount = new AtomicLong();
+	/** Number of intern operations that returned a previously interned value. */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/** Creates a new interner with no limit in the number of tracked values. */
+	public static ByteStringInterner of() {
+		return new ByteStringInterner(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new interner.
+	 * @param maxSize Maximum number of tracked values.
+	 */
+	public static ByteStringInterner of(long maxSize) {
+		checkArgument(maxSize > 0, "The maximum number of values must be > 0");
+		return new ByteStringInterner(maxSize);
+	}
+
+	/** Constructor. */
+	private ByteStringInterner(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/** Returns the maximum number of tracked values. */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/** Removes the entries of collected values. */
+	private void expunge() {
+		Reference<? extends ByteString> ref;
+		while ((ref = queue.poll()) != null) {
+			map.remove(ref);
+		}
+	}
+
+	@Override
+	public ByteString intern(ByteString sample) {
+		checkNotNull(sample, "The byte string to intern must be provided");
+		expunge();
+		internCount.incrementAndGet();
+		final Probe probe = new Probe(sample);
+		while (true) {
+			final Entry existing = map.get(probe);
+			if (existing != null) {
+				final ByteString value = existing.get();
+				if (value != null) {
+					hitCount.incrementAndGet();
+					return value;
+				}
+				map.remove(existing, existing);
+			} else {
+				if (map.size() >= maxSize) {
+					return sample;
+				}
+				final ByteString value = sample.trim();
+				final Entry entry = new Entry(value, queue);
+				if (map.putIfAbsent(entry, entry) == null) {
+					return value;
+				}
+			}
+		}
+	}
+
+	/** Returns the approximate number of tracked values. */
+	public long size() {
+		expunge();
+		return map.size();
+	}
+
+	/** Returns the number of intern operations. */
+	public long internCount() {
+		return internCount.get();
+	}
+
+	/** Returns the number of intern operations that returned a previously interned value. */
+	public long hitCount() {
+		return hitCount.get();
+	}
+
+	/** Returns the ratio of intern operations that returned a previously interned value. */
+	public double hitRate() {
+		final long n = internCount.get();
+		return n == 0 ? 0.0 : (double) hitCount.get() / n;
+	}
+
+	/** Removes every tracked value. */
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("maxSize", maxSize).add("size", size())
+				.add("hitRate", hitRate()).toString();
+	}
+
+	/** Returns the value held by a map key. */
+	private static ByteString valueOf(Object key) {
+		if (key instanceof Probe) {
+			return ((Probe) key).value;
+		} else if (key instanceof Entry) {
+			return ((Entry) key).get();
+		}
+		return null;
+	}
+
+	/** Map entry, weakly referencing an interned value. */
+	private static final class Entry extends WeakReference<ByteString> {
+		/** Hash code of the value. */
+		private final int hash;
+
+		/** Constructor. */
+		Entry(ByteString value, ReferenceQueue<ByteString> queue) {
+			super(value, queue);
+			this.hash = value.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			final ByteString value = get();
+			return value != null && value.equals(valueOf(obj));
+		}
+	}
+
+	/** Lookup key, strongly referencing the sample value. */
+	private static final class Probe {
+		/** Sample value. */
+		private final ByteString value;
+
+		/** Constructor. */
+		Probe(ByteString value) {
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj == this || value.equals(valueOf(obj));
+		}
+	}
+
+}
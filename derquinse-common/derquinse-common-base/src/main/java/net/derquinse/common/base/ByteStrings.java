@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Utility methods for byte strings.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class ByteStrings extends NotInstantiable {
+	/** Not instantiable. */
+	private ByteStrings() {
+	}
+
+	/**
+	 * Returns a new interner of byte strings keyed by content, which weakly references the interned
+	 * values and has no limit in the number of tracked values.
+	 */
+	public static ByteStringInterner interner() {
+		return ByteStringInterner.of();
+	}
+
+	/**
+	 * Returns a new interner of byte strings keyed by content, which weakly references the interned
+	 * values.
+	 * @param maxSize Maximum number of tracked values. Once reached, new values are not interned.
+	 */
+	public static ByteStringInterner interner(long maxSize) {
+		return ByteStringInterner.of(maxSize);
+	}
+
+}
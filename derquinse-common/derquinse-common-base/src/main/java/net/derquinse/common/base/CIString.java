@@ -22,12 +22,17 @@ import javax.annotation.Nullable;
 import com.google.common.base.Function;
 
 /**
- * A string holder that implements equals ignoring case.
+ * A string holder that implements equals ignoring case. Characters are compared as in
+ * {@link String#equalsIgnoreCase(String)}, and the hash code is computed from the case-folded
+ * characters, with a fast path for ASCII and without allocating any object.
  * @author Andres Rodriguez
  */
 public final class CIString implements Serializable, Comparable<CIString> {
 	/** Serial UID. */
 	private static final long serialVersionUID = 1050129007442556236L;
+	/** Maximum number of characters used to compute the hash code. */
+	private static final int HASH_LENGTH = 32;
+
 	/** Hash code. */
 	private final int hash;
 	/** Original string. */
@@ -35,7 +40,28 @@ public final class CIString implements Serializable, Comparable<CIString> {
 
 	private CIString(final String string) {
 		this.string = string;
-		this.hash = string.substring(0, Math.min(string.length(), 32)).toLowerCase().hashCode();
+		this.hash = caseInsensitiveHash(string);
+	}
+
+	/** Folds a character so that two characters are equal ignoring case iff their folds are equal. */
+	private static char fold(char c) {
+		if (c < 0x80) {
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Computes the hash code of a character sequence ignoring case, which is the hash code of the
+	 * case ignoring string with the same characters. Only the first 32 characters are used.
+	 */
+	public static int caseInsensitiveHash(CharSequence s) {
+		final int n = Math.min(s.length(), HASH_LENGTH);
+		int h = 0;
+		for (int i = 0; i < n; i++) {
+			h = 31 * h + fold(s.charAt(i));
+		}
+		return h;
 	}
 
 	private static final Function<String, CIString> VALUEOF_FUNCTION = new Function<String, CIString>() {
@@ -80,11 +106,27 @@ public final class CIString implements Serializable, Comparable<CIString> {
 		}
 		if (obj instanceof CIString) {
 			final CIString cis = (CIString) obj;
-			return hash == cis.hash || string.equalsIgnoreCase(cis.string);
+			return hash == cis.hash && string.equalsIgnoreCase(cis.string);
 		}
 		return false;
 	}
 
+	/** Returns whether this string is equal to a character sequence ignoring case. */
+	public boolean contentEquals(CharSequence cs) {
+		final int n = string.length();
+		if (cs.length() != n) {
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			final char c1 = string.charAt(i);
+			final char c2 = cs.charAt(i);
+			if (c1 != c2 && fold(c1) != fold(c2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
@@ -98,4 +140,9 @@ public final class CIString implements Serializable, Comparable<CIString> {
 		return string;
 	}
 
+	/** Recomputes the hash code, as instances serialized by previous versions may carry a different one. */
+	private Object readResolve() {
+		return new CIString(string);
+	}
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import com.google.common.annotations.Beta;
+import com.google.common.io.ByteProcessor;
+import com.google.common.io.ByteSource;
+
+/**
+ * Message digest borrowed from the per-thread pool kept by {@link Digests}, for streaming use. The
+ * digest is returned to the pool when disposed, so it must be disposed in the same thread it was
+ * obtained, and not used afterwards. Not thread-safe.
+ * @author Andres Rodriguez
+ * @see Digests#hasher(String)
+ */
+@Beta
+public final class DigestHasher implements Disposable<MessageDigest> {
+	/** Digest algorithm. */
+	private final String algorithm;
+	/** Borrowed digest, {@code null} once disposed. */
+	private MessageDigest md;
+
+	/** Constructor. */
+	DigestHasher(String algorithm, MessageDigest md) {
+		this.algorithm = algorithm;
+		this.md = md;
+	}
+
+	/** Returns the digest algorithm. */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Returns the borrowed digest.
+	 * @throws IllegalStateException if the hasher has been disposed.
+	 */
+	@Override
+	public MessageDigest get() {
+		checkState(md != null, "The hasher has been disposed");
+		return md;
+	}
+
+	/** Updates the digest with the provided bytes. */
+	public DigestHasher update(byte[] input) {
+		get().update(input);
+		return this;
+	}
+
+	/** Updates the digest with the provided bytes. */
+	public DigestHasher update(byte[] input, int offset, int len) {
+		get().update(input, offset, len);
+		return this;
+	}
+
+	/** Updates the digest with the remaining bytes of the provided buffer, which is consumed. */
+	public DigestHasher update(ByteBuffer input) {
+		get().update(input);
+		return this;
+	}
+
+	/** Updates the digest with the provided byte string. */
+	public DigestHasher update(ByteString input) {
+		get().update(input.asReadOnlyByteBuffer());
+		return this;
+	}
+
+	/** Updates the digest with the contents of the provided source. */
+	public DigestHasher update(ByteSource source) throws IOException {
+		checkNotNull(source, "The byte source to digest must be provided");
+		final MessageDigest d = get();
+		source.read(new ByteProcessor<Void>() {
+			@Override
+			public boolean processBytes(byte[] buf, int off, int len) {
+				d.update(buf, off, len);
+				return true;
+			}
+
+			@Override
+			public Void getResult() {
+				return null;
+			}
+		});
+		return this;
+	}
+
+	/** Completes the digest computation, returning the digest and resetting the hasher for reuse. */
+	public ByteString digest() {
+		return ByteString.wrap(get().digest());
+	}
+
+	/** Returns the digest to the pool. It can be called safely multiple times. */
+	@Override
+	public void dispose() {
+		final MessageDigest d = md;
+		if (d != null) {
+			md = null;
+			Digests.release(algorithm, d);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("DigestHasher[%s]", algorithm);
+	}
+}
@@ -15,17 +15,38 @@
  */
 package net.derquinse.common.base;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteProcessor;
 import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
- * Utility class for dealing with message digests.
+ * Utility class for dealing with message digests. The methods that compute a digest directly reuse
+ * message digest instances kept in a per-thread pool, as creating a new instance requires a lookup in
+ * the security providers. Methods returning a {@link MessageDigest} always return a new instance.
  * @author Andres Rodriguez
  */
 public final class Digests extends NotInstantiable {
@@ -53,6 +74,208 @@ public final class Digests extends NotInstantiable {
 		return MessageDigest.getInstance(algorithm);
 	}
 
+	/** Block size used to feed several digests in parallel. */
+	private static final int PARALLEL_BLOCK_SIZE = 64 * 1024;
+
+	/** Per-thread pool of idle digests, indexed by algorithm. */
+	private static final ThreadLocal<Map<String, MessageDigest>> IDLE = new ThreadLocal<Map<String, MessageDigest>>() {
+		@Override
+		protected Map<String, MessageDigest> initialValue() {
+			return Maps.newHashMap();
+		}
+	};
+
+	/**
+	 * Takes a digest from the current thread pool, creating a new one if none is available. Nested
+	 * uses in the same thread get different instances.
+	 */
+	private static MessageDigest acquire(String algorithm) {
+		final MessageDigest md = IDLE.get().remove(algorithm);
+		return md != null ? md : getInstanceUnchecked(algorithm);
+	}
+
+	/** Resets a digest and returns it to the current thread pool. */
+	static void release(String algorithm, MessageDigest md) {
+		md.reset();
+		IDLE.get().put(algorithm, md);
+	}
+
+	/** Computes the digest of the provided data using a pooled instance. */
+	private static ByteString pooled(String algorithm, byte[] data) {
+		checkNotNull(data);
+		final MessageDigest md = acquire(algorithm);
+		try {
+			return ByteString.wrap(md.digest(data));
+		} finally {
+			release(algorithm, md);
+		}
+	}
+
+	/** Computes the digest of the provided data using a pooled instance. */
+	private static ByteString pooled(String algorithm, ByteSource source) throws IOException {
+		final MessageDigest md = acquire(algorithm);
+		try {
+			return getDigest(source, md);
+		} finally {
+			release(algorithm, md);
+		}
+	}
+
+	/**
+	 * Returns a hasher for streaming use, backed by a digest taken from the current thread pool. The
+	 * hasher must be disposed in the same thread to return the digest to the pool.
+	 * @param algorithm Digest algorithm.
+	 * @throws IllegalArgumentException If the algorithm is not available in the caller's environment.
+	 */
+	public static DigestHasher hasher(String algorithm) {
+		return new DigestHasher(algorithm, acquireChecked(algorithm));
+	}
+
+	/**
+	 * Takes a digest from the current thread pool, creating a new one if none is available.
+	 * @throws IllegalArgumentException If the algorithm is not available in the caller's environment.
+	 */
+	private static MessageDigest acquireChecked(String algorithm) {
+		checkNotNull(algorithm, "The digest algorithm must be provided");
+		final MessageDigest md = IDLE.get().remove(algorithm);
+		if (md != null) {
+			return md;
+		}
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException(String.format("Unknown digest algorithm %s", algorithm), e);
+		}
+	}
+
+	/**
+	 * Computes several digests of the provided data reading it only once.
+	 * @param source Data to digest.
+	 * @param algorithms Digest algorithms. Repeated algorithms are computed once.
+	 * @return The digests, indexed by algorithm, in the order the algorithms were provided.
+	 * @throws IllegalArgumentException If no algorithm is provided or any of them is not available.
+	 */
+	public static Map<String, ByteString> digestAll(ByteSource source, String... algorithms) throws IOException {
+		return digestAll(source, null, algorithms);
+	}
+
+	/**
+	 * Computes several digests of the provided data reading it only once. Each block of data is
+	 * digested concurrently by every algorithm, using the provided executor for all but the first
+	 * one, so the elapsed time is close to the one of the slowest algorithm.
+	 * @param source Data to digest.
+	 * @param executor Executor to use. If {@code null} the digests are computed sequentially in the
+	 *          calling thread.
+	 * @param algorithms Digest algorithms. Repeated algorithms are computed once.
+	 * @return The digests, indexed by algorithm, in the order the algorithms were provided.
+	 * @throws IllegalArgumentException If no algorithm is provided or any of them is not available.
+	 */
+	public static Map<String, ByteString> digestAll(ByteSource source, @Nullable Executor executor,
+			String... algorithms) throws IOException {
+		checkNotNull(source, "The byte source to digest must be provided");
+		checkNotNull(algorithms, "The digest algorithms must be provided");
+		final Set<String> names = Sets.newLinkedHashSet();
+		for (String algorithm : algorithms) {
+			names.add(checkNotNull(algorithm, "The digest algorithm must be provided"));
+		}
+		checkArgument(!names.isEmpty(), "At least one digest algorithm must be provided");
+		final List<MessageDigest> mds = Lists.newArrayListWithCapacity(names.size());
+		try {
+			for (String algorithm : names) {
+				mds.add(acquireChecked(algorithm));
+			}
+			if (executor == null || mds.size() == 1) {
+				source.read(new MultiDigestProcessor(mds));
+			} else {
+				digestParallel(source, executor, mds);
+			}
+			final ImmutableMap.Builder<String, ByteString> b = ImmutableMap.builder();
+			int i = 0;
+			for (String algorithm : names) {
+				b.put(algorithm, ByteString.wrap(mds.get(i++).digest()));
+			}
+			return b.build();
+		} finally {
+			int i = 0;
+			for (String algorithm : names) {
+				if (i < mds.size()) {
+					release(algorithm, mds.get(i));
+				}
+				i++;
+			}
+		}
+	}
+
+	/** Feeds every block of a source to several digests concurrently. */
+	private static void digestParallel(ByteSource source, Executor executor, List<MessageDigest> mds)
+			throws IOException {
+		final byte[] buffer = new byte[PARALLEL_BLOCK_SIZE];
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Closer closer = Closer.create();
+		try {
+			final InputStream is = closer.register(source.openStream());
+			int n;
+			while ((n = ByteStreams.read(is, buffer, 0, buffer.length)) > 0) {
+				final int len = n;
+				final CountDownLatch latch = new CountDownLatch(mds.size() - 1);
+				for (int i = 1; i < mds.size(); i++) {
+					final MessageDigest md = mds.get(i);
+					final Runnable task = new Runnable() {
+						@Override
+						public void run() {
+							try {
+								md.update(buffer, 0, len);
+							} catch (Throwable t) {
+								failure.compareAndSet(null, t);
+							} finally {
+								latch.countDown();
+							}
+						}
+					};
+					try {
+						executor.execute(task);
+					} catch (RejectedExecutionException e) {
+						task.run();
+					}
+				}
+				mds.get(0).update(buffer, 0, len);
+				Uninterruptibles.awaitUninterruptibly(latch);
+				final Throwable t = failure.get();
+				if (t != null) {
+					throw Throwables.propagate(t);
+				}
+			}
+		} catch (Throwable e) {
+			throw closer.rethrow(e);
+		} finally {
+			closer.close();
+		}
+	}
+
+	/** Byte processor that feeds several digests. */
+	private static final class MultiDigestProcessor implements ByteProcessor<Void> {
+		/** Digests to feed. */
+		private final List<MessageDigest> mds;
+
+		/** Constructor. */
+		MultiDigestProcessor(List<MessageDigest> mds) {
+			this.mds = mds;
+		}
+
+		@Override
+		public boolean processBytes(byte[] buf, int off, int len) {
+			for (MessageDigest md : mds) {
+				md.update(buf, off, len);
+			}
+			return true;
+		}
+
+		@Override
+		public Void getResult() {
+			return null;
+		}
+	}
+
 	/**
 	 * Returns a MessageDigest object that implements the specified digest algorithm.
 	 * @param algorithm the name of the algorithm requested.
@@ -73,6 +296,17 @@ public final class Digests extends NotInstantiable {
 		return ByteString.copyFrom(md.digest(data));
 	}
 
+	/**
+	 * Computes and returns as a byte string the digest of the provided direct data, without copying
+	 * it to the heap.
+	 */
+	public static ByteString getDigest(DirectByteString data, MessageDigest md) {
+		checkNotNull(data);
+		checkNotNull(md);
+		md.update(data.asReadOnlyByteBuffer());
+		return ByteString.copyFrom(md.digest());
+	}
+
 	/**
 	 * Computes and returns as a byte string the digest of the provided data.
 	 */
@@ -103,12 +337,12 @@ public final class Digests extends NotInstantiable {
 
 	/** Computes and returns as a byte string the MD5 digest of the provided data. */
 	public static ByteString md5(byte[] data) {
-		return getDigest(data, md5());
+		return pooled(MD5, data);
 	}
 
 	/** Computes and returns as a byte string the MD5 digest of the provided data. */
 	public static ByteString md5(ByteSource source) throws IOException {
-		return getDigest(source, md5());
+		return pooled(MD5, source);
 	}
 
 	/**
@@ -120,12 +354,12 @@ public final class Digests extends NotInstantiable {
 
 	/** Computes and returns as a byte string the SHA-1 digest of the provided data. */
 	public static ByteString sha1(byte[] data) {
-		return getDigest(data, sha1());
+		return pooled(SHA1, data);
 	}
 
 	/** Computes and returns as a byte string the SHA-1 digest of the provided data. */
 	public static ByteString sha1(ByteSource source) throws IOException {
-		return getDigest(source, sha1());
+		return pooled(SHA1, source);
 	}
 
 	/**
@@ -137,12 +371,12 @@ public final class Digests extends NotInstantiable {
 
 	/** Computes and returns as a byte string the SHA-256 digest of the provided data. */
 	public static ByteString sha256(byte[] data) {
-		return getDigest(data, sha256());
+		return pooled(SHA256, data);
 	}
 
 	/** Computes and returns as a byte string the SHA-256 digest of the provided data. */
 	public static ByteString sha256(ByteSource source) throws IOException {
-		return getDigest(source, sha256());
+		return pooled(SHA256, source);
 	}
 
 	/**
@@ -154,12 +388,12 @@ public final class Digests extends NotInstantiable {
 
 	/** Computes and returns as a byte string the SHA-512 digest of the provided data. */
 	public static ByteString sha512(byte[] data) {
-		return getDigest(data, sha512());
+		return pooled(SHA512, data);
 	}
 
 	/** Computes and returns as a byte string the SHA-512 digest of the provided data. */
 	public static ByteString sha512(ByteSource source) throws IOException {
-		return getDigest(source, sha512());
+		return pooled(SHA512, source);
 	}
 
 }
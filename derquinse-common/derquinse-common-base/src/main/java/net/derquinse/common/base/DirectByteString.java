@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Immutable array of bytes stored in direct memory, for large tables of binary keys that should not
+ * use heap space. Hash codes are computed as for {@link ByteString}, so a direct byte string and a
+ * byte string with the same contents have the same hash code, but they are never equal, use
+ * {@link #contentEquals(ByteString)} to compare them. Serialized as a byte array, and deserialized
+ * into a new direct buffer.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class DirectByteString implements Serializable {
+	/** Serial UID. */
+	private static final long serialVersionUID = -1805893409447154853L;
+
+	/** Empty direct byte string. */
+	public static final DirectByteString EMPTY = new DirectByteString(ByteBuffer.allocateDirect(0).asReadOnlyBuffer());
+
+	/** Backing buffer, read-only, with position zero and limit equal to the size. */
+	private final transient ByteBuffer buffer;
+	/** Cached hash code. */
+	private transient volatile int hash = 0;
+
+	/** Constructor. */
+	private DirectByteString(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/** Creates a direct byte string over a filled and flipped buffer. */
+	private static DirectByteString of(ByteBuffer buffer) {
+		return buffer.remaining() == 0 ? EMPTY : new DirectByteString(buffer.slice().asReadOnlyBuffer());
+	}
+
+	/** Copies a byte string into direct memory. */
+	public static DirectByteString copyOf(ByteString value) {
+		checkNotNull(value, "The byte string to copy must be provided");
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(value.size());
+		value.copyTo(buffer);
+		buffer.flip();
+		return of(buffer);
+	}
+
+	/** Copies the given bytes into direct memory. */
+	public static DirectByteString copyOf(byte[] bytes) {
+		checkNotNull(bytes, "The bytes to copy must be provided");
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes);
+		buffer.flip();
+		return of(buffer);
+	}
+
+	/** Copies the remaining bytes of a buffer into direct memory. The buffer is consumed. */
+	public static DirectByteString copyFrom(ByteBuffer bytes) {
+		checkNotNull(bytes, "The buffer to copy must be provided");
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.remaining());
+		buffer.put(bytes);
+		buffer.flip();
+		return of(buffer);
+	}
+
+	/**
+	 * Wraps the remaining bytes of a direct buffer without copying them. The buffer position is not
+	 * modified, and its contents must not be modified afterwards.
+	 * @throws IllegalArgumentException if the buffer is not direct.
+	 */
+	public static DirectByteString wrap(ByteBuffer buffer) {
+		checkNotNull(buffer, "The buffer to wrap must be provided");
+		checkArgument(buffer.isDirect(), "The buffer to wrap must be direct");
+		return of(buffer.duplicate());
+	}
+
+	/** Gets the number of bytes. */
+	public int size() {
+		return buffer.limit();
+	}
+
+	/** Returns {@code true} if the size is {@code 0}, {@code false} otherwise. */
+	public boolean isEmpty() {
+		return buffer.limit() == 0;
+	}
+
+	/**
+	 * Gets the byte at the given index.
+	 * @throws IndexOutOfBoundsException {@code index} is < 0 or >= size
+	 */
+	public byte byteAt(int index) {
+		return buffer.get(index);
+	}
+
+	/**
+	 * Returns a direct byte string with the bytes from {@code beginIndex} (inclusive) to
+	 * {@code endIndex} (exclusive), sharing the memory of this one.
+	 * @throws IndexOutOfBoundsException if the indexes are not valid.
+	 */
+	public DirectByteString substring(int beginIndex, int endIndex) {
+		checkPositionIndexes(beginIndex, endIndex, size());
+		if (beginIndex == 0 && endIndex == size()) {
+			return this;
+		}
+		final ByteBuffer b = buffer.duplicate();
+		b.position(beginIndex);
+		b.limit(endIndex);
+		return of(b);
+	}
+
+	/** Returns a new read-only buffer sharing the memory of this byte string. */
+	public ByteBuffer asReadOnlyByteBuffer() {
+		return buffer.duplicate();
+	}
+
+	/**
+	 * Copies bytes into a ByteBuffer.
+	 * @param target ByteBuffer to copy into.
+	 * @throws ReadOnlyBufferException if the {@code target} is read-only
+	 * @throws BufferOverflowException if the {@code target}'s remaining() space is not large enough
+	 *           to hold the data.
+	 */
+	public void copyTo(ByteBuffer target) {
+		target.put(buffer.duplicate());
+	}
+
+	/**
+	 * Copies bytes into a buffer at the given offset.
+	 * @param target buffer to copy into
+	 * @param offset in the target buffer
+	 */
+	public void copyTo(byte[] target, int offset) {
+		buffer.duplicate().get(target, offset, size());
+	}
+
+	/** Copies bytes to a {@code byte[]}. */
+	public byte[] toByteArray() {
+		final byte[] copy = new byte[size()];
+		copyTo(copy, 0);
+		return copy;
+	}
+
+	/** Copies bytes to a heap byte string. */
+	public ByteString toByteString() {
+		return ByteString.wrap(toByteArray());
+	}
+
+	/** Returns whether the contents are equal to the ones of a heap byte string. */
+	public boolean contentEquals(ByteString other) {
+		checkNotNull(other, "The byte string to compare with must be provided");
+		return other.size() == size() && buffer.equals(other.asReadOnlyByteBuffer());
+	}
+
+	/** Constructs a new {@code String} by encoding the bytes in hexadecimal. */
+	public String toHexString() {
+		return ByteEncoding.base16().encode(buffer);
+	}
+
+	/** Default toString = toHexString (max 32 chars). */
+	@Override
+	public String toString() {
+		if (size() <= 16) {
+			return toHexString();
+		}
+		return substring(0, 14).toHexString() + "...";
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof DirectByteString)) {
+			return false;
+		}
+		final DirectByteString other = (DirectByteString) o;
+		final int h1 = hash;
+		final int h2 = other.hash;
+		if (h1 != 0 && h2 != 0 && h1 != h2) {
+			return false;
+		}
+		return buffer.equals(other.buffer);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			final ByteBuffer b = buffer;
+			final int size = b.limit();
+			h = size;
+			for (int i = 0; i < size; i++) {
+				h = h * 31 + b.get(i);
+			}
+			if (h == 0) {
+				h = 1;
+			}
+			hash = h;
+		}
+		return h;
+	}
+
+	// =================================================================
+	// Serialization proxy
+
+	private static class SerializationProxy implements Serializable {
+		/** Serial UID. */
+		private static final long serialVersionUID = 6893405815318000219L;
+		private final byte[] bytes;
+
+		public SerializationProxy(DirectByteString s) {
+			this.bytes = s.toByteArray();
+		}
+
+		private Object readResolve() {
+			return DirectByteString.copyOf(bytes);
+		}
+	}
+
+	private Object writeReplace() {
+		return new SerializationProxy(this);
+	}
+
+	private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+		throw new InvalidObjectException("Proxy required");
+	}
+}
@@ -15,6 +15,8 @@
  */
 package net.derquinse.common.base;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.common.base.MoreObjects;
 
 /**
@@ -38,6 +40,21 @@ public final class IntegerWaterMark {
 		return new IntegerWaterMark(initialValue);
 	}
 
+	/**
+	 * Creates a new object with the provided values, e.g. a snapshot of a mutable watermark.
+	 * @param current Current value.
+	 * @param min Minimum value.
+	 * @param max Maximum value.
+	 * @return The created object.
+	 * @throws IllegalArgumentException if the current value is not between the minimum and the
+	 *           maximum.
+	 */
+	public static final IntegerWaterMark of(int current, int min, int max) {
+		checkArgument(min <= current && current <= max,
+				"The current value must be between the minimum and the maximum");
+		return new IntegerWaterMark(current, min, max);
+	}
+
 	/**
 	 * Creates a new object with initial value 0.
 	 * @return The created object.
@@ -56,6 +73,13 @@ public final class IntegerWaterMark {
 		this.max = initialValue;
 	}
 
+	/** Constructor for explicit values. */
+	private IntegerWaterMark(int current, int min, int max) {
+		this.current = current;
+		this.min = min;
+		this.max = max;
+	}
+
 	/**
 	 * Constructor for a modified value.
 	 * @param previous Previous value.
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.derquinse.common.base.CIString;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.Maps;
+
+/**
+ * Hash map keyed by case ignoring strings, with open addressing and linear probing. Lookups and
+ * removals accept, besides {@link CIString} keys, any {@link CharSequence}, which is compared
+ * ignoring case without building a case ignoring string, so looking up request headers or
+ * identifiers does not allocate. The views return immutable entries and do not support removal.
+ * Null keys and null values are not permitted. Not thread-safe.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class CIStringMap<V> extends AbstractMap<CIString, V> {
+	/** Keys. */
+	private CIString[] keys;
+	/** Values. */
+	private Object[] values;
+	/** Mask for slot indexes. */
+	private int mask;
+	/** Number of entries that triggers a resize. */
+	private int threshold;
+	/** Number of entries. */
+	private int size = 0;
+	/** Slots of the table. */
+	private final Slots slots = new Slots();
+	/** Entry set view. */
+	private Set<Entry<CIString, V>> entrySet;
+
+	/** Creates a new empty map. */
+	public static <V> CIStringMap<V> create() {
+		return create(0);
+	}
+
+	/**
+	 * Creates a new empty map.
+	 * @param expectedSize Expected number of entries.
+	 */
+	public static <V> CIStringMap<V> create(int expectedSize) {
+		return new CIStringMap<V>(expectedSize);
+	}
+
+	/** Constructor. */
+	private CIStringMap(int expectedSize) {
+		allocate(LinearProbing.capacity(expectedSize));
+	}
+
+	/** Allocates the storage for a capacity. */
+	private void allocate(int capacity) {
+		this.mask = capacity - 1;
+		this.threshold = LinearProbing.threshold(capacity);
+		this.keys = new CIString[capacity];
+		this.values = new Object[capacity];
+	}
+
+	/** Returns the value in a slot. */
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	/**
+	 * Finds a key.
+	 * @return The slot of the key or, if not found, {@code -slot - 1}, where slot is where it would be
+	 *         inserted.
+	 */
+	private int find(CIString key) {
+		int slot = LinearProbing.slot(key.hashCode(), mask);
+		CIString k;
+		while ((k = keys[slot]) != null) {
+			if (k.equals(key)) {
+				return slot;
+			}
+			slot = LinearProbing.next(slot, mask);
+		}
+		return -slot - 1;
+	}
+
+	/**
+	 * Finds a key given as a character sequence.
+	 * @return The slot of the key or a negative value if not found.
+	 */
+	private int find(CharSequence key) {
+		final int hash = CIString.caseInsensitiveHash(key);
+		int slot = LinearProbing.slot(hash, mask);
+		CIString k;
+		while ((k = keys[slot]) != null) {
+			if (k.hashCode() == hash && k.contentEquals(key)) {
+				return slot;
+			}
+			slot = LinearProbing.next(slot, mask);
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds a key given as an object.
+	 * @return The slot of the key or a negative value if not found.
+	 */
+	private int findObject(Object key) {
+		if (key instanceof CIString) {
+			return find((CIString) key);
+		}
+		if (key instanceof CharSequence) {
+			return find((CharSequence) key);
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns whether the map contains a key, which may be a {@link CIString} or a
+	 * {@link CharSequence}.
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return findObject(key) >= 0;
+	}
+
+	/**
+	 * Returns the value associated with a key, which may be a {@link CIString} or a
+	 * {@link CharSequence}, or {@code null} if there is none.
+	 */
+	@Override
+	public V get(Object key) {
+		final int slot = findObject(key);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	@Override
+	public V put(CIString key, V value) {
+		checkNotNull(key, "The key must be provided");
+		checkNotNull(value, "The value must be provided");
+		int slot = find(key);
+		if (slot >= 0) {
+			final V previous = valueAt(slot);
+			values[slot] = value;
+			return previous;
+		}
+		if (size >= threshold) {
+			rehash(LinearProbing.grow(keys.length));
+			slot = find(key);
+		}
+		slot = -slot - 1;
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		return null;
+	}
+
+	/** Associates a value with a string key, compared ignoring case. */
+	public V put(String key, V value) {
+		return put(CIString.valueOf(checkNotNull(key, "The key must be provided")), value);
+	}
+
+	/** Resizes the table. */
+	private void rehash(int capacity) {
+		final CIString[] oldKeys = keys;
+		final Object[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			final CIString k = oldKeys[i];
+			if (k != null) {
+				final int slot = LinearProbing.free(slots, k.hashCode(), mask);
+				keys[slot] = k;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Removes the mapping of a key, which may be a {@link CIString} or a {@link CharSequence}.
+	 */
+	@Override
+	public V remove(Object key) {
+		final int slot = findObject(key);
+		if (slot < 0) {
+			return null;
+		}
+		final V previous = valueAt(slot);
+		removeAt(slot);
+		return previous;
+	}
+
+	/** Removes the entry in an occupied slot, shifting back the following entries as needed. */
+	private void removeAt(int slot) {
+		size--;
+		LinearProbing.remove(slots, slot, mask);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	@Override
+	public Set<Entry<CIString, V>> entrySet() {
+		Set<Entry<CIString, V>> s = entrySet;
+		if (s == null) {
+			s = new EntrySet();
+			entrySet = s;
+		}
+		return s;
+	}
+
+	/** Entry set view. */
+	private final class EntrySet extends AbstractSet<Entry<CIString, V>> {
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<Entry<CIString, V>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public void clear() {
+			CIStringMap.this.clear();
+		}
+	}
+
+	/** Iterator over the occupied slots. */
+	private final class EntryIterator implements Iterator<Entry<CIString, V>> {
+		/** Next slot to check. */
+		private int slot = 0;
+
+		@Override
+		public boolean hasNext() {
+			while (slot < keys.length && keys[slot] == null) {
+				slot++;
+			}
+			return slot < keys.length;
+		}
+
+		@Override
+		public Entry<CIString, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Entry<CIString, V> e = Maps.immutableEntry(keys[slot], valueAt(slot));
+			slot++;
+			return e;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/** Slots of the table. */
+	private final class Slots implements LinearProbing.Slots {
+		@Override
+		public boolean isUsed(int slot) {
+			return keys[slot] != null;
+		}
+
+		@Override
+		public int hashAt(int slot) {
+			return keys[slot].hashCode();
+		}
+
+		@Override
+		public void move(int from, int to) {
+			keys[to] = keys[from];
+			values[to] = values[from];
+		}
+
+		@Override
+		public void clear(int slot) {
+			keys[slot] = null;
+			values[slot] = null;
+		}
+	}
+
+}
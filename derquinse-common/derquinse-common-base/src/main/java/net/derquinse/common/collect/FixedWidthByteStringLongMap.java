@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import net.derquinse.common.base.ByteString;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Map from byte strings of a fixed width (e.g. digests) to primitive long values, with the keys
+ * stored inline in a single byte array with open addressing and linear probing, and the values in a
+ * parallel long array. Each entry uses about the key width plus 8 bytes. Int values may be stored
+ * as longs. Keys are copied into the map. Null keys and keys of a different width are not
+ * permitted. Not thread-safe.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class FixedWidthByteStringLongMap {
+	/** Backing table. */
+	private final Table table;
+	/** Values. */
+	private long[] values;
+
+	/**
+	 * Creates a new empty map.
+	 * @param width Width of the keys in bytes.
+	 */
+	public static FixedWidthByteStringLongMap create(int width) {
+		return create(width, 0);
+	}
+
+	/**
+	 * Creates a new empty map.
+	 * @param width Width of the keys in bytes.
+	 * @param expectedSize Expected number of entries.
+	 */
+	public static FixedWidthByteStringLongMap create(int width, int expectedSize) {
+		return new FixedWidthByteStringLongMap(width, expectedSize);
+	}
+
+	/** Constructor. */
+	private FixedWidthByteStringLongMap(int width, int expectedSize) {
+		this.table = new Table(width, expectedSize);
+	}
+
+	/** Returns the width of the keys in bytes. */
+	public int width() {
+		return table.width();
+	}
+
+	/** Returns the number of entries. */
+	public int size() {
+		return table.size();
+	}
+
+	/** Returns whether the map is empty. */
+	public boolean isEmpty() {
+		return table.isEmpty();
+	}
+
+	/** Returns whether the map contains a key. */
+	public boolean containsKey(Object key) {
+		final ByteString k = table.asKey(key);
+		return k != null && table.find(k) >= 0;
+	}
+
+	/**
+	 * Returns the value associated with a key.
+	 * @param key Key to look up.
+	 * @param defaultValue Value to return if the key is not in the map.
+	 */
+	public long get(Object key, long defaultValue) {
+		final ByteString k = table.asKey(key);
+		if (k == null) {
+			return defaultValue;
+		}
+		final int slot = table.find(k);
+		return slot < 0 ? defaultValue : values[slot];
+	}
+
+	/**
+	 * Associates a value with a key.
+	 * @return Whether the key was not already in the map.
+	 * @throws IllegalArgumentException if the key has a different width.
+	 */
+	public boolean put(ByteString key, long value) {
+		final int slot = table.insert(key);
+		if (slot < 0) {
+			values[-slot - 1] = value;
+			return true;
+		}
+		values[slot] = value;
+		return false;
+	}
+
+	/**
+	 * Adds a delta to the value associated with a key, which is considered to be zero if the key is
+	 * not in the map.
+	 * @return The new value.
+	 * @throws IllegalArgumentException if the key has a different width.
+	 */
+	public long addTo(ByteString key, long delta) {
+		int slot = table.insert(key);
+		if (slot < 0) {
+			slot = -slot - 1;
+		}
+		values[slot] += delta;
+		return values[slot];
+	}
+
+	/**
+	 * Removes a key.
+	 * @return Whether the key was in the map.
+	 */
+	public boolean remove(Object key) {
+		final ByteString k = table.asKey(key);
+		if (k == null) {
+			return false;
+		}
+		final int slot = table.find(k);
+		if (slot < 0) {
+			return false;
+		}
+		table.removeAt(slot);
+		return true;
+	}
+
+	/** Removes every entry. */
+	public void clear() {
+		table.clear();
+	}
+
+	/** Returns the keys of the map, as new byte strings. The iterator supports removal. */
+	public Iterable<ByteString> keys() {
+		return new Iterable<ByteString>() {
+			@Override
+			public Iterator<ByteString> iterator() {
+				return table.new SlotIterator<ByteString>() {
+					@Override
+					ByteString get(int slot) {
+						return table.keyAt(slot);
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("width", width()).add("size", size()).toString();
+	}
+
+	/** Backing table, with the values in the enclosing map. */
+	private final class Table extends FixedWidthTable {
+		/** Constructor. */
+		Table(int width, int expectedSize) {
+			super(width);
+			init(expectedSize);
+		}
+
+		@Override
+		void allocateValues(int capacity) {
+			values = new long[capacity];
+		}
+
+		@Override
+		Object values() {
+			return values;
+		}
+
+		@Override
+		void copyValue(Object oldValues, int from, int to) {
+			values[to] = ((long[]) oldValues)[from];
+		}
+
+		@Override
+		void moveValue(int from, int to) {
+			values[to] = values[from];
+		}
+
+		@Override
+		void clearValue(int slot) {
+			values[slot] = 0L;
+		}
+
+		@Override
+		void clearValues() {
+			Arrays.fill(values, 0L);
+		}
+	}
+
+}
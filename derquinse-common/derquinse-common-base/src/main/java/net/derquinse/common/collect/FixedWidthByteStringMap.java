@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import net.derquinse.common.base.ByteString;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.Maps;
+
+/**
+ * Map keyed by byte strings of a fixed width (e.g. digests), with the keys stored inline in a
+ * single byte array with open addressing and linear probing, and the values in a parallel array.
+ * Each entry uses about the key width in bytes plus a reference, instead of a byte string, a byte
+ * array and a hash entry. Keys are copied into the map, and the views return new byte strings and
+ * immutable entries. Null keys, null values and keys of a different width are not permitted. Not
+ * thread-safe.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class FixedWidthByteStringMap<V> extends AbstractMap<ByteString, V> {
+	/** Backing table. */
+	private final Table table;
+	/** Values. */
+	private Object[] values;
+	/** Entry set view. */
+	private Set<Entry<ByteString, V>> entrySet;
+
+	/**
+	 * Creates a new empty map.
+	 * @param width Width of the keys in bytes.
+	 */
+	public static <V> FixedWidthByteStringMap<V> create(int width) {
+		return create(width, 0);
+	}
+
+	/**
+	 * Creates a new empty map.
+	 * @param width Width of the keys in bytes.
+	 * @param expectedSize Expected number of entries.
+	 */
+	public static <V> FixedWidthByteStringMap<V> create(int width, int expectedSize) {
+		return new FixedWidthByteStringMap<V>(width, expectedSize);
+	}
+
+	/** Constructor. */
+	private FixedWidthByteStringMap(int width, int expectedSize) {
+		this.table = new Table(width, expectedSize);
+	}
+
+	/** Returns the width of the keys in bytes. */
+	public int width() {
+		return table.width();
+	}
+
+	@Override
+	public int size() {
+		return table.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return table.isEmpty();
+	}
+
+	/** Returns the value in a slot. */
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		final ByteString k = table.asKey(key);
+		return k != null && table.find(k) >= 0;
+	}
+
+	@Override
+	public V get(Object key) {
+		final ByteString k = table.asKey(key);
+		if (k == null) {
+			return null;
+		}
+		final int slot = table.find(k);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * Associates a value with a key.
+	 * @throws IllegalArgumentException if the key has a different width.
+	 */
+	@Override
+	public V put(ByteString key, V value) {
+		if (value == null) {
+			throw new NullPointerException("The value must be provided");
+		}
+		int slot = table.insert(key);
+		if (slot < 0) {
+			slot = -slot - 1;
+		}
+		final V previous = valueAt(slot);
+		values[slot] = value;
+		return previous;
+	}
+
+	@Override
+	public V remove(Object key) {
+		final ByteString k = table.asKey(key);
+		if (k == null) {
+			return null;
+		}
+		final int slot = table.find(k);
+		if (slot < 0) {
+			return null;
+		}
+		final V previous = valueAt(slot);
+		table.removeAt(slot);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		table.clear();
+	}
+
+	@Override
+	public Set<Entry<ByteString, V>> entrySet() {
+		Set<Entry<ByteString, V>> s = entrySet;
+		if (s == null) {
+			s = new EntrySet();
+			entrySet = s;
+		}
+		return s;
+	}
+
+	/** Entry set view. */
+	private final class EntrySet extends AbstractSet<Entry<ByteString, V>> {
+		@Override
+		public int size() {
+			return table.size();
+		}
+
+		@Override
+		public Iterator<Entry<ByteString, V>> iterator() {
+			return table.new SlotIterator<Entry<ByteString, V>>() {
+				@Override
+				Entry<ByteString, V> get(int slot) {
+					return Maps.immutableEntry(table.keyAt(slot), valueAt(slot));
+				}
+			};
+		}
+
+		@Override
+		public void clear() {
+			table.clear();
+		}
+	}
+
+	/** Backing table, with the values in the enclosing map. */
+	private final class Table extends FixedWidthTable {
+		/** Constructor. */
+		Table(int width, int expectedSize) {
+			super(width);
+			init(expectedSize);
+		}
+
+		@Override
+		void allocateValues(int capacity) {
+			values = new Object[capacity];
+		}
+
+		@Override
+		Object values() {
+			return values;
+		}
+
+		@Override
+		void copyValue(Object oldValues, int from, int to) {
+			values[to] = ((Object[]) oldValues)[from];
+		}
+
+		@Override
+		void moveValue(int from, int to) {
+			values[to] = values[from];
+		}
+
+		@Override
+		void clearValue(int slot) {
+			values[slot] = null;
+		}
+
+		@Override
+		void clearValues() {
+			Arrays.fill(values, null);
+		}
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+import net.derquinse.common.base.ByteString;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Set of byte strings of a fixed width (e.g. digests), stored inline in a single byte array with
+ * open addressing and linear probing. Each element uses about its width in bytes, instead of a
+ * byte string, a byte array and a hash entry. Elements are copied into the set, and the iterator
+ * returns new byte strings. Null elements and elements of a different width are not permitted. Not
+ * thread-safe.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class FixedWidthByteStringSet extends AbstractSet<ByteString> {
+	/** Backing table. */
+	private final Table table;
+
+	/**
+	 * Creates a new empty set.
+	 * @param width Width of the elements in bytes.
+	 */
+	public static FixedWidthByteStringSet create(int width) {
+		return create(width, 0);
+	}
+
+	/**
+	 * Creates a new empty set.
+	 * @param width Width of the elements in bytes.
+	 * @param expectedSize Expected number of elements.
+	 */
+	public static FixedWidthByteStringSet create(int width, int expectedSize) {
+		return new FixedWidthByteStringSet(width, expectedSize);
+	}
+
+	/** Constructor. */
+	private FixedWidthByteStringSet(int width, int expectedSize) {
+		this.table = new Table(width, expectedSize);
+	}
+
+	/** Returns the width of the elements in bytes. */
+	public int width() {
+		return table.width();
+	}
+
+	@Override
+	public int size() {
+		return table.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return table.isEmpty();
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		final ByteString key = table.asKey(o);
+		return key != null && table.find(key) >= 0;
+	}
+
+	/**
+	 * Adds an element.
+	 * @throws IllegalArgumentException if the element has a different width.
+	 */
+	@Override
+	public boolean add(ByteString e) {
+		return table.insert(e) < 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		final ByteString key = table.asKey(o);
+		if (key == null) {
+			return false;
+		}
+		final int slot = table.find(key);
+		if (slot < 0) {
+			return false;
+		}
+		table.removeAt(slot);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		table.clear();
+	}
+
+	@Override
+	public Iterator<ByteString> iterator() {
+		return table.new SlotIterator<ByteString>() {
+			@Override
+			ByteString get(int slot) {
+				return table.keyAt(slot);
+			}
+		};
+	}
+
+	/** Backing table, with no values. */
+	private static final class Table extends FixedWidthTable {
+		/** Constructor. */
+		Table(int width, int expectedSize) {
+			super(width);
+			init(expectedSize);
+		}
+	}
+
+}
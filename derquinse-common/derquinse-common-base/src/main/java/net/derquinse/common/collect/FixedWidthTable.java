@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import net.derquinse.common.base.ByteString;
+
+/**
+ * Base class for open addressing hash tables keyed by byte strings of a fixed width. Keys are stored
+ * inline in a single byte array, and collisions are resolved by linear probing. Removals shift back
+ * the following entries, so no tombstones are needed. The hash of a key is the one of the
+ * equivalent byte string, so the cached value is used for lookups. Subclasses store the values, if
+ * any, in parallel arrays. Intended to be used by composition. Not thread-safe.
+ * @author Andres Rodriguez
+ */
+abstract class FixedWidthTable implements LinearProbing.Slots {
+	/** Key width. */
+	private final int width;
+	/** Keys. */
+	private byte[] keys;
+	/** Occupied slots bitmap. */
+	private long[] used;
+	/** Capacity in slots, a power of two. */
+	private int capacity;
+	/** Mask for slot indexes. */
+	private int mask;
+	/** Number of entries that triggers a resize. */
+	private int threshold;
+	/** Number of entries. */
+	private int size = 0;
+
+	/**
+	 * Constructor.
+	 * @param width Key width in bytes.
+	 */
+	FixedWidthTable(int width) {
+		checkArgument(width > 0, "The key width must be > 0");
+		this.width = width;
+	}
+
+	/**
+	 * Allocates the initial storage. Must be called by the subclass constructors, once the value
+	 * storage can be allocated.
+	 * @param expectedSize Expected number of entries.
+	 */
+	final void init(int expectedSize) {
+		allocate(LinearProbing.capacity(expectedSize));
+	}
+
+	/** Allocates the storage for a capacity. */
+	private void allocate(int newCapacity) {
+		final long bytes = (long) newCapacity * width;
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalStateException(String.format("Too many %d-byte keys", width));
+		}
+		this.capacity = newCapacity;
+		this.mask = newCapacity - 1;
+		this.threshold = LinearProbing.threshold(newCapacity);
+		this.keys = new byte[(int) bytes];
+		this.used = new long[(newCapacity + 63) >>> 6];
+		allocateValues(newCapacity);
+	}
+
+	/** Computes the hash of a stored key, which is the same as the hash of the equivalent byte string. */
+	private int hashAt(byte[] array, int slot) {
+		final int off = slot * width;
+		int h = width;
+		for (int i = off, end = off + width; i < end; i++) {
+			h = h * 31 + array[i];
+		}
+		return h == 0 ? 1 : h;
+	}
+
+	/** Returns whether a slot is occupied. */
+	private static boolean isUsed(long[] bitmap, int slot) {
+		return (bitmap[slot >>> 6] & (1L << slot)) != 0;
+	}
+
+	@Override
+	public final boolean isUsed(int slot) {
+		return isUsed(used, slot);
+	}
+
+	@Override
+	public final int hashAt(int slot) {
+		return hashAt(keys, slot);
+	}
+
+	@Override
+	public final void move(int from, int to) {
+		System.arraycopy(keys, from * width, keys, to * width, width);
+		moveValue(from, to);
+	}
+
+	@Override
+	public final void clear(int slot) {
+		used[slot >>> 6] &= ~(1L << slot);
+		clearValue(slot);
+	}
+
+	/** Returns the key width. */
+	final int width() {
+		return width;
+	}
+
+	/** Returns the number of entries. */
+	final int size() {
+		return size;
+	}
+
+	/** Returns whether the table is empty. */
+	final boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns the argument as a key of this table or {@code null} if it is not a valid one. */
+	final ByteString asKey(Object key) {
+		if (key instanceof ByteString) {
+			final ByteString k = (ByteString) key;
+			if (k.size() == width) {
+				return k;
+			}
+		}
+		return null;
+	}
+
+	/** Checks that a key is valid for this table. */
+	final ByteString checkKey(ByteString key) {
+		checkNotNull(key, "The key must be provided");
+		checkArgument(key.size() == width, "The key must have %s bytes", width);
+		return key;
+	}
+
+	/**
+	 * Finds a key.
+	 * @return The slot of the key or, if not found, {@code -slot - 1}, where slot is where it would be
+	 *         inserted.
+	 */
+	final int find(ByteString key) {
+		int slot = LinearProbing.slot(key.hashCode(), mask);
+		while (isUsed(used, slot)) {
+			if (key.contentEquals(keys, slot * width, width)) {
+				return slot;
+			}
+			slot = LinearProbing.next(slot, mask);
+		}
+		return -slot - 1;
+	}
+
+	/**
+	 * Inserts a key if not present.
+	 * @return The slot of the key if it was already present or, if inserted, {@code -slot - 1}.
+	 */
+	final int insert(ByteString key) {
+		int slot = find(checkKey(key));
+		if (slot >= 0) {
+			return slot;
+		}
+		if (size >= threshold) {
+			rehash(LinearProbing.grow(capacity));
+			slot = find(key);
+		}
+		slot = -slot - 1;
+		key.copyTo(keys, 0, slot * width, width);
+		used[slot >>> 6] |= 1L << slot;
+		size++;
+		return -slot - 1;
+	}
+
+	/** Resizes the table. */
+	private void rehash(int newCapacity) {
+		final byte[] oldKeys = keys;
+		final long[] oldUsed = used;
+		final int oldCapacity = capacity;
+		final Object oldValues = values();
+		allocate(newCapacity);
+		for (int i = 0; i < oldCapacity; i++) {
+			if (isUsed(oldUsed, i)) {
+				final int slot = LinearProbing.free(this, hashAt(oldKeys, i), mask);
+				System.arraycopy(oldKeys, i * width, keys, slot * width, width);
+				used[slot >>> 6] |= 1L << slot;
+				copyValue(oldValues, i, slot);
+			}
+		}
+	}
+
+	/** Removes the entry in an occupied slot, shifting back the following entries as needed. */
+	final void removeAt(int slot) {
+		size--;
+		LinearProbing.remove(this, slot, mask);
+	}
+
+	/** Removes every entry. */
+	final void clear() {
+		Arrays.fill(used, 0L);
+		clearValues();
+		size = 0;
+	}
+
+	/** Returns the key stored in an occupied slot, as a new byte string. */
+	final ByteString keyAt(int slot) {
+		return ByteString.copyFrom(keys, slot * width, width);
+	}
+
+	/** Returns the first empty slot. There is always one, as the table is never full. */
+	private int firstFree() {
+		int slot = 0;
+		while (isUsed(used, slot)) {
+			slot++;
+		}
+		return slot;
+	}
+
+	/** Allocates the value storage. The default implementation does nothing. */
+	void allocateValues(int capacity) {
+	}
+
+	/** Returns the value storage. The default implementation returns {@code null}. */
+	Object values() {
+		return null;
+	}
+
+	/** Copies a value from a previous storage to the current one. The default does nothing. */
+	void copyValue(Object oldValues, int from, int to) {
+	}
+
+	/** Moves a value between slots. The default implementation does nothing. */
+	void moveValue(int from, int to) {
+	}
+
+	/** Clears the value of a slot. The default implementation does nothing. */
+	void clearValue(int slot) {
+	}
+
+	/** Clears every value. The default implementation does nothing. */
+	void clearValues() {
+	}
+
+	/**
+	 * Base class for iterators over the occupied slots, supporting removal. The slots are visited
+	 * starting after an empty one, so no cluster wraps around the end of the iteration and the
+	 * entries shifted back by a removal never move to an already visited slot. Only the current
+	 * slot may receive a not yet visited entry, so it is visited again in that case.
+	 */
+	abstract class SlotIterator<T> implements Iterator<T> {
+		/** Empty slot after which the iteration starts. */
+		private final int origin = firstFree();
+		/** Position of the next occupied slot, relative to the origin, or -1 if there is none. */
+		private int next = nextPosition(0);
+		/** Position of the last returned slot, or -1 if there is none or it has been removed. */
+		private int last = -1;
+
+		/** Returns the element for an occupied slot. */
+		abstract T get(int slot);
+
+		/** Returns the slot for a position. */
+		private int slotAt(int position) {
+			return (origin + 1 + position) & mask;
+		}
+
+		/** Returns the first position with an occupied slot starting at the provided one, or -1. */
+		private int nextPosition(int from) {
+			for (int p = from; p < capacity; p++) {
+				if (isUsed(used, slotAt(p))) {
+					return p;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		public final boolean hasNext() {
+			return next >= 0;
+		}
+
+		@Override
+		public final T next() {
+			if (next < 0) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = nextPosition(next + 1);
+			return get(slotAt(last));
+		}
+
+		@Override
+		public final void remove() {
+			checkState(last >= 0, "No element to remove");
+			removeAt(slotAt(last));
+			next = nextPosition(last);
+			last = -1;
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import net.derquinse.common.base.NotInstantiable;
+
+/**
+ * Support methods for the open addressing hash tables of this package, which use power of two
+ * capacities and linear probing. Removals shift back the following entries of the cluster, so no
+ * tombstones are needed.
+ * @author Andres Rodriguez
+ */
+final class LinearProbing extends NotInstantiable {
+	/** Minimum capacity. */
+	static final int MIN_CAPACITY = 16;
+	/** Maximum capacity. */
+	static final int MAX_CAPACITY = 1 << 30;
+
+	/** Not instantiable. */
+	private LinearProbing() {
+	}
+
+	/** Slots of a table. */
+	interface Slots {
+		/** Returns whether a slot is occupied. */
+		boolean isUsed(int slot);
+
+		/** Returns the hash of the key in an occupied slot. */
+		int hashAt(int slot);
+
+		/** Moves the entry in an occupied slot to an empty one. */
+		void move(int from, int to);
+
+		/** Empties an occupied slot. */
+		void clear(int slot);
+	}
+
+	/** Returns the initial capacity for an expected number of entries. */
+	static int capacity(int expectedSize) {
+		checkArgument(expectedSize >= 0, "The expected size must be >= 0");
+		int c = MIN_CAPACITY;
+		while (c < MAX_CAPACITY && threshold(c) < expectedSize) {
+			c <<= 1;
+		}
+		return c;
+	}
+
+	/** Returns the number of entries that triggers a resize for a capacity. */
+	static int threshold(int capacity) {
+		return capacity / 4 * 3;
+	}
+
+	/**
+	 * Returns the capacity after growing a table.
+	 * @throws IllegalStateException if the maximum capacity has already been reached.
+	 */
+	static int grow(int capacity) {
+		if (capacity >= MAX_CAPACITY) {
+			throw new IllegalStateException("Maximum capacity reached");
+		}
+		return capacity << 1;
+	}
+
+	/** Returns the ideal slot for a hash code. */
+	static int slot(int hash, int mask) {
+		hash *= 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	/** Returns the slot following the provided one. */
+	static int next(int slot, int mask) {
+		return (slot + 1) & mask;
+	}
+
+	/** Returns the first empty slot for a hash code, to be used when rehashing. */
+	static int free(Slots slots, int hash, int mask) {
+		int slot = slot(hash, mask);
+		while (slots.isUsed(slot)) {
+			slot = next(slot, mask);
+		}
+		return slot;
+	}
+
+	/**
+	 * Removes the entry in an occupied slot, shifting back the following entries of the cluster as
+	 * needed. Entries are only moved to slots that precede them in the cluster.
+	 */
+	static void remove(Slots slots, int slot, int mask) {
+		int hole = slot;
+		int next = next(hole, mask);
+		while (slots.isUsed(next)) {
+			final int ideal = slot(slots.hashAt(next), mask);
+			// The entry may be moved to the hole if the hole is not before its ideal slot.
+			if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+				slots.move(next, hole);
+				hole = next;
+			}
+			next = next(next, mask);
+		}
+		slots.clear(hole);
+	}
+
+}
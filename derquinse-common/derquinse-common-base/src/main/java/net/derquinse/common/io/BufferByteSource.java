@@ -42,6 +42,11 @@ final class BufferByteSource extends ByteSource {
 		this.bytes = checkNotNull(bytes);
 	}
 
+	/** Returns the backing buffer. */
+	ByteBuffer buffer() {
+		return bytes;
+	}
+
 	/** Returns a read-only view of the buffer. */
 	ByteBuffer view() {
 		return bytes.asReadOnlyBuffer();
@@ -16,25 +16,36 @@
 package net.derquinse.common.io;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import net.derquinse.common.base.ByteString;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 import com.google.common.io.BaseEncoding;
 
 /**
- * Heap for byte source backed by a single byte array.
+ * Heap for byte source backed by a single byte array, or a range of it.
  * @author Andres Rodriguez
  */
 final class ByteArrayByteSource extends HeapByteSource {
 	/** Backing array. */
 	private final byte[] bytes;
+	/** Offset of the first byte. */
+	private final int offset;
+	/** Number of bytes. */
+	private final int length;
 
 	/**
 	 * Constructor. The array is not copied so it should not be modified.
@@ -42,35 +53,76 @@ final class ByteArrayByteSource extends HeapByteSource {
 	 */
 	ByteArrayByteSource(byte[] bytes) {
 		this.bytes = checkNotNull(bytes);
+		this.offset = 0;
+		this.length = bytes.length;
+	}
+
+	/**
+	 * Constructor. The array is not copied so it should not be modified.
+	 * @param bytes Backing bytes.
+	 * @param offset Offset of the first byte.
+	 * @param length Number of bytes.
+	 */
+	ByteArrayByteSource(byte[] bytes, int offset, int length) {
+		this.bytes = checkNotNull(bytes);
+		checkPositionIndexes(offset, offset + length, bytes.length);
+		this.offset = offset;
+		this.length = length;
 	}
 
 	@Override
 	public InputStream openStream() throws IOException {
-		return new ByteArrayInputStream(bytes);
+		return new ByteArrayInputStream(bytes, offset, length);
 	}
 
 	@Override
 	public long size() {
-		return bytes.length;
+		return length;
 	}
 
 	@Override
 	public byte[] read() {
-		return bytes.clone();
+		return Arrays.copyOfRange(bytes, offset, offset + length);
 	}
 
 	@Override
 	public long copyTo(OutputStream output) throws IOException {
-		output.write(bytes);
-		return bytes.length;
+		output.write(bytes, offset, length);
+		return length;
+	}
+
+	@Override
+	public ByteString toByteString() {
+		return ByteString.wrap(bytes, offset, length);
 	}
 
 	@Override
 	public HashCode hash(HashFunction hashFunction) throws IOException {
-		return hashFunction.hashBytes(bytes);
+		return hashFunction.hashBytes(bytes, offset, length);
+	}
+
+	@Override
+	void update(MessageDigest md) {
+		md.update(bytes, offset, length);
+	}
+
+	@Override
+	void putTo(Hasher hasher) {
+		hasher.putBytes(bytes, offset, length);
 	}
 
-	// TODO(user): Possibly override slice()
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		checkSlice(offset, length);
+		if (offset >= this.length) {
+			return EmptyByteSource.HEAP;
+		}
+		final int n = (int) Math.min(length, this.length - offset);
+		if (offset == 0 && n == this.length) {
+			return this;
+		}
+		return new ByteArrayByteSource(bytes, this.offset + (int) offset, n);
+	}
 
 	@Override
 	public MemoryByteSource merge() {
@@ -85,7 +137,7 @@ final class ByteArrayByteSource extends HeapByteSource {
 
 	@Override
 	public SingleDirectByteSource toDirect(boolean merge) {
-		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(length);
 		writeTo(buffer);
 		buffer.flip();
 		return new SingleDirectByteSource(buffer);
@@ -99,16 +151,16 @@ final class ByteArrayByteSource extends HeapByteSource {
 
 	@Override
 	int writeTo(ByteBuffer buffer) {
-		final int n = Math.min(bytes.length, buffer.remaining());
-		buffer.put(bytes, 0, n);
+		final int n = Math.min(length, buffer.remaining());
+		buffer.put(bytes, offset, n);
 		return n;
 	}
 
 	@Override
 	int writeTo(byte[] buffer, int offset) {
-		final int n = Math.max(0, Math.min(bytes.length, buffer.length - offset));
+		final int n = Math.max(0, Math.min(length, buffer.length - offset));
 		if (n > 0) {
-			System.arraycopy(bytes, 0, buffer, offset, n);
+			System.arraycopy(bytes, this.offset, buffer, offset, n);
 		}
 		return n;
 	}
@@ -118,9 +170,14 @@ final class ByteArrayByteSource extends HeapByteSource {
 		return 1;
 	}
 
+	@Override
+	ByteBuffer view() {
+		return ByteBuffer.wrap(bytes, offset, length).slice().asReadOnlyBuffer();
+	}
+
 	@Override
 	public String toString() {
-		return "ByteArrayByteSource(" + BaseEncoding.base16().encode(bytes) + ")";
+		return "ByteArrayByteSource(" + BaseEncoding.base16().encode(bytes, offset, length) + ")";
 	}
 
 }
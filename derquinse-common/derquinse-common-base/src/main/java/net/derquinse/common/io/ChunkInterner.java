@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Interner of the chunks of memory byte sources. Once a chunk is completely loaded it is hashed
+ * and, if an identical chunk is already in use, the existing one is shared instead. Chunks are weakly
+ * referenced, so they are only kept while in use by some source. Sources that are merged after
+ * loading do not benefit from interning.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class ChunkInterner {
+	/** Hash function used to identify chunks. */
+	private static final HashFunction HASH = Hashing.murmur3_128();
+
+	/** Maximum number of chunks of each kind. */
+	private final long maxSize;
+	/** Heap chunks. */
+	private final ConcurrentMap<HashCode, MemoryByteSource> heap;
+	/** Direct chunks. */
+	private final ConcurrentMap<HashCode, MemoryByteSource> direct;
+	/** Number of interned chunks. */
+	private final AtomicLong chunkCount = new AtomicLong();
+	/** Number of interned bytes. */
+	private final AtomicLong byteCount = new AtomicLong();
+	/** Number of reused chunks. */
+	private final AtomicLong reusedChunkCount = new AtomicLong();
+	/** Number of reused bytes. */
+	private final AtomicLong reusedByteCount = new AtomicLong();
+
+	/** Creates a new interner with no limit in the number of tracked chunks. */
+	public static ChunkInterner of() {
+		return new ChunkInterner(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new interner.
+	 * @param maxSize Maximum number of tracked chunks of each kind (heap and direct).
+	 */
+	public static ChunkInterner of(long maxSize) {
+		checkArgument(maxSize > 0, "The maximum number of chunks must be > 0");
+		return new ChunkInterner(maxSize);
+	}
+
+	/** Creates a table of chunks. */
+	private static ConcurrentMap<HashCode, MemoryByteSource> table(long maxSize) {
+		final CacheBuilder<Object, Object> b = CacheBuilder.newBuilder().weakValues();
+		if (maxSize < Long.MAX_VALUE) {
+			b.maximumSize(maxSize);
+		}
+		return b.<HashCode, MemoryByteSource> build().asMap();
+	}
+
+	/** Constructor. */
+	private ChunkInterner(long maxSize) {
+		this.maxSize = maxSize;
+		this.heap = table(maxSize);
+		this.direct = table(maxSize);
+	}
+
+	/**
+	 * Interns a chunk.
+	 * @return The provided chunk or an existing one with the same contents and kind.
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends MemoryByteSource> T intern(T chunk) {
+		final long size = chunk.size();
+		chunkCount.incrementAndGet();
+		byteCount.addAndGet(size);
+		try {
+			final HashCode key = chunk.hash(HASH);
+			final ConcurrentMap<HashCode, MemoryByteSource> table = chunk.isDirect() ? direct : heap;
+			final MemoryByteSource existing = table.putIfAbsent(key, chunk);
+			if (existing != null && existing.getClass() == chunk.getClass() && existing.contentEquals(chunk)) {
+				reusedChunkCount.incrementAndGet();
+				reusedByteCount.addAndGet(size);
+				return (T) existing;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // should not happen
+		}
+		return chunk;
+	}
+
+	/** Returns the maximum number of tracked chunks of each kind. */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/** Returns the approximate number of tracked chunks. */
+	public long size() {
+		return heap.size() + direct.size();
+	}
+
+	/** Returns the number of interned chunks. */
+	public long chunkCount() {
+		return chunkCount.get();
+	}
+
+	/** Returns the number of interned bytes. */
+	public long byteCount() {
+		return byteCount.get();
+	}
+
+	/** Returns the number of interned chunks that were replaced by an existing one. */
+	public long reusedChunkCount() {
+		return reusedChunkCount.get();
+	}
+
+	/** Returns the number of interned bytes that were replaced by an existing chunk. */
+	public long reusedByteCount() {
+		return reusedByteCount.get();
+	}
+
+	/** Returns the ratio of interned bytes that were replaced by an existing chunk. */
+	public double dedupRatio() {
+		final long bytes = byteCount.get();
+		return bytes == 0 ? 0.0 : (double) reusedByteCount.get() / bytes;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("maxSize", maxSize).add("size", size())
+				.add("dedupRatio", dedupRatio()).toString();
+	}
+
+}
@@ -17,13 +17,18 @@ package net.derquinse.common.io;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
+import static net.derquinse.common.io.InternalPreconditions.checkSingleChunk;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.List;
 
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
 
 /**
  * Direct memory byte source backed by several chunks.
@@ -51,14 +56,42 @@ final class ChunkedDirectByteSource extends DirectByteSource {
 		return chunks.getTotalSize();
 	}
 
+	@Override
+	public long copyTo(OutputStream output) throws IOException {
+		return chunks.copyTo(checkNotNull(output));
+	}
+
+	@Override
+	void update(MessageDigest md) throws IOException {
+		chunks.update(md);
+	}
+
+	@Override
+	void putTo(Hasher hasher) throws IOException {
+		chunks.putTo(hasher);
+	}
+
 	@Override
 	public MemoryByteSource merge() {
-		final ByteBuffer buffer = ByteBuffer.allocateDirect(chunks.getTotalSize());
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(checkSingleChunk(chunks.getTotalSize()));
 		writeTo(buffer);
 		buffer.flip();
 		return new SingleDirectByteSource(buffer);
 	}
 
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		checkSlice(offset, length);
+		if (offset >= chunks.getTotalSize() || length == 0) {
+			return EmptyByteSource.DIRECT;
+		}
+		final List<SingleDirectByteSource> list = chunks.slice(offset, length);
+		if (list.size() == 1) {
+			return list.get(0);
+		}
+		return new ChunkedDirectByteSource(new Chunks<SingleDirectByteSource>(list));
+	}
+
 	@Override
 	public MemoryByteSource merge(int chunkSize) {
 		return chunks.merge(this, chunkSize);
@@ -67,7 +100,7 @@ final class ChunkedDirectByteSource extends DirectByteSource {
 	@Override
 	public MemoryByteSource toHeap(boolean merge) {
 		if (merge) {
-			byte[] buffer = new byte[chunks.getTotalSize()];
+			byte[] buffer = new byte[checkSingleChunk(chunks.getTotalSize())];
 			writeTo(buffer, 0);
 			return new ByteArrayByteSource(buffer);
 		} else {
@@ -87,7 +120,7 @@ final class ChunkedDirectByteSource extends DirectByteSource {
 		} else if (chunkSize >= chunks.getTotalSize()) {
 			return toHeap(true);
 		}
-		return MemoryByteSourceLoader.get().chunkSize(chunkSize).copy(this);
+		return MemoryByteSourceLoader.copier(false, chunkSize).copy(this);
 	}
 
 	@Override
@@ -105,4 +138,11 @@ final class ChunkedDirectByteSource extends DirectByteSource {
 		return chunks.size();
 	}
 
+	@Override
+	void free() {
+		for (SingleDirectByteSource s : chunks) {
+			s.free();
+		}
+	}
+
 }
@@ -17,13 +17,18 @@ package net.derquinse.common.io;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
+import static net.derquinse.common.io.InternalPreconditions.checkSingleChunk;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.List;
 
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
 
 /**
  * Heap for byte source backed by several chunks.
@@ -51,13 +56,41 @@ final class ChunkedHeapByteSource extends HeapByteSource {
 		return chunks.getTotalSize();
 	}
 
+	@Override
+	public long copyTo(OutputStream output) throws IOException {
+		return chunks.copyTo(checkNotNull(output));
+	}
+
+	@Override
+	void update(MessageDigest md) throws IOException {
+		chunks.update(md);
+	}
+
+	@Override
+	void putTo(Hasher hasher) throws IOException {
+		chunks.putTo(hasher);
+	}
+
 	@Override
 	public MemoryByteSource merge() {
-		final byte[] buffer = new byte[chunks.getTotalSize()];
+		final byte[] buffer = new byte[checkSingleChunk(chunks.getTotalSize())];
 		writeTo(buffer, 0);
 		return new ByteArrayByteSource(buffer);
 	}
 
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		checkSlice(offset, length);
+		if (offset >= chunks.getTotalSize() || length == 0) {
+			return EmptyByteSource.HEAP;
+		}
+		final List<ByteArrayByteSource> list = chunks.slice(offset, length);
+		if (list.size() == 1) {
+			return list.get(0);
+		}
+		return new ChunkedHeapByteSource(new Chunks<ByteArrayByteSource>(list));
+	}
+
 	@Override
 	public MemoryByteSource merge(int chunkSize) {
 		return chunks.merge(this, chunkSize);
@@ -66,7 +99,7 @@ final class ChunkedHeapByteSource extends HeapByteSource {
 	@Override
 	public MemoryByteSource toDirect(boolean merge) {
 		if (merge) {
-			ByteBuffer buffer = ByteBuffer.allocateDirect(chunks.getTotalSize());
+			ByteBuffer buffer = ByteBuffer.allocateDirect(checkSingleChunk(chunks.getTotalSize()));
 			writeTo(buffer);
 			buffer.flip();
 			return new SingleDirectByteSource(buffer);
@@ -87,7 +120,7 @@ final class ChunkedHeapByteSource extends HeapByteSource {
 		} else if (chunkSize >= chunks.getTotalSize()) {
 			return toDirect(true);
 		}
-		return MemoryByteSourceLoader.get().direct(true).chunkSize(chunkSize).copy(this);
+		return MemoryByteSourceLoader.copier(true, chunkSize).copy(this);
 	}
 
 	@Override
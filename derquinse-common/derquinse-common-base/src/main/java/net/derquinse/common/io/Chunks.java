@@ -21,13 +21,16 @@ import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.List;
 
 import com.google.common.collect.ForwardingList;
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.ByteSource;
-import com.google.common.primitives.Ints;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
 
 /**
  * A collection of chunks.
@@ -36,12 +39,14 @@ import com.google.common.primitives.Ints;
 final class Chunks<T extends MemoryByteSource> extends ForwardingList<T> {
 	/** Sources. */
 	private final ImmutableList<T> sources;
-	/** Backing supplier. */
-	private final ByteSource supplier;
+	/** Offset of each chunk. */
+	private final long[] offsets;
 	/** Total size. */
-	private final int totalSize;
+	private final long totalSize;
 	/** Chunk size. */
 	private final int chunkSize;
+	/** Whether every chunk but the last one has the chunk size. */
+	private final boolean uniform;
 
 	/**
 	 * Constructor.
@@ -51,13 +56,19 @@ final class Chunks<T extends MemoryByteSource> extends ForwardingList<T> {
 		checkNotNull(sources);
 		checkArgument(sources.size() > 1, "There must be at least two chunks");
 		this.sources = ImmutableList.copyOf(sources);
-		int total = Ints.saturatedCast(this.sources.get(0).size());
-		this.chunkSize = total;
-		for (int i = 1; i < this.sources.size(); i++) {
-			total += Ints.saturatedCast(this.sources.get(i).size());
+		final int n = this.sources.size();
+		this.offsets = new long[n];
+		this.chunkSize = (int) this.sources.get(0).size();
+		long total = 0L;
+		boolean u = chunkSize > 0;
+		for (int i = 0; i < n; i++) {
+			offsets[i] = total;
+			final long size = this.sources.get(i).size();
+			u &= (i == n - 1 || size == chunkSize);
+			total += size;
 		}
 		this.totalSize = total;
-		this.supplier = ByteSource.concat(this.sources);
+		this.uniform = u;
 	}
 
 	protected List<T> delegate() {
@@ -71,14 +82,67 @@ final class Chunks<T extends MemoryByteSource> extends ForwardingList<T> {
 
 	/** Opens a stream. */
 	public InputStream openStream() throws IOException {
-		return supplier.openStream();
+		return new ChunksInputStream(this);
+	}
+
+	/** Copies every chunk to an output stream, returning the number of bytes copied. */
+	long copyTo(OutputStream output) throws IOException {
+		for (T s : sources) {
+			s.copyTo(output);
+		}
+		return totalSize;
+	}
+
+	/** Updates a message digest with every chunk. */
+	void update(MessageDigest md) throws IOException {
+		for (T s : sources) {
+			s.update(md);
+		}
+	}
+
+	/** Puts every chunk into a hasher. */
+	void putTo(Hasher hasher) throws IOException {
+		for (T s : sources) {
+			s.putTo(hasher);
+		}
 	}
 
 	/** Returns the total size. */
-	int getTotalSize() {
+	long getTotalSize() {
 		return totalSize;
 	}
 
+	/** Returns the offset of a chunk. */
+	long getOffset(int index) {
+		return offsets[index];
+	}
+
+	/** Returns the index of the chunk containing a position, which must be less than the total size. */
+	int indexOf(long position) {
+		if (uniform) {
+			return (int) Math.min(position / chunkSize, offsets.length - 1);
+		}
+		final int i = Arrays.binarySearch(offsets, position);
+		return i >= 0 ? i : -i - 2;
+	}
+
+	/**
+	 * Returns the chunks backing a range of bytes, sliced as needed.
+	 * @param offset Offset of the range, which must be less than the total size.
+	 * @param length Length of the range, which must be greater than zero.
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> slice(long offset, long length) {
+		final long end = length >= totalSize - offset ? totalSize : offset + length;
+		final List<T> list = Lists.newArrayList();
+		for (int i = indexOf(offset); i < offsets.length && offsets[i] < end; i++) {
+			final T chunk = sources.get(i);
+			final long from = Math.max(offset - offsets[i], 0L);
+			list.add((T) chunk.slice(from, end - offsets[i] - from));
+		}
+		return list;
+	}
+
 	/** Writes to a byte array, at a specified offset, returning the number of bytes written. */
 	int writeTo(byte[] buffer, int offset) {
 		int written = 0;
@@ -108,7 +172,7 @@ final class Chunks<T extends MemoryByteSource> extends ForwardingList<T> {
 		} else if (chunkSize >= totalSize) {
 			return container.merge();
 		}
-		return MemoryByteSourceLoader.get().chunkSize(chunkSize).direct(container.isDirect()).copy(container);
+		return MemoryByteSourceLoader.copier(container.isDirect(), chunkSize).copy(container);
 	}
 
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.derquinse.common.io.InternalPreconditions.checkSingleChunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Unsynchronized input stream over a collection of chunks. Skipping and resetting locate the target
+ * chunk directly, without reading the skipped bytes.
+ * @author Andres Rodriguez
+ */
+final class ChunksInputStream extends InputStream {
+	/** Backing chunks. */
+	private final Chunks<?> chunks;
+	/** Total size. */
+	private final long size;
+	/** Current position. */
+	private long position = 0L;
+	/** Marked position. */
+	private long mark = 0L;
+	/** Index of the current chunk. */
+	private int index = -1;
+	/** View of the current chunk, positioned at the current position. */
+	private ByteBuffer current = null;
+
+	/**
+	 * Constructor.
+	 * @param chunks Backing chunks.
+	 */
+	ChunksInputStream(Chunks<?> chunks) {
+		this.chunks = checkNotNull(chunks);
+		this.size = chunks.getTotalSize();
+	}
+
+	/** Moves to a position, which must not be greater than the total size. */
+	private void seek(long target) {
+		position = target;
+		if (target >= size) {
+			index = chunks.size();
+			current = null;
+			return;
+		}
+		index = chunks.indexOf(target);
+		current = chunks.get(index).view();
+		current.position((int) (target - chunks.getOffset(index)));
+	}
+
+	/**
+	 * Returns the view of the current chunk with at least one remaining byte, or {@code null} if the
+	 * end of the stream has been reached.
+	 */
+	private ByteBuffer current() {
+		if (position >= size) {
+			return null;
+		}
+		if (current == null) {
+			seek(position);
+		}
+		while (!current.hasRemaining()) {
+			index++;
+			current = chunks.get(index).view();
+		}
+		return current;
+	}
+
+	/** Returns the number of remaining bytes. */
+	private long remaining() {
+		return size - position;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(remaining(), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int read() throws IOException {
+		final ByteBuffer b = current();
+		if (b == null) {
+			return -1; // EOF
+		}
+		position++;
+		return b.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		} else if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+		if (position >= size) {
+			return -1; // EOF
+		}
+		int read = 0;
+		ByteBuffer buffer;
+		while (read < len && (buffer = current()) != null) {
+			final int n = Math.min(len - read, buffer.remaining());
+			buffer.get(b, off + read, n);
+			read += n;
+			position += n;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		final long skipped = Math.min(n, remaining());
+		seek(position + skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public void mark(int readlimit) {
+		mark = position;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		seek(mark);
+	}
+
+	/**
+	 * Reads every remaining byte with a single copy into the returned array.
+	 * @throws IllegalStateException if the remaining bytes do not fit in an array.
+	 */
+	public byte[] readAllBytes() throws IOException {
+		final byte[] bytes = new byte[checkSingleChunk(remaining())];
+		int off = 0;
+		ByteBuffer buffer;
+		while ((buffer = current()) != null) {
+			final int n = buffer.remaining();
+			buffer.get(bytes, off, n);
+			off += n;
+			position += n;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes every remaining byte to an output stream, a whole chunk at a time.
+	 * @return The number of bytes written.
+	 */
+	public long transferTo(OutputStream out) throws IOException {
+		checkNotNull(out);
+		final long transferred = remaining();
+		if (transferred == 0) {
+			return 0;
+		}
+		current(); // locates the current chunk
+		final long from = position - chunks.getOffset(index);
+		chunks.get(index).slice(from, Long.MAX_VALUE).copyTo(out);
+		for (int i = index + 1; i < chunks.size(); i++) {
+			chunks.get(i).copyTo(out);
+		}
+		seek(size);
+		return transferred;
+	}
+
+}
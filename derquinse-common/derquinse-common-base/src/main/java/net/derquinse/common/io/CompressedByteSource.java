@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
+import static net.derquinse.common.io.InternalPreconditions.checkSingleChunk;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.annotations.Beta;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closer;
+
+/**
+ * Memory byte source which contents are stored compressed as a single gzip stream. The size is the
+ * logical (uncompressed) one, and the contents are inflated on the fly when read. The stored gzip
+ * stream is available without recompression. Recently read sources may be kept inflated in an
+ * optional {@link InflatedSourceCache}. Conversions to heap or direct sources produce uncompressed
+ * ones.
+ * @author Andres Rodriguez
+ */
+@Beta
+public final class CompressedByteSource extends MemoryByteSource {
+	/** Buffer size used for inflation. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Stored gzip stream. */
+	private final MemoryByteSource gzipped;
+	/** Logical size. */
+	private final long size;
+	/** Loader used to inflate the contents. */
+	private final MemoryByteSourceLoader inflater;
+	/** Cache of inflated sources (may be null). */
+	private final InflatedSourceCache cache;
+
+	static MemoryOutputStream openStream(MemoryByteSourceLoader loader) {
+		return new Output(loader);
+	}
+
+	/** Constructor. */
+	private CompressedByteSource(MemoryByteSource gzipped, long size, MemoryByteSourceLoader inflater,
+			@Nullable InflatedSourceCache cache) {
+		this.gzipped = checkNotNull(gzipped);
+		this.size = size;
+		this.inflater = checkNotNull(inflater);
+		this.cache = cache;
+	}
+
+	/** Returns the stored gzip stream, which may be sent as is to a client supporting gzip. */
+	public MemoryByteSource getGzipped() {
+		return gzipped;
+	}
+
+	/** Returns the number of stored bytes. */
+	public long getCompressedSize() {
+		return gzipped.size();
+	}
+
+	/** Returns a copy of the contents inflated with the provided loader. */
+	private MemoryByteSource inflate(MemoryByteSourceLoader loader) {
+		try {
+			return loader.load(new GZIPInputStream(gzipped.openStream(), BUFFER_SIZE));
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // should not happen
+		}
+	}
+
+	/**
+	 * Returns an uncompressed copy of the contents, stored in the same kind of memory as the compressed
+	 * ones. If an inflated source cache is in use the copy is taken from it.
+	 */
+	public MemoryByteSource inflate() {
+		if (cache != null) {
+			return cache.get(this);
+		}
+		return inflate(inflater);
+	}
+
+	/** Called by the cache to inflate the contents. */
+	MemoryByteSource load() {
+		return inflate(inflater);
+	}
+
+	/** Opens a stream inflating the stored data. */
+	private InputStream openInflatingStream() throws IOException {
+		return new GZIPInputStream(gzipped.openStream(), BUFFER_SIZE);
+	}
+
+	@Override
+	public boolean isHeap() {
+		return gzipped.isHeap();
+	}
+
+	@Override
+	public boolean isDirect() {
+		return gzipped.isDirect();
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public InputStream openStream() throws IOException {
+		if (cache != null) {
+			return cache.get(this).openStream();
+		}
+		return openInflatingStream();
+	}
+
+	@Override
+	public byte[] read() throws IOException {
+		if (cache != null) {
+			return cache.get(this).read();
+		}
+		final byte[] bytes = new byte[checkSingleChunk(size)];
+		final Closer closer = Closer.create();
+		try {
+			ByteStreams.readFully(closer.register(openInflatingStream()), bytes);
+		} catch (Throwable t) {
+			throw closer.rethrow(t);
+		} finally {
+			closer.close();
+		}
+		return bytes;
+	}
+
+	@Override
+	public long copyTo(OutputStream output) throws IOException {
+		checkNotNull(output);
+		if (cache != null) {
+			return cache.get(this).copyTo(output);
+		}
+		final Closer closer = Closer.create();
+		try {
+			return ByteStreams.copy(closer.register(openInflatingStream()), output);
+		} catch (Throwable t) {
+			throw closer.rethrow(t);
+		} finally {
+			closer.close();
+		}
+	}
+
+	/** Returns a source sharing the inflation configuration with different stored data. */
+	private MemoryByteSource withGzipped(MemoryByteSource data) {
+		if (data == gzipped) {
+			return this;
+		}
+		return new CompressedByteSource(data, size, inflater, cache);
+	}
+
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		checkSlice(offset, length);
+		if (cache != null) {
+			return cache.get(this).slice(offset, length);
+		}
+		try {
+			final InputStream is = openInflatingStream();
+			try {
+				ByteStreams.skipFully(is, Math.min(offset, size));
+				return inflater.load(ByteStreams.limit(is, length));
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // should not happen
+		}
+	}
+
+	@Override
+	public MemoryByteSource merge() {
+		return withGzipped(gzipped.merge());
+	}
+
+	@Override
+	public MemoryByteSource merge(int chunkSize) {
+		return withGzipped(gzipped.merge(chunkSize));
+	}
+
+	@Override
+	public MemoryByteSource toHeap(boolean merge) {
+		return inflate(inflater.direct(false).merge(merge));
+	}
+
+	@Override
+	public MemoryByteSource toDirect(boolean merge) {
+		return inflate(inflater.direct(true).merge(merge));
+	}
+
+	@Override
+	public MemoryByteSource toHeap(int chunkSize) {
+		checkChunkSize(chunkSize);
+		return inflate(inflater.direct(false).chunkSize(chunkSize));
+	}
+
+	@Override
+	public MemoryByteSource toDirect(int chunkSize) {
+		checkChunkSize(chunkSize);
+		return inflate(inflater.direct(true).chunkSize(chunkSize));
+	}
+
+	@Override
+	int writeTo(ByteBuffer buffer) {
+		final int n = (int) Math.min(size, buffer.remaining());
+		final byte[] bytes = new byte[Math.min(n, BUFFER_SIZE)];
+		try {
+			final InputStream is = openStream();
+			try {
+				int remaining = n;
+				while (remaining > 0) {
+					final int r = Math.min(remaining, bytes.length);
+					ByteStreams.readFully(is, bytes, 0, r);
+					buffer.put(bytes, 0, r);
+					remaining -= r;
+				}
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // should not happen
+		}
+		return n;
+	}
+
+	@Override
+	int writeTo(byte[] buffer, int offset) {
+		final int n = (int) Math.max(0, Math.min(size, buffer.length - offset));
+		try {
+			final InputStream is = openStream();
+			try {
+				ByteStreams.readFully(is, buffer, offset, n);
+			} finally {
+				is.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // should not happen
+		}
+		return n;
+	}
+
+	@Override
+	int chunks() {
+		return gzipped.chunks();
+	}
+
+	@Override
+	public String toString() {
+		return "CompressedByteSource(" + size + " bytes, " + gzipped.size() + " stored)";
+	}
+
+	/** Gzip output stream with a configurable compression level. */
+	private static final class LevelOutputStream extends GZIPOutputStream {
+		LevelOutputStream(OutputStream out, int level) throws IOException {
+			super(out, BUFFER_SIZE);
+			def.setLevel(level);
+		}
+	}
+
+	/** Compressing output stream. */
+	private static final class Output extends MemoryOutputStream {
+		/** Stream receiving the compressed data. */
+		private final MemoryOutputStream target;
+		/** Compressing stream. */
+		private final GZIPOutputStream gzip;
+		/** Number of uncompressed bytes. */
+		private long size = 0;
+
+		/** Constructor. */
+		Output(MemoryByteSourceLoader loader) {
+			super(loader);
+			this.target = loader.storage().openStream();
+			try {
+				this.gzip = new LevelOutputStream(target, loader.getCompressionLevel());
+			} catch (IOException e) {
+				throw new IllegalStateException(e); // should not happen
+			}
+		}
+
+		@Override
+		void add(byte b) throws IOException {
+			gzip.write(b);
+			size++;
+		}
+
+		@Override
+		void add(byte[] b, int off, int len) throws IOException {
+			gzip.write(b, off, len);
+			size += len;
+		}
+
+		@Override
+		MemoryByteSource build() {
+			try {
+				gzip.finish();
+			} catch (IOException e) {
+				throw new IllegalStateException(e); // should not happen
+			}
+			return new CompressedByteSource(target.toByteSource(), size, loader.storage(), loader.getInflatedCache());
+		}
+	}
+
+}
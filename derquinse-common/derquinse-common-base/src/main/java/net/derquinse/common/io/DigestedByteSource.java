@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+
+import net.derquinse.common.base.ByteString;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Memory byte source together with the digests of its contents computed while it was loaded.
+ * @author Andres Rodriguez
+ * @see MemoryByteSourceLoader#digest(String...)
+ */
+@Beta
+@Immutable
+public final class DigestedByteSource {
+	/** Loaded source. */
+	private final MemoryByteSource source;
+	/** Digests, indexed by algorithm. */
+	private final ImmutableMap<String, ByteString> digests;
+
+	/** Creates a new digested source. */
+	public static DigestedByteSource of(MemoryByteSource source, Map<String, ByteString> digests) {
+		return new DigestedByteSource(source, digests);
+	}
+
+	/** Constructor. */
+	private DigestedByteSource(MemoryByteSource source, Map<String, ByteString> digests) {
+		this.source = checkNotNull(source, "The source must be provided");
+		this.digests = ImmutableMap.copyOf(checkNotNull(digests, "The digests must be provided"));
+	}
+
+	/** Returns the loaded source. */
+	public MemoryByteSource getSource() {
+		return source;
+	}
+
+	/** Returns the digests, indexed by algorithm. */
+	public ImmutableMap<String, ByteString> getDigests() {
+		return digests;
+	}
+
+	/**
+	 * Returns the digest computed with the provided algorithm.
+	 * @throws IllegalArgumentException if the digest was not computed.
+	 */
+	public ByteString getDigest(String algorithm) {
+		final ByteString digest = digests.get(checkNotNull(algorithm, "The digest algorithm must be provided"));
+		checkArgument(digest != null, "Digest %s not computed", algorithm);
+		return digest;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("source", source).add("digests", digests).toString();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import net.derquinse.common.base.NotInstantiable;
+
+/**
+ * Package private support for the explicit release of direct buffers. The JDK does not provide a
+ * public API for it, so the cleaner of the buffer is invoked reflectively. If that is not possible
+ * the buffer is left to the garbage collector.
+ * @author Andres Rodriguez
+ */
+final class DirectBuffers extends NotInstantiable {
+	/** Unsafe instance (Java 9+). */
+	private static final Object UNSAFE;
+	/** Unsafe.invokeCleaner method (Java 9+). */
+	private static final Method INVOKE_CLEANER;
+	/** DirectByteBuffer.cleaner method (up to Java 8). */
+	private static final Method CLEANER;
+	/** Cleaner.clean method (up to Java 8). */
+	private static final Method CLEAN;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		Method cleaner = null;
+		Method clean = null;
+		try {
+			final Class<?> type = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		} catch (Throwable t) {
+			unsafe = null;
+			invokeCleaner = null;
+			try {
+				cleaner = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+				cleaner.setAccessible(true);
+				clean = cleaner.getReturnType().getMethod("clean");
+				clean.setAccessible(true);
+			} catch (Throwable t2) {
+				cleaner = null;
+				clean = null;
+			}
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+		CLEANER = cleaner;
+		CLEAN = clean;
+	}
+
+	/** Not instantiable. */
+	private DirectBuffers() {
+	}
+
+	/**
+	 * Releases the memory of a direct buffer. The buffer must have been returned by
+	 * {@link ByteBuffer#allocateDirect(int)} (i.e., it must not be a view) and must not be used
+	 * afterwards.
+	 * @return True if the memory was released, false if it is left to the garbage collector.
+	 */
+	static boolean free(ByteBuffer buffer) {
+		if (buffer == null || !buffer.isDirect()) {
+			return false;
+		}
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				return true;
+			}
+			if (CLEANER != null) {
+				final Object cleaner = CLEANER.invoke(buffer);
+				if (cleaner != null) {
+					CLEAN.invoke(cleaner);
+					return true;
+				}
+			}
+		} catch (Exception e) {
+			// Views can't be cleaned, left to the GC
+		}
+		return false;
+	}
+
+}
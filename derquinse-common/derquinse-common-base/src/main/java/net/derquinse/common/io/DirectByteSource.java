@@ -79,19 +79,40 @@ abstract class DirectByteSource extends MemoryByteSource {
 			super(loader);
 		}
 
-		@Override
-		void add(byte b) throws IOException {
-			final int chunkSize = loader.getChunkSize();
+		/** Makes sure there is room in the current buffer. */
+		private void ensureBuffer() {
 			if (buffer == null) {
-				buffer = ByteBuffer.allocateDirect(chunkSize);
+				buffer = ByteBuffer.allocateDirect(loader.getChunkSize());
 			} else if (buffer.remaining() <= 0) {
 				buffer.flip();
-				chunks.add(new SingleDirectByteSource(buffer));
-				buffer = ByteBuffer.allocateDirect(chunkSize);
+				final SingleDirectByteSource chunk = new SingleDirectByteSource(buffer);
+				final SingleDirectByteSource interned = intern(chunk);
+				chunks.add(interned);
+				if (interned == chunk) {
+					buffer = ByteBuffer.allocateDirect(loader.getChunkSize());
+				} else {
+					buffer.clear(); // the buffer can be reused
+				}
 			}
+		}
+
+		@Override
+		void add(byte b) throws IOException {
+			ensureBuffer();
 			buffer.put(b);
 		}
 
+		@Override
+		void add(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				ensureBuffer();
+				final int n = Math.min(len, buffer.remaining());
+				buffer.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
 		@Override
 		MemoryByteSource build() {
 			// Whether we have to copy to a smaller buffer
@@ -104,10 +125,13 @@ abstract class DirectByteSource extends MemoryByteSource {
 				bytes = ByteBuffer.allocateDirect(loaded);
 				bytes.put(buffer);
 				bytes.flip();
+				if (loader.isDisposableDirect()) {
+					DirectBuffers.free(buffer);
+				}
 			} else {
 				bytes = buffer;
 			}
-			chunks.add(new SingleDirectByteSource(bytes));
+			chunks.add(intern(new SingleDirectByteSource(bytes)));
 			return DirectByteSource.build(chunks);
 		}
 	}
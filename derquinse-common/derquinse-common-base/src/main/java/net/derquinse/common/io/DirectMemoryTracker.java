@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Sets;
+
+/**
+ * Tracker of the direct memory held by {@link DisposableByteSource}s. It keeps track of the live
+ * direct bytes and, optionally, detects sources that are garbage collected without having been
+ * disposed. For a sample of the allocations the stack trace is recorded and logged when a leak is
+ * found. Leaks are detected whenever a new source is tracked or {@link #poll()} is called.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class DirectMemoryTracker {
+	/** Logger. */
+	private static final Logger LOG = LoggerFactory.getLogger(DirectMemoryTracker.class);
+	/** Shared tracker without leak detection. */
+	private static final DirectMemoryTracker DEFAULT = new DirectMemoryTracker(0);
+
+	/** Sampling interval. */
+	private final int samplingInterval;
+	/** Queue of collected sources. */
+	private final ReferenceQueue<DisposableByteSource> queue = new ReferenceQueue<DisposableByteSource>();
+	/** Live records. */
+	private final Set<Record> records = Sets.newConcurrentHashSet();
+	/** Number of tracked sources. */
+	private final AtomicLong allocationCount = new AtomicLong();
+	/** Number of disposed sources. */
+	private final AtomicLong disposedCount = new AtomicLong();
+	/** Number of leaked sources. */
+	private final AtomicLong leakCount = new AtomicLong();
+	/** Live bytes. */
+	private final AtomicLong liveBytes = new AtomicLong();
+
+	/** Returns the shared tracker, which performs no leak detection. */
+	public static DirectMemoryTracker get() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Creates a new tracker.
+	 * @param samplingInterval One in how many allocations record its stack trace in order to report
+	 *          it if leaked. Zero disables the recording.
+	 */
+	public static DirectMemoryTracker of(int samplingInterval) {
+		checkArgument(samplingInterval >= 0, "The sampling interval must be >= 0");
+		return new DirectMemoryTracker(samplingInterval);
+	}
+
+	/** Constructor. */
+	private DirectMemoryTracker(int samplingInterval) {
+		this.samplingInterval = samplingInterval;
+	}
+
+	/** Returns the sampling interval. */
+	public int getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	/** Starts tracking a source. */
+	Record track(DisposableByteSource source) {
+		poll();
+		final long size = source.size();
+		final long n = allocationCount.incrementAndGet();
+		final Throwable trace;
+		if (samplingInterval > 0 && n % samplingInterval == 0) {
+			trace = new Throwable(String.format("Allocation of %d direct bytes", size));
+		} else {
+			trace = null;
+		}
+		final Record record = new Record(source, queue, size, trace);
+		records.add(record);
+		liveBytes.addAndGet(size);
+		return record;
+	}
+
+	/** Called when the memory of a source has been released. */
+	void released(Record record) {
+		record.clear();
+		if (records.remove(record)) {
+			liveBytes.addAndGet(-record.size);
+			disposedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Looks for sources that have been garbage collected without being disposed.
+	 * @return The number of leaked sources found.
+	 */
+	public int poll() {
+		int found = 0;
+		Reference<? extends DisposableByteSource> ref;
+		while ((ref = queue.poll()) != null) {
+			final Record record = (Record) ref;
+			if (records.remove(record)) {
+				found++;
+				liveBytes.addAndGet(-record.size);
+				leakCount.incrementAndGet();
+				if (record.trace != null) {
+					LOG.warn("Direct memory byte source of {} bytes garbage collected without being disposed",
+							record.size, record.trace);
+				}
+			}
+		}
+		return found;
+	}
+
+	/** Returns the number of tracked sources. */
+	public long allocationCount() {
+		return allocationCount.get();
+	}
+
+	/** Returns the number of disposed sources. */
+	public long disposedCount() {
+		return disposedCount.get();
+	}
+
+	/** Returns the number of sources found garbage collected without being disposed. */
+	public long leakCount() {
+		return leakCount.get();
+	}
+
+	/** Returns the number of live sources. */
+	public long liveSources() {
+		return records.size();
+	}
+
+	/** Returns the number of direct bytes held by live sources. */
+	public long liveBytes() {
+		return liveBytes.get();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("samplingInterval", samplingInterval).add("liveBytes", liveBytes())
+				.add("liveSources", liveSources()).add("leakCount", leakCount()).toString();
+	}
+
+	/** Tracking record. */
+	static final class Record extends WeakReference<DisposableByteSource> {
+		/** Tracked bytes. */
+		private final long size;
+		/** Allocation trace (may be null). */
+		private final Throwable trace;
+
+		/** Constructor. */
+		Record(DisposableByteSource source, ReferenceQueue<DisposableByteSource> queue, long size, Throwable trace) {
+			super(source, queue);
+			this.size = size;
+			this.trace = trace;
+		}
+	}
+
+}
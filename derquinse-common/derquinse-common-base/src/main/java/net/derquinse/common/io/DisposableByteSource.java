@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.derquinse.common.base.Disposable;
+import net.derquinse.common.util.concurrent.RefCounted;
+import net.derquinse.common.util.concurrent.Refs;
+
+import com.google.common.annotations.Beta;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+
+/**
+ * Direct memory byte source which memory is released explicitly when disposed instead of waiting
+ * for the garbage collector. Open streams keep the memory alive until they are closed. Once disposed,
+ * every operation throws {@link IllegalStateException}. Sources derived from this one (slices,
+ * merged or heap versions) are independent copies managed by the garbage collector.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class DisposableByteSource extends MemoryByteSource implements Disposable<MemoryByteSource> {
+	/** Backing source. */
+	private final MemoryByteSource source;
+	/** Memory tracker. */
+	private final DirectMemoryTracker tracker;
+	/** Tracking record. */
+	private final DirectMemoryTracker.Record record;
+	/** Reference to the backing source. */
+	private final RefCounted<MemoryByteSource> ref;
+	/** Whether the source has been disposed. */
+	private final AtomicBoolean disposed = new AtomicBoolean();
+
+	/** Constructor. */
+	DisposableByteSource(MemoryByteSource source, DirectMemoryTracker tracker) {
+		this.source = checkNotNull(source);
+		this.tracker = checkNotNull(tracker);
+		this.ref = Refs.counted(source, new Release());
+		this.record = tracker.track(this);
+	}
+
+	/** Acquires a reference to the backing source. */
+	private Disposable<MemoryByteSource> acquire() {
+		if (disposed.get()) {
+			throw new IllegalStateException("Source already disposed");
+		}
+		return ref.get();
+	}
+
+	/** Returns whether the source has been disposed. */
+	public boolean isDisposed() {
+		return disposed.get();
+	}
+
+	/** Returns this source, if not disposed. */
+	@Override
+	public MemoryByteSource get() {
+		if (disposed.get()) {
+			throw new IllegalStateException("Source already disposed");
+		}
+		return this;
+	}
+
+	/**
+	 * Disposes the source. The memory is released once every open stream has been closed.
+	 */
+	@Override
+	public void dispose() {
+		if (disposed.compareAndSet(false, true)) {
+			ref.shutdown();
+		}
+	}
+
+	@Override
+	public boolean isHeap() {
+		return false;
+	}
+
+	@Override
+	public boolean isDirect() {
+		return true;
+	}
+
+	@Override
+	public long size() {
+		return source.size();
+	}
+
+	@Override
+	public InputStream openStream() throws IOException {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return new RefInputStream(d.get().openStream(), d);
+		} catch (IOException e) {
+			d.dispose();
+			throw e;
+		} catch (RuntimeException e) {
+			d.dispose();
+			throw e;
+		}
+	}
+
+	@Override
+	public byte[] read() throws IOException {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().read();
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public long copyTo(OutputStream output) throws IOException {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().copyTo(output);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public HashCode hash(HashFunction hashFunction) throws IOException {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().hash(hashFunction);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	void update(MessageDigest md) throws IOException {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			d.get().update(md);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	void putTo(Hasher hasher) throws IOException {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			d.get().putTo(hasher);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	/** Returns a copy of a derived source if it shares memory with the backing source. */
+	private MemoryByteSource derived(MemoryByteSource derived, boolean shared) {
+		if (derived == source) {
+			return this;
+		}
+		if (shared && derived.size() > 0) {
+			return MemoryByteSourceLoader.get().direct(true).maxSize(Long.MAX_VALUE).copy(derived);
+		}
+		return derived;
+	}
+
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return derived(d.get().slice(offset, length), true);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public MemoryByteSource merge() {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return derived(d.get().merge(), false);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public MemoryByteSource merge(int chunkSize) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return derived(d.get().merge(chunkSize), false);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public MemoryByteSource toHeap(boolean merge) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().toHeap(merge);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public MemoryByteSource toDirect(boolean merge) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return derived(d.get().toDirect(merge), false);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public MemoryByteSource toHeap(int chunkSize) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().toHeap(chunkSize);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	public MemoryByteSource toDirect(int chunkSize) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return derived(d.get().toDirect(chunkSize), false);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	int writeTo(ByteBuffer buffer) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().writeTo(buffer);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	int writeTo(byte[] buffer, int offset) {
+		final Disposable<MemoryByteSource> d = acquire();
+		try {
+			return d.get().writeTo(buffer, offset);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	@Override
+	int chunks() {
+		return source.chunks();
+	}
+
+	@Override
+	public String toString() {
+		return "DisposableByteSource(" + source.size() + " bytes" + (disposed.get() ? ", disposed)" : ")");
+	}
+
+	/** Hook releasing the memory once the source is disposed and every stream closed. */
+	private final class Release implements Runnable {
+		@Override
+		public void run() {
+			source.free();
+			tracker.released(record);
+		}
+	}
+
+	/** Input stream holding a reference to the backing source. */
+	private static final class RefInputStream extends FilterInputStream {
+		/** Reference. */
+		private final Disposable<MemoryByteSource> ref;
+		/** Whether the stream is closed. */
+		private boolean closed = false;
+
+		/** Constructor. */
+		RefInputStream(InputStream in, Disposable<MemoryByteSource> ref) {
+			super(in);
+			this.ref = ref;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				super.close();
+			} finally {
+				ref.dispose();
+			}
+		}
+	}
+
+}
@@ -16,14 +16,17 @@
 package net.derquinse.common.io;
 
 import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 
 /**
  * Empty byte source.
@@ -80,7 +83,19 @@ final class EmptyByteSource extends MemoryByteSource {
 		return hashFunction.hashBytes(EmptyInputStream.EMPTY_ARRAY);
 	}
 
-	// TODO(user): Possibly override slice()
+	@Override
+	void update(MessageDigest md) {
+	}
+
+	@Override
+	void putTo(Hasher hasher) {
+	}
+
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		checkSlice(offset, length);
+		return this;
+	}
 
 	@Override
 	public MemoryByteSource merge() {
@@ -81,21 +81,41 @@ abstract class HeapByteSource extends MemoryByteSource {
 			super(loader);
 		}
 
-		@Override
-		void add(byte b) throws IOException {
-			final int chunkSize = loader.getChunkSize();
+		/** Makes sure there is room in the current buffer. */
+		private void ensureBuffer() {
 			if (buffer == null) {
-				buffer = new byte[chunkSize];
+				buffer = new byte[loader.getChunkSize()];
 				position = 0;
 			} else if (position >= buffer.length) {
-				chunks.add(new ByteArrayByteSource(buffer));
-				buffer = new byte[chunkSize];
+				final ByteArrayByteSource chunk = new ByteArrayByteSource(buffer);
+				final ByteArrayByteSource interned = intern(chunk);
+				chunks.add(interned);
+				if (interned == chunk) {
+					buffer = new byte[loader.getChunkSize()];
+				} // otherwise the buffer can be reused
 				position = 0;
 			}
+		}
+
+		@Override
+		void add(byte b) throws IOException {
+			ensureBuffer();
 			buffer[position] = b;
 			position++;
 		}
 
+		@Override
+		void add(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				ensureBuffer();
+				final int n = Math.min(len, buffer.length - position);
+				System.arraycopy(b, off, buffer, position, n);
+				position += n;
+				off += n;
+				len -= n;
+			}
+		}
+
 		@Override
 		MemoryByteSource build() {
 			if (position > 0) {
@@ -105,7 +125,7 @@ abstract class HeapByteSource extends MemoryByteSource {
 				} else {
 					loaded = Arrays.copyOf(buffer, position);
 				}
-				chunks.add(new ByteArrayByteSource(loaded));
+				chunks.add(intern(new ByteArrayByteSource(loaded)));
 			}
 			return HeapByteSource.build(chunks);
 		}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Bounded cache of inflated copies of recently read {@link CompressedByteSource}s, to avoid
+ * inflating hot entries on every read. Entries are evicted in least-recently-used order once the
+ * inflated bytes exceed the maximum weight, and are released when the compressed source is no
+ * longer reachable. It should be small compared to the data stored compressed.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class InflatedSourceCache {
+	/** Maximum weight. */
+	private final long maxWeight;
+	/** Inflated sources. */
+	private final Cache<CompressedByteSource, MemoryByteSource> cache;
+
+	/**
+	 * Creates a new cache.
+	 * @param maxWeight Maximum number of inflated bytes.
+	 */
+	public static InflatedSourceCache of(long maxWeight) {
+		return new InflatedSourceCache(maxWeight);
+	}
+
+	/** Constructor. */
+	private InflatedSourceCache(long maxWeight) {
+		checkArgument(maxWeight > 0, "The maximum weight must be > 0");
+		this.maxWeight = maxWeight;
+		this.cache = CacheBuilder.newBuilder().weakKeys().maximumWeight(maxWeight).weigher(new SourceWeigher())
+				.recordStats().build();
+	}
+
+	/** Returns the inflated copy of a source, inflating it if needed. */
+	MemoryByteSource get(final CompressedByteSource source) {
+		try {
+			return cache.get(source, new Callable<MemoryByteSource>() {
+				@Override
+				public MemoryByteSource call() throws Exception {
+					return source.load();
+				}
+			});
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} catch (UncheckedExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	/** Returns the maximum number of inflated bytes. */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/** Returns the approximate number of inflated sources. */
+	public long size() {
+		return cache.size();
+	}
+
+	/** Removes every inflated source. */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/** Returns the statistics of the underlying cache. */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("maxWeight", maxWeight).add("size", size()).toString();
+	}
+
+	/** Source weigher. */
+	private static final class SourceWeigher implements Weigher<CompressedByteSource, MemoryByteSource> {
+		@Override
+		public int weigh(CompressedByteSource key, MemoryByteSource value) {
+			return Ints.saturatedCast(value.size());
+		}
+	}
+
+}
@@ -38,7 +38,7 @@ final class InternalPreconditions extends NotInstantiable {
 	}
 
 	/** Checks that a maximum size is greater than zero, returning the checked value. */
-	static int checkMaxSize(int maxSize) {
+	static long checkMaxSize(long maxSize) {
 		checkArgument(maxSize > 0, "The maximum size must be > 0");
 		return maxSize;
 	}
@@ -47,7 +47,7 @@ final class InternalPreconditions extends NotInstantiable {
 	 * Checks that a size >= 0 and is smaller than or equal to maximum size, returning the checked
 	 * value.
 	 */
-	static int checkSize(int size, int maxSize) {
+	static long checkSize(long size, long maxSize) {
 		checkArgument(size >= 0, "The size must be >= 0");
 		if (size > checkMaxSize(maxSize)) {
 			throw new IllegalArgumentException(String.format("Size %d greater than maximum %d", size, maxSize));
@@ -55,6 +55,23 @@ final class InternalPreconditions extends NotInstantiable {
 		return size;
 	}
 
+	/** Checks the arguments of a slice operation. */
+	static void checkSlice(long offset, long length) {
+		checkArgument(offset >= 0, "The slice offset must be >= 0");
+		checkArgument(length >= 0, "The slice length must be >= 0");
+	}
+
+	/**
+	 * Checks that a source of the provided size can be stored in a single chunk, returning the size.
+	 * @throws IllegalStateException if the size is greater than {@link Integer#MAX_VALUE}.
+	 */
+	static int checkSingleChunk(long size) {
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalStateException(String.format("Size %d too large for a single chunk", size));
+		}
+		return (int) size;
+	}
+
 	/** Checks that a source byte array is provided. */
 	static byte[] checkSourceArray(byte[] source) {
 		return checkNotNull(source, "The source array must be provided");
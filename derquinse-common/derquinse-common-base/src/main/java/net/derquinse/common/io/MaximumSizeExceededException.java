@@ -26,16 +26,16 @@ public final class MaximumSizeExceededException extends IOException {
 	private static final long serialVersionUID = 2406621390826357905L;
 
 	/** Maximum size. */
-	private final int maxSize;
+	private final long maxSize;
 
 	/** Constructor. */
-	public MaximumSizeExceededException(int maxSize) {
+	public MaximumSizeExceededException(long maxSize) {
 		super(String.format("Maximum size of %d bytes exceeded", maxSize));
 		this.maxSize = InternalPreconditions.checkMaxSize(maxSize);
 	}
 
 	/** Returns the maximum size. */
-	public int getMaxSize() {
+	public long getMaxSize() {
 		return maxSize;
 	}
 }
\ No newline at end of file
@@ -16,18 +16,33 @@
 package net.derquinse.common.io;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static net.derquinse.common.io.InternalPreconditions.checkSingleChunk;
 import static net.derquinse.common.io.InternalPreconditions.checkSourceArray;
 import static net.derquinse.common.io.InternalPreconditions.checkSourceBuffer;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.DigestHasher;
+import net.derquinse.common.base.Digests;
+import net.derquinse.common.base.DirectByteString;
 
 import com.google.common.annotations.Beta;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
 import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
 
 /**
  * Base class for byte sources that are guaranteed to be stored in memory, either in byte arrays in
- * the heap or direct buffers. The byte source may be contiguous or backed a list of chunks. Total
- * size must fit in an integer. The default chunk size is 8 KB.
+ * the heap or direct buffers. The byte source may be contiguous or backed a list of chunks. Each
+ * chunk must fit in an integer, but the total size may be larger when backed by several chunks. The
+ * default chunk size is 8 KB.
  * @author Andres Rodriguez
  */
 @Beta
@@ -74,6 +89,15 @@ public abstract class MemoryByteSource extends ByteSource {
 		return new SingleDirectByteSource(buffer);
 	}
 
+	/**
+	 * Creates a merged direct memory byte source that shares the memory of the provided direct byte
+	 * string.
+	 */
+	public static MemoryByteSource wrap(DirectByteString source) {
+		checkNotNull(source, "The source byte string must be provided");
+		return new SingleDirectByteSource(source.asReadOnlyByteBuffer());
+	}
+
 	/** Creates a merged memory byte source backed by a copy of the provided array. */
 	public static MemoryByteSource copyOf(boolean direct, byte[] source) {
 		return direct ? directCopyOf(source) : heapCopyOf(source);
@@ -100,9 +124,19 @@ public abstract class MemoryByteSource extends ByteSource {
 	@Override
 	public abstract long size();
 
+	/**
+	 * Returns a view of a range of this source. The view shares the memory of this source, except for
+	 * compressed sources, which return an uncompressed copy of the range.
+	 * @param offset Offset of the first byte of the range.
+	 * @param length Maximum length of the range.
+	 */
+	@Override
+	public abstract MemoryByteSource slice(long offset, long length);
+
 	/**
 	 * Merges to a byte source consisting of a single chunk.
 	 * @return The merged byte source. Maybe the same one if already consisted of only one chunck.
+	 * @throws IllegalStateException if the size of the source does not fit in a single chunk.
 	 */
 	public abstract MemoryByteSource merge();
 
@@ -144,6 +178,77 @@ public abstract class MemoryByteSource extends ByteSource {
 	 */
 	public abstract MemoryByteSource toDirect(int chunkSize);
 
+	/**
+	 * Returns the contents of this source as a byte string. Single chunk heap sources are wrapped
+	 * without copying.
+	 * @throws IllegalStateException if the size of the source does not fit in a byte string.
+	 */
+	public ByteString toByteString() throws IOException {
+		checkSingleChunk(size());
+		return ByteString.wrap(read());
+	}
+
+	/**
+	 * Returns a copy of the contents of this source in direct memory.
+	 * @throws IllegalStateException if the size of the source does not fit in a byte string.
+	 */
+	public DirectByteString toDirectByteString() {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(checkSingleChunk(size()));
+		writeTo(buffer);
+		buffer.flip();
+		return DirectByteString.wrap(buffer);
+	}
+
+	/**
+	 * Computes the digest of the contents of this source. Memory chunks are fed directly to the
+	 * digest, using read-only views for the direct ones, so no data is copied to the heap.
+	 * @param md Digest to use. It is reset after the computation.
+	 */
+	public ByteString digest(MessageDigest md) throws IOException {
+		checkNotNull(md, "The message digest must be provided");
+		update(md);
+		return ByteString.wrap(md.digest());
+	}
+
+	/**
+	 * Computes the digest of the contents of this source with a digest taken from the per-thread pool
+	 * kept by {@link Digests}.
+	 * @param algorithm Digest algorithm.
+	 * @throws IllegalArgumentException if the algorithm is not available.
+	 */
+	public ByteString digest(String algorithm) throws IOException {
+		final DigestHasher hasher = Digests.hasher(algorithm);
+		try {
+			return digest(hasher.get());
+		} finally {
+			hasher.dispose();
+		}
+	}
+
+	/** Feeds memory chunks directly to the hasher. */
+	@Override
+	public HashCode hash(HashFunction hashFunction) throws IOException {
+		final Hasher hasher = hashFunction.newHasher();
+		putTo(hasher);
+		return hasher.hash();
+	}
+
+	/**
+	 * Updates a message digest with the contents of this source. The default implementation copies
+	 * the contents through a stream.
+	 */
+	void update(MessageDigest md) throws IOException {
+		copyTo(new DigestOutputStream(ByteStreams.nullOutputStream(), md));
+	}
+
+	/**
+	 * Puts the contents of this source into a hasher. The default implementation copies the contents
+	 * through a stream.
+	 */
+	void putTo(Hasher hasher) throws IOException {
+		copyTo(Funnels.asOutputStream(hasher));
+	}
+
 	/** Writes to a byte buffer, returning the number of bytes written. */
 	abstract int writeTo(ByteBuffer buffer);
 
@@ -153,4 +258,19 @@ public abstract class MemoryByteSource extends ByteSource {
 	/** Returns the number of chunks. */
 	abstract int chunks();
 
+	/**
+	 * Returns a read-only buffer view of the contents of a single chunk source. Multiple chunk
+	 * sources throw {@link UnsupportedOperationException}.
+	 */
+	ByteBuffer view() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Releases the direct memory held by this source, which must not be used afterwards. The default
+	 * implementation does nothing.
+	 */
+	void free() {
+	}
+
 }
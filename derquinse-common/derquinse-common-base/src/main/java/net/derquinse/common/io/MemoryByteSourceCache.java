@@ -0,0 +1,383 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.derquinse.common.util.zip.GZIP;
+import net.derquinse.common.util.zip.MaybeCompressed;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Function;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Cache of files loaded into memory byte sources. Entries are weighed by their size and
+ * revalidated against the last modification time and length of the file, at most once per check
+ * interval. Concurrent requests for the same file share a single load. Optionally, the cache may
+ * hold a gzipped version of each file alongside the original one.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class MemoryByteSourceCache {
+	/** Function to extract the source from an entry. */
+	private static final Function<Entry, MemoryByteSource> SOURCE = new Function<Entry, MemoryByteSource>() {
+		@Override
+		public MemoryByteSource apply(Entry input) {
+			return input.source;
+		}
+	};
+
+	/** Loader to use. */
+	private final MemoryByteSourceLoader loader;
+	/** Whether to keep gzipped versions. */
+	private final boolean gzip;
+	/** Check interval in nanoseconds. */
+	private final long checkInterval;
+	/** Ticker. */
+	private final Ticker ticker;
+	/** Executor for asynchronous loads. */
+	private final Executor executor;
+	/** Loaded entries. */
+	private final LoadingCache<File, Entry> cache;
+	/** Asynchronous loads in progress. */
+	private final ConcurrentMap<File, ListenableFuture<Entry>> loading = Maps.newConcurrentMap();
+	/** Number of entries removed because the file had changed. */
+	private final AtomicLong changed = new AtomicLong();
+
+	/**
+	 * Returns a new builder.
+	 * @param loader Loader to use.
+	 */
+	public static Builder builder(MemoryByteSourceLoader loader) {
+		return new Builder(loader);
+	}
+
+	/** Constructor. */
+	private MemoryByteSourceCache(Builder b) {
+		this.loader = b.loader;
+		this.gzip = b.gzip;
+		this.checkInterval = b.checkInterval;
+		this.ticker = b.ticker;
+		this.executor = b.executor;
+		this.cache = CacheBuilder.newBuilder().maximumWeight(b.maxWeight).weigher(new EntryWeigher()).recordStats()
+				.build(new EntryLoader());
+	}
+
+	/** Checks and normalizes a file argument. */
+	private static File checkFile(File file) {
+		return checkNotNull(file, "The file to load must be provided").getAbsoluteFile();
+	}
+
+	/** Returns a fresh entry for a file, loading it if needed. */
+	private Entry getEntry(File key) throws IOException {
+		while (true) {
+			final Entry entry;
+			try {
+				entry = cache.get(key);
+			} catch (ExecutionException e) {
+				Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+				throw new UncheckedExecutionException(e.getCause());
+			}
+			if (entry.isFresh(key)) {
+				return entry;
+			}
+			if (cache.asMap().remove(key, entry)) {
+				changed.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Returns the contents of a file, loading them if they are not cached or the file has changed.
+	 * @param file File to load.
+	 * @return The file contents.
+	 */
+	public MemoryByteSource get(File file) throws IOException {
+		return getEntry(checkFile(file)).source;
+	}
+
+	/**
+	 * Returns the contents of a file, gzipped if the cache keeps gzipped versions and compression
+	 * reduces the size.
+	 * @param file File to load.
+	 * @return The file contents, maybe compressed.
+	 */
+	public MaybeCompressed<MemoryByteSource> getMaybeGzipped(File file) throws IOException {
+		final Entry entry = getEntry(checkFile(file));
+		if (entry.gzipped != null) {
+			return entry.gzipped;
+		}
+		return MaybeCompressed.of(false, entry.source);
+	}
+
+	/**
+	 * Returns the contents of a file asynchronously. If the file is not cached or it has changed it
+	 * will be loaded using the configured executor. Concurrent requests for the same file share the
+	 * same load.
+	 * @param file File to load.
+	 * @return A future for the file contents.
+	 */
+	public ListenableFuture<MemoryByteSource> getAsync(File file) {
+		final File key = checkFile(file);
+		final Entry present = cache.asMap().get(key);
+		if (present != null && present.isFresh(key)) {
+			return Futures.immediateFuture(present.source);
+		}
+		ListenableFuture<Entry> future = loading.get(key);
+		if (future == null) {
+			final ListenableFutureTask<Entry> task = ListenableFutureTask.create(new Callable<Entry>() {
+				@Override
+				public Entry call() throws Exception {
+					return getEntry(key);
+				}
+			});
+			final ListenableFuture<Entry> existing = loading.putIfAbsent(key, task);
+			if (existing != null) {
+				future = existing;
+			} else {
+				task.addListener(new Runnable() {
+					@Override
+					public void run() {
+						loading.remove(key, task);
+					}
+				}, MoreExecutors.directExecutor());
+				executor.execute(task);
+				future = task;
+			}
+		}
+		return Futures.transform(future, SOURCE, MoreExecutors.directExecutor());
+	}
+
+	/** Removes a file from the cache. */
+	public void invalidate(File file) {
+		cache.invalidate(checkFile(file));
+	}
+
+	/** Removes every file from the cache. */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Checks every cached file, removing those that have changed.
+	 * @return The number of removed entries.
+	 */
+	public int revalidate() {
+		int removed = 0;
+		for (File key : cache.asMap().keySet()) {
+			final Entry entry = cache.asMap().get(key);
+			if (entry != null && entry.hasChanged(key) && cache.asMap().remove(key, entry)) {
+				removed++;
+			}
+		}
+		changed.addAndGet(removed);
+		return removed;
+	}
+
+	/**
+	 * Schedules a periodic revalidation of every cached file.
+	 * @param scheduler Scheduler to use.
+	 * @param period Revalidation period.
+	 * @param unit Period unit.
+	 * @return The scheduled task, that may be used to cancel it.
+	 */
+	public ScheduledFuture<?> scheduleRevalidation(ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+		checkNotNull(scheduler, "The scheduler must be provided");
+		return scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				revalidate();
+			}
+		}, period, period, unit);
+	}
+
+	/** Returns the approximate number of cached files. */
+	public long size() {
+		return cache.size();
+	}
+
+	/** Returns the statistics of the underlying cache. */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/** Returns the number of entries removed because the file had changed. */
+	public long changedCount() {
+		return changed.get();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("loader", loader).add("gzip", gzip)
+				.add("checkInterval", checkInterval).add("size", size()).toString();
+	}
+
+	/** Cache entry. */
+	private final class Entry {
+		/** Last modification time of the loaded file. */
+		private final long lastModified;
+		/** Length of the loaded file. */
+		private final long length;
+		/** Loaded data. */
+		private final MemoryByteSource source;
+		/** Gzipped data, if requested. */
+		private final MaybeCompressed<MemoryByteSource> gzipped;
+		/** Last time the entry was checked. */
+		private volatile long checked;
+
+		/** Constructor. */
+		Entry(File file) throws IOException {
+			this.checked = ticker.read();
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+			this.source = loader.load(Files.asByteSource(file));
+			this.gzipped = gzip ? GZIP.maybeGzip(loader, source) : null;
+		}
+
+		/** Returns the entry weight. */
+		int weight() {
+			long w = source.size();
+			if (gzipped != null && gzipped.isCompressed()) {
+				w += gzipped.getPayload().size();
+			}
+			return Ints.saturatedCast(w);
+		}
+
+		/** Returns whether the file has changed since it was loaded. */
+		boolean hasChanged(File file) {
+			return file.lastModified() != lastModified || file.length() != length;
+		}
+
+		/** Returns whether the entry is still valid, checking the file if the interval has elapsed. */
+		boolean isFresh(File file) {
+			final long now = ticker.read();
+			if (now - checked < checkInterval) {
+				return true;
+			}
+			if (hasChanged(file)) {
+				return false;
+			}
+			checked = now;
+			return true;
+		}
+	}
+
+	/** Entry loader. */
+	private final class EntryLoader extends CacheLoader<File, Entry> {
+		@Override
+		public Entry load(File key) throws Exception {
+			return new Entry(key);
+		}
+	}
+
+	/** Entry weigher. */
+	private static final class EntryWeigher implements Weigher<File, Entry> {
+		@Override
+		public int weigh(File key, Entry value) {
+			return value.weight();
+		}
+	}
+
+	/** Cache builder. */
+	public static final class Builder implements net.derquinse.common.base.Builder<MemoryByteSourceCache> {
+		/** Loader to use. */
+		private final MemoryByteSourceLoader loader;
+		/** Maximum weight. */
+		private long maxWeight = Long.MAX_VALUE;
+		/** Whether to keep gzipped versions. */
+		private boolean gzip = false;
+		/** Check interval in nanoseconds. */
+		private long checkInterval = TimeUnit.SECONDS.toNanos(1L);
+		/** Ticker. */
+		private Ticker ticker = Ticker.systemTicker();
+		/** Executor for asynchronous loads. */
+		private Executor executor = MoreExecutors.directExecutor();
+
+		/** Constructor. */
+		private Builder(MemoryByteSourceLoader loader) {
+			this.loader = checkNotNull(loader, "The memory byte source loader must be provided");
+		}
+
+		/** Sets the maximum number of cached bytes. */
+		public Builder maximumWeight(long maxWeight) {
+			checkArgument(maxWeight > 0, "The maximum weight must be > 0");
+			this.maxWeight = maxWeight;
+			return this;
+		}
+
+		/** Sets whether to keep gzipped versions of the files. */
+		public Builder gzip(boolean gzip) {
+			this.gzip = gzip;
+			return this;
+		}
+
+		/** Sets the minimum time between checks of the same file. Zero checks the file on every access. */
+		public Builder checkInterval(long duration, TimeUnit unit) {
+			checkArgument(duration >= 0, "The check interval must be >= 0");
+			this.checkInterval = unit.toNanos(duration);
+			return this;
+		}
+
+		/** Sets the ticker used to measure the check interval. */
+		public Builder ticker(Ticker ticker) {
+			this.ticker = checkNotNull(ticker, "The ticker must be provided");
+			return this;
+		}
+
+		/** Sets the executor used for asynchronous loads. The default executes in the calling thread. */
+		public Builder executor(Executor executor) {
+			this.executor = checkNotNull(executor, "The executor must be provided");
+			return this;
+		}
+
+		@Override
+		public MemoryByteSourceCache build() {
+			return new MemoryByteSourceCache(this);
+		}
+	}
+
+}
@@ -15,6 +15,7 @@
  */
 package net.derquinse.common.io;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
 import static net.derquinse.common.io.InternalPreconditions.checkMaxSize;
@@ -23,16 +24,22 @@ import static net.derquinse.common.io.InternalPreconditions.checkSize;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.Deflater;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
-import com.google.common.primitives.Ints;
 
 /**
  * Memory byte source loader.
@@ -40,32 +47,59 @@ import com.google.common.primitives.Ints;
  */
 @ThreadSafe
 public final class MemoryByteSourceLoader {
+	/** Compression level value used when the data is not compressed at rest. */
+	private static final int NOT_COMPRESSED = Integer.MIN_VALUE;
 	/** Default loader. */
 	private static final MemoryByteSourceLoader DEFAULT = new MemoryByteSourceLoader(false, Integer.MAX_VALUE, 8192,
-			false, null);
+			false, null, NOT_COMPRESSED, null, null, null, ImmutableSet.<String> of());
 	/** Whether to use direct memory. */
 	private final boolean direct;
 	/** Maximum size. */
-	private final int maxSize;
+	private final long maxSize;
 	/** Chunk size. */
 	private final int chunkSize;
 	/** Whether to merge after loading. */
 	private final boolean merge;
 	/** Transformer to use. */
 	private final BytesTransformer transformer;
+	/** Compression level used to store the data, or NOT_COMPRESSED. */
+	private final int compressionLevel;
+	/** Cache of inflated sources (may be null). */
+	private final InflatedSourceCache inflatedCache;
+	/** Chunk interner (may be null). */
+	private final ChunkInterner interner;
+	/** Direct memory tracker, only provided in disposable mode. */
+	private final DirectMemoryTracker tracker;
+	/** Digest algorithms computed while loading. */
+	private final ImmutableSet<String> digests;
 
 	/** Gets the default loader. */
 	public static MemoryByteSourceLoader get() {
 		return DEFAULT;
 	}
 
+	/**
+	 * Returns the loader used to copy existing sources to a different chunk size. It has no maximum
+	 * size, as the sources to copy may be larger than 2 GB.
+	 */
+	static MemoryByteSourceLoader copier(boolean direct, int chunkSize) {
+		return DEFAULT.direct(direct).chunkSize(chunkSize).maxSize(Long.MAX_VALUE);
+	}
+
 	/** Constructor. */
-	private MemoryByteSourceLoader(boolean direct, int maxSize, int chunkSize, boolean merge, BytesTransformer transformer) {
+	private MemoryByteSourceLoader(boolean direct, long maxSize, int chunkSize, boolean merge,
+			BytesTransformer transformer, int compressionLevel, InflatedSourceCache inflatedCache, ChunkInterner interner,
+			DirectMemoryTracker tracker, ImmutableSet<String> digests) {
 		this.direct = direct;
 		this.maxSize = maxSize;
 		this.chunkSize = chunkSize;
 		this.merge = merge;
 		this.transformer = transformer;
+		this.compressionLevel = compressionLevel;
+		this.inflatedCache = inflatedCache;
+		this.interner = interner;
+		this.tracker = tracker;
+		this.digests = digests;
 	}
 
 	/** Returns whether the loader uses direct memory. */
@@ -74,7 +108,7 @@ public final class MemoryByteSourceLoader {
 	}
 
 	/** Returns the maximum size. */
-	public int getMaxSize() {
+	public long getMaxSize() {
 		return maxSize;
 	}
 
@@ -93,6 +127,49 @@ public final class MemoryByteSourceLoader {
 		return transformer;
 	}
 
+	/** Returns whether the loaded data is stored compressed. */
+	public boolean isCompressedAtRest() {
+		return compressionLevel != NOT_COMPRESSED;
+	}
+
+	/** Returns the compression level used to store the data, if compressed at rest. */
+	public int getCompressionLevel() {
+		return isCompressedAtRest() ? compressionLevel : Deflater.NO_COMPRESSION;
+	}
+
+	/** Returns the cache of inflated sources used, if any. */
+	@Nullable
+	public InflatedSourceCache getInflatedCache() {
+		return inflatedCache;
+	}
+
+	/** Returns the chunk interner used, if any. */
+	@Nullable
+	public ChunkInterner getInterner() {
+		return interner;
+	}
+
+	/** Returns whether the loader works in disposable mode. */
+	public boolean isDisposable() {
+		return tracker != null;
+	}
+
+	/** Returns the direct memory tracker used in disposable mode. */
+	@Nullable
+	public DirectMemoryTracker getTracker() {
+		return tracker;
+	}
+
+	/** Returns the digest algorithms computed while loading. */
+	public ImmutableSet<String> getDigests() {
+		return digests;
+	}
+
+	/** Returns whether the loaded sources are disposable direct memory sources. */
+	boolean isDisposableDirect() {
+		return direct && tracker != null && !isCompressedAtRest();
+	}
+
 	/**
 	 * Returns a loader with the same configuration and the use of direct memory specified by the
 	 * argument.
@@ -102,19 +179,22 @@ public final class MemoryByteSourceLoader {
 		if (direct == this.direct) {
 			return this;
 		}
-		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer);
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
 	}
 
 	/**
 	 * Returns a loader with the same configuration and the maximum allowed size specified by the
-	 * argument.
+	 * argument. Sizes greater than {@link Integer#MAX_VALUE} are allowed for chunked sources, but such
+	 * sources cannot be merged.
 	 */
-	public MemoryByteSourceLoader maxSize(int maxSize) {
+	public MemoryByteSourceLoader maxSize(long maxSize) {
 		checkMaxSize(maxSize);
 		if (maxSize == this.maxSize) {
 			return this;
 		}
-		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer);
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
 	}
 
 	/**
@@ -125,7 +205,8 @@ public final class MemoryByteSourceLoader {
 		if (chunkSize == this.chunkSize) {
 			return this;
 		}
-		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer);
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
 	}
 
 	/**
@@ -137,7 +218,8 @@ public final class MemoryByteSourceLoader {
 		if (merge == this.merge) {
 			return this;
 		}
-		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer);
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
 	}
 
 	/**
@@ -148,7 +230,117 @@ public final class MemoryByteSourceLoader {
 		if (Objects.equal(this.transformer, v)) {
 			return this;
 		}
-		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, v);
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, v, compressionLevel, inflatedCache,
+				interner, tracker, digests);
+	}
+
+	/**
+	 * Returns a loader with the same configuration that stores the loaded data as a single gzip stream
+	 * compressed with the specified level. Loaded sources are instances of
+	 * {@link CompressedByteSource}, which report the uncompressed size and are inflated on the fly
+	 * when read. The maximum size applies to the uncompressed data.
+	 * @param level Compression level (0-9) or {@link Deflater#DEFAULT_COMPRESSION}.
+	 */
+	public MemoryByteSourceLoader compressedAtRest(int level) {
+		checkArgument(level == Deflater.DEFAULT_COMPRESSION
+				|| (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION), "Invalid compression level %s",
+				level);
+		if (level == compressionLevel) {
+			return this;
+		}
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, level, inflatedCache,
+				interner, tracker, digests);
+	}
+
+	/**
+	 * Returns a loader with the same configuration and that stores the data compressed with the
+	 * default level or uncompressed according to the provided argument.
+	 * @param compressed Whether to store the loaded data compressed.
+	 */
+	public MemoryByteSourceLoader compressedAtRest(boolean compressed) {
+		if (compressed) {
+			return isCompressedAtRest() ? this : compressedAtRest(Deflater.DEFAULT_COMPRESSION);
+		}
+		if (!isCompressedAtRest()) {
+			return this;
+		}
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, NOT_COMPRESSED,
+				inflatedCache, interner, tracker, digests);
+	}
+
+	/**
+	 * Returns a loader with the same configuration and the inflated source cache specified by the
+	 * argument, which is only used if the data is compressed at rest.
+	 */
+	public MemoryByteSourceLoader inflatedCache(@Nullable InflatedSourceCache inflatedCache) {
+		if (inflatedCache == this.inflatedCache) {
+			return this;
+		}
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
+	}
+
+	/**
+	 * Returns a loader with the same configuration and the chunk interner specified by the argument.
+	 * Interning is not performed on data compressed at rest.
+	 */
+	public MemoryByteSourceLoader interner(@Nullable ChunkInterner interner) {
+		if (interner == this.interner) {
+			return this;
+		}
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
+	}
+
+	/**
+	 * Returns a loader with the same configuration and the disposable mode specified by the argument,
+	 * using the shared direct memory tracker.
+	 * @see #disposable(DirectMemoryTracker)
+	 */
+	public MemoryByteSourceLoader disposable(boolean disposable) {
+		return disposable(disposable ? DirectMemoryTracker.get() : null);
+	}
+
+	/**
+	 * Returns a loader with the same configuration that works in disposable mode tracked by the
+	 * provided tracker, or not in disposable mode if the argument is {@code null}. In disposable mode
+	 * the sources loaded into direct memory are instances of {@link DisposableByteSource}, which
+	 * memory is released as soon as they are disposed. Data compressed at rest and heap sources are
+	 * not affected. Chunk interning is not performed on disposable sources.
+	 */
+	public MemoryByteSourceLoader disposable(@Nullable DirectMemoryTracker tracker) {
+		if (tracker == this.tracker) {
+			return this;
+		}
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, digests);
+	}
+
+	/**
+	 * Returns a loader with the same configuration that computes the digests of the loaded data with
+	 * the specified algorithms, replacing any previously configured ones. The digests are computed
+	 * while the data is written to memory, and are available through
+	 * {@link MemoryOutputStream#getDigests()} and {@link #loadDigested(ByteSource)}.
+	 * @param algorithms Digest algorithms. If none is provided no digest is computed.
+	 * @throws IllegalArgumentException if any of the algorithms is not available.
+	 */
+	public MemoryByteSourceLoader digest(String... algorithms) {
+		checkNotNull(algorithms, "The digest algorithms must be provided");
+		final ImmutableSet<String> v = ImmutableSet.copyOf(algorithms);
+		for (String algorithm : v) {
+			Digests.hasher(algorithm).dispose(); // checks the algorithm
+		}
+		if (v.equals(digests)) {
+			return this;
+		}
+		return new MemoryByteSourceLoader(direct, maxSize, chunkSize, merge, transformer, compressionLevel,
+				inflatedCache, interner, tracker, v);
+	}
+
+	/** Returns the loader used to store the compressed data and to inflate it. */
+	MemoryByteSourceLoader storage() {
+		return new MemoryByteSourceLoader(direct, Long.MAX_VALUE, chunkSize, merge, null, NOT_COMPRESSED, null, null,
+				null, ImmutableSet.<String> of());
 	}
 
 	private MemoryByteSource merged(MemoryByteSource source) {
@@ -160,6 +352,9 @@ public final class MemoryByteSourceLoader {
 
 	/** Opens a new memory output stream. */
 	public MemoryOutputStream openStream() {
+		if (isCompressedAtRest()) {
+			return CompressedByteSource.openStream(this);
+		}
 		if (direct) {
 			return DirectByteSource.openStream(this);
 		}
@@ -172,6 +367,11 @@ public final class MemoryByteSourceLoader {
 	 * @return The loaded data in a byte source.
 	 */
 	public MemoryByteSource load(InputStream is) throws IOException {
+		return write(is).toByteSource();
+	}
+
+	/** Writes the contents of an input stream into a new memory output stream. */
+	private MemoryOutputStream write(InputStream is) throws IOException {
 		checkNotNull(is, "The input stream to load must be provided");
 		final MemoryOutputStream os = openStream();
 		if (transformer != null) {
@@ -179,7 +379,7 @@ public final class MemoryByteSourceLoader {
 		} else {
 			ByteStreams.copy(is, os);
 		}
-		return os.toByteSource();
+		return os;
 	}
 
 	/** Performs a copy of the provided source. */
@@ -195,7 +395,7 @@ public final class MemoryByteSourceLoader {
 	 * Transform an existing memory byte source.
 	 */
 	private MemoryByteSource transform(MemoryByteSource source) {
-		checkSize(Ints.saturatedCast(source.size()), maxSize);
+		checkSize(source.size(), maxSize);
 		final MemoryByteSource transformed;
 		if (direct) {
 			transformed = source.toDirect(chunkSize);
@@ -205,13 +405,19 @@ public final class MemoryByteSourceLoader {
 		return merged(transformed);
 	}
 
+	/** Returns whether a source can be loaded transforming it, without a copy through a stream. */
+	private boolean isTransformable(ByteSource source) {
+		return transformer == null && !isCompressedAtRest() && interner == null && !isDisposableDirect()
+				&& source instanceof MemoryByteSource;
+	}
+
 	/**
 	 * Loads the contents of an existing source into a memory byte source.
 	 * @return The loaded data in a byte source.
 	 */
 	public MemoryByteSource load(ByteSource source) throws IOException {
 		checkNotNull(source, "The byte source to load must be provided");
-		if (transformer == null && source instanceof MemoryByteSource) {
+		if (digests.isEmpty() && isTransformable(source)) {
 			return transform((MemoryByteSource) source);
 		}
 		Closer closer = Closer.create();
@@ -225,6 +431,43 @@ public final class MemoryByteSourceLoader {
 		}
 	}
 
+	/**
+	 * Loads the contents of the input stream into a memory byte source, computing the configured
+	 * digests in the same pass.
+	 * @param is Input stream. It is not closed.
+	 * @return The loaded data and its digests.
+	 */
+	public DigestedByteSource loadDigested(InputStream is) throws IOException {
+		final MemoryOutputStream os = write(is);
+		return DigestedByteSource.of(os.toByteSource(), os.getDigests());
+	}
+
+	/**
+	 * Loads the contents of an existing source into a memory byte source, computing the configured
+	 * digests in the same pass.
+	 * @return The loaded data and its digests.
+	 */
+	public DigestedByteSource loadDigested(ByteSource source) throws IOException {
+		checkNotNull(source, "The byte source to load must be provided");
+		if (isTransformable(source)) {
+			// The source is already in memory, the digests are computed in a single pass over the result
+			final MemoryByteSource loaded = transform((MemoryByteSource) source);
+			if (digests.isEmpty()) {
+				return DigestedByteSource.of(loaded, ImmutableMap.<String, ByteString> of());
+			}
+			return DigestedByteSource.of(loaded, Digests.digestAll(loaded, digests.toArray(new String[digests.size()])));
+		}
+		Closer closer = Closer.create();
+		try {
+			InputStream is = closer.register(source.openStream());
+			return loadDigested(is);
+		} catch (Throwable t) {
+			throw closer.rethrow(t);
+		} finally {
+			closer.close();
+		}
+	}
+
 	/**
 	 * Loads the contents of an existing file into a memory byte source.
 	 * @return The loaded data in a byte source.
@@ -236,7 +479,8 @@ public final class MemoryByteSourceLoader {
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(direct, maxSize, chunkSize, merge, transformer);
+		return Objects.hashCode(direct, maxSize, chunkSize, merge, transformer, compressionLevel, inflatedCache,
+				interner, tracker, digests);
 	}
 
 	@Override
@@ -244,7 +488,9 @@ public final class MemoryByteSourceLoader {
 		if (obj instanceof MemoryByteSourceLoader) {
 			MemoryByteSourceLoader s = (MemoryByteSourceLoader) obj;
 			return direct == s.direct && merge == s.merge && maxSize == s.maxSize && chunkSize == s.chunkSize
-					&& transformer.equals(s.transformer);
+					&& Objects.equal(transformer, s.transformer) && compressionLevel == s.compressionLevel
+					&& inflatedCache == s.inflatedCache && interner == s.interner && tracker == s.tracker
+					&& digests.equals(s.digests);
 		}
 		return false;
 	}
@@ -257,7 +503,10 @@ public final class MemoryByteSourceLoader {
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).omitNullValues().add("direct", direct).add("maxSize", maxSize)
-				.add("chunkSize", chunkSize).add("merge", merge).add("transformer", transformer).toString();
+				.add("chunkSize", chunkSize).add("merge", merge).add("transformer", transformer)
+				.add("compressionLevel", isCompressedAtRest() ? compressionLevel : null).add("inflatedCache", inflatedCache)
+				.add("interner", interner).add("tracker", tracker).add("digests", digests.isEmpty() ? null : digests)
+				.toString();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+import net.derquinse.common.base.Disposable;
+import net.derquinse.common.util.concurrent.RefCounted;
+import net.derquinse.common.util.concurrent.Refs;
+import net.derquinse.common.util.zip.GZIP;
+import net.derquinse.common.util.zip.MaybeCompressed;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteSource;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Content-addressed store of memory byte sources. Every payload is stored only once, keyed by its
+ * digest, so memory usage depends on the amount of unique content and not on the number of times
+ * it is stored. Entries are evicted in least-recently-used order once the stored bytes exceed the
+ * maximum weight. Stored entries are reference counted: an evicted entry is released when the last
+ * acquired reference is disposed.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class MemoryContentStore {
+	/** Loader to use. */
+	private final MemoryByteSourceLoader loader;
+	/** Loader that computes the key while loading. */
+	private final MemoryByteSourceLoader digestingLoader;
+	/** Digest algorithm. */
+	private final String algorithm;
+	/** Whether to compress the stored payloads. */
+	private final boolean compress;
+	/** Maximum weight. */
+	private final long maxWeight;
+	/** Stored entries. */
+	private final Cache<ByteString, Entry> cache;
+	/** Number of put operations. */
+	private final AtomicLong putCount = new AtomicLong();
+	/** Number of put operations which payload was already stored. */
+	private final AtomicLong dedupCount = new AtomicLong();
+	/** Bytes stored in the entries of the store. */
+	private final AtomicLong weight = new AtomicLong();
+	/** Bytes stored in entries either in the store or evicted but still referenced. */
+	private final AtomicLong residentWeight = new AtomicLong();
+
+	/**
+	 * Creates a new store using SHA-256 digests and no compression.
+	 * @param loader Loader to use to bring payloads into memory.
+	 * @param maxWeight Maximum number of stored bytes.
+	 */
+	public static MemoryContentStore of(MemoryByteSourceLoader loader, long maxWeight) {
+		return of(loader, maxWeight, Digests.SHA256, false);
+	}
+
+	/**
+	 * Creates a new store.
+	 * @param loader Loader to use to bring payloads into memory.
+	 * @param maxWeight Maximum number of stored bytes.
+	 * @param algorithm Digest algorithm to use as key.
+	 * @param compress Whether to store the payloads compressed with gzip when that saves space.
+	 * @throws IllegalArgumentException if the digest algorithm is not available.
+	 */
+	public static MemoryContentStore of(MemoryByteSourceLoader loader, long maxWeight, String algorithm,
+			boolean compress) {
+		return new MemoryContentStore(loader, maxWeight, algorithm, compress);
+	}
+
+	/** Constructor. */
+	private MemoryContentStore(MemoryByteSourceLoader loader, long maxWeight, String algorithm, boolean compress) {
+		this.loader = checkNotNull(loader, "The memory byte source loader must be provided");
+		checkArgument(maxWeight > 0, "The maximum weight must be > 0");
+		this.maxWeight = maxWeight;
+		checkNotNull(algorithm, "The digest algorithm must be provided");
+		this.digestingLoader = loader.digest(algorithm);
+		this.algorithm = algorithm;
+		this.compress = compress;
+		this.cache = CacheBuilder.newBuilder().maximumWeight(maxWeight).weigher(new EntryWeigher())
+				.removalListener(new EntryRemovalListener()).recordStats().build();
+	}
+
+	/** Returns the digest algorithm used as key. */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/** Returns whether the payloads are stored compressed when that saves space. */
+	public boolean isCompress() {
+		return compress;
+	}
+
+	/** Returns the maximum number of stored bytes. */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Stores a payload if not already present.
+	 * @param source Payload to store.
+	 * @return The digest of the payload, to be used as its key.
+	 */
+	public ByteString put(ByteSource source) throws IOException {
+		checkNotNull(source, "The byte source to store must be provided");
+		final DigestedByteSource digested = digestingLoader.loadDigested(source);
+		final MemoryByteSource data = digested.getSource();
+		final ByteString key = digested.getDigest(algorithm);
+		putCount.incrementAndGet();
+		final boolean[] created = new boolean[1];
+		try {
+			cache.get(key, new Callable<Entry>() {
+				@Override
+				public Entry call() throws Exception {
+					created[0] = true;
+					return new Entry(data);
+				}
+			});
+		} catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+			throw new UncheckedExecutionException(e.getCause());
+		}
+		if (!created[0]) {
+			dedupCount.incrementAndGet();
+		}
+		return key;
+	}
+
+	/** Returns whether the store contains a payload. */
+	public boolean contains(ByteString key) {
+		return key != null && cache.getIfPresent(key) != null;
+	}
+
+	/**
+	 * Acquires a reference to a stored payload in the form it is stored, which may be compressed.
+	 * @param key Payload key.
+	 * @return A reference to the stored payload, that must be disposed after use, or {@code null} if
+	 *         the payload is not in the store.
+	 */
+	@Nullable
+	public Disposable<MaybeCompressed<MemoryByteSource>> acquireStored(ByteString key) {
+		checkNotNull(key, "The payload key must be provided");
+		final Entry entry = cache.getIfPresent(key);
+		if (entry == null) {
+			return null;
+		}
+		return Refs.tryAcquire(entry.ref); // null if evicted concurrently
+	}
+
+	/**
+	 * Acquires a reference to a stored payload, decompressing it if needed.
+	 * @param key Payload key.
+	 * @return A reference to the payload, that must be disposed after use, or {@code null} if the
+	 *         payload is not in the store.
+	 */
+	@Nullable
+	public Disposable<MemoryByteSource> acquire(ByteString key) throws IOException {
+		final Disposable<MaybeCompressed<MemoryByteSource>> stored = acquireStored(key);
+		if (stored == null) {
+			return null;
+		}
+		final MaybeCompressed<MemoryByteSource> payload = stored.get();
+		if (!payload.isCompressed()) {
+			return new Uncompressed(stored);
+		}
+		try {
+			return new Decompressed(stored, loader.transformer(GZIP.decompression()).load(payload.getPayload()));
+		} catch (IOException e) {
+			stored.dispose();
+			throw e;
+		} catch (RuntimeException e) {
+			stored.dispose();
+			throw e;
+		}
+	}
+
+	/** Removes a payload from the store. Acquired references remain valid until disposed. */
+	public void invalidate(ByteString key) {
+		checkNotNull(key, "The payload key must be provided");
+		cache.invalidate(key);
+	}
+
+	/** Removes every payload from the store. Acquired references remain valid until disposed. */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/** Returns the approximate number of payloads in the store. */
+	public long size() {
+		return cache.size();
+	}
+
+	/** Returns the number of stored bytes. */
+	public long weight() {
+		return weight.get();
+	}
+
+	/** Returns the number of stored bytes, including evicted payloads that are still referenced. */
+	public long residentWeight() {
+		return residentWeight.get();
+	}
+
+	/** Returns the number of put operations. */
+	public long putCount() {
+		return putCount.get();
+	}
+
+	/** Returns the number of put operations which payload was already in the store. */
+	public long dedupCount() {
+		return dedupCount.get();
+	}
+
+	/** Returns the ratio of put operations which payload was already in the store. */
+	public double dedupRate() {
+		final long puts = putCount.get();
+		return puts == 0 ? 0.0 : (double) dedupCount.get() / puts;
+	}
+
+	/** Returns the statistics of the underlying cache. */
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("algorithm", algorithm).add("compress", compress)
+				.add("maxWeight", maxWeight).add("size", size()).add("weight", weight()).toString();
+	}
+
+	/** Store entry. */
+	private final class Entry implements Runnable {
+		/** Stored weight. */
+		private final int weight;
+		/** Reference to the stored payload. */
+		private final RefCounted<MaybeCompressed<MemoryByteSource>> ref;
+
+		/** Constructor. */
+		Entry(MemoryByteSource data) throws IOException {
+			final MaybeCompressed<MemoryByteSource> payload;
+			if (compress) {
+				payload = GZIP.maybeGzip(loader, data);
+			} else {
+				payload = MaybeCompressed.of(false, data);
+			}
+			this.weight = Ints.saturatedCast(payload.getPayload().size());
+			this.ref = Refs.counted(payload, this);
+			MemoryContentStore.this.weight.addAndGet(weight);
+			residentWeight.addAndGet(weight);
+		}
+
+		/** Called once the entry has been evicted and every reference has been disposed. */
+		@Override
+		public void run() {
+			residentWeight.addAndGet(-weight);
+		}
+	}
+
+	/** Entry weigher. */
+	private static final class EntryWeigher implements Weigher<ByteString, Entry> {
+		@Override
+		public int weigh(ByteString key, Entry value) {
+			return value.weight;
+		}
+	}
+
+	/** Entry removal listener. */
+	private final class EntryRemovalListener implements RemovalListener<ByteString, Entry> {
+		@Override
+		public void onRemoval(RemovalNotification<ByteString, Entry> notification) {
+			final Entry entry = notification.getValue();
+			weight.addAndGet(-entry.weight);
+			entry.ref.shutdown();
+		}
+	}
+
+	/** Reference to an uncompressed stored payload. */
+	private static final class Uncompressed implements Disposable<MemoryByteSource> {
+		/** Stored payload reference. */
+		private final Disposable<MaybeCompressed<MemoryByteSource>> stored;
+
+		Uncompressed(Disposable<MaybeCompressed<MemoryByteSource>> stored) {
+			this.stored = stored;
+		}
+
+		@Override
+		public MemoryByteSource get() {
+			return stored.get().getPayload();
+		}
+
+		@Override
+		public void dispose() {
+			stored.dispose();
+		}
+	}
+
+	/** Reference to a decompressed copy of a stored payload. */
+	private static final class Decompressed implements Disposable<MemoryByteSource> {
+		/** Stored payload reference. */
+		private final Disposable<MaybeCompressed<MemoryByteSource>> stored;
+		/** Decompressed payload. */
+		private final MemoryByteSource payload;
+
+		Decompressed(Disposable<MaybeCompressed<MemoryByteSource>> stored, MemoryByteSource payload) {
+			this.stored = stored;
+			this.payload = payload;
+		}
+
+		@Override
+		public MemoryByteSource get() {
+			stored.get(); // checks the state
+			return payload;
+		}
+
+		@Override
+		public void dispose() {
+			stored.dispose();
+		}
+	}
+
+}
@@ -17,9 +17,19 @@ package net.derquinse.common.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
 /**
- * Output stream that stores written bytes in memory readable using a {@link MemoryByteSource}.
+ * Output stream that stores written bytes in memory readable using a {@link MemoryByteSource}. If
+ * the loader is configured to compute digests they are updated as the bytes are written.
  * @author Andres Rodriguez
  */
 public abstract class MemoryOutputStream extends OutputStream {
@@ -30,11 +40,25 @@ public abstract class MemoryOutputStream extends OutputStream {
 	/** Result. */
 	private volatile MemoryByteSource source;
 	/** Total number of bytes written. */
-	private int count = 0;
+	private long count = 0;
+	/** Digests being computed (empty if none). */
+	private final MessageDigest[] mds;
+	/** Computed digests. */
+	private volatile ImmutableMap<String, ByteString> digests;
 
 	/** Constructor. */
 	MemoryOutputStream(MemoryByteSourceLoader loader) {
 		this.loader = loader;
+		final ImmutableSet<String> algorithms = loader.getDigests();
+		this.mds = new MessageDigest[algorithms.size()];
+		int i = 0;
+		for (String algorithm : algorithms) {
+			try {
+				mds[i++] = Digests.getInstance(algorithm);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e); // checked by the loader
+			}
+		}
 	}
 
 	private void ensureOpen() throws IOException {
@@ -59,17 +83,31 @@ public abstract class MemoryOutputStream extends OutputStream {
 		} else if (len == 0) {
 			return;
 		}
-		for (int i = 0; i < len; i++) {
-			write(b[off + i]);
+		final long maxSize = loader.getMaxSize();
+		final long available = maxSize - count;
+		if (len > available) {
+			if (available > 0) {
+				add(b, off, (int) available);
+				count += available;
+			}
+			throw new MaximumSizeExceededException(maxSize);
+		}
+		add(b, off, len);
+		for (MessageDigest md : mds) {
+			md.update(b, off, len);
 		}
+		count += len;
 	}
-	
+
 	private void write(byte b) throws IOException {
-		final int maxSize = loader.getMaxSize();
+		final long maxSize = loader.getMaxSize();
 		if (count >= maxSize) {
 			throw new MaximumSizeExceededException(maxSize);
 		}
 		add(b);
+		for (MessageDigest md : mds) {
+			md.update(b);
+		}
 		count++;
 	}
 
@@ -87,9 +125,22 @@ public abstract class MemoryOutputStream extends OutputStream {
 		} else {
 			source = build();
 			if (loader.isMerge()) {
-				source = source.merge();
+				final MemoryByteSource merged = source.merge();
+				if (merged != source && loader.isDisposableDirect()) {
+					source.free();
+				}
+				source = merged;
 			}
 		}
+		if (loader.isDisposableDirect()) {
+			source = new DisposableByteSource(source, loader.getTracker());
+		}
+		final ImmutableMap.Builder<String, ByteString> b = ImmutableMap.builder();
+		int i = 0;
+		for (String algorithm : loader.getDigests()) {
+			b.put(algorithm, ByteString.wrap(mds[i++].digest()));
+		}
+		digests = b.build();
 		closed = true;
 	}
 
@@ -103,7 +154,31 @@ public abstract class MemoryOutputStream extends OutputStream {
 		return source;
 	}
 
+	/**
+	 * Returns the digests of the written bytes computed with the algorithms configured in the loader,
+	 * indexed by algorithm. If the stream is open it will be closed.
+	 */
+	public final Map<String, ByteString> getDigests() {
+		if (digests == null) {
+			close();
+		}
+		return digests;
+	}
+
 	abstract void add(byte b) throws IOException;
 
+	/** Adds a range of bytes. The default implementation adds them one by one. */
+	void add(byte[] b, int off, int len) throws IOException {
+		for (int i = 0; i < len; i++) {
+			add(b[off + i]);
+		}
+	}
+
+	/** Interns a completed chunk if the loader has a chunk interner. */
+	final <T extends MemoryByteSource> T intern(T chunk) {
+		final ChunkInterner interner = loader.isDisposableDirect() ? null : loader.getInterner();
+		return interner == null ? chunk : interner.intern(chunk);
+	}
+
 	abstract MemoryByteSource build();
 }
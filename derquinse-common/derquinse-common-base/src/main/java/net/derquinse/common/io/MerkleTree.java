@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.concurrent.Immutable;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.DigestHasher;
+import net.derquinse.common.base.Digests;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Tree hash of a memory byte source. The source is split in fixed-size leaves, that are hashed
+ * concurrently, and the leaf hashes are combined as a Merkle tree following the construction of RFC
+ * 6962, section 2.1:
+ * <ul>
+ * <li>The hash of an empty source is the hash of the empty string.</li>
+ * <li>The hash of a leaf is {@code H(0x00 || leaf)}.</li>
+ * <li>The hash of a list of {@code n > 1} leaves is {@code H(0x01 || MTH(D[0:k]) || MTH(D[k:n]))},
+ * where {@code k} is the largest power of two smaller than {@code n}.</li>
+ * </ul>
+ * The leaf hashes are kept to allow the verification of individual leaves and the incremental
+ * update of the tree when a range of the source changes.
+ * @author Andres Rodriguez
+ */
+@Beta
+@Immutable
+public final class MerkleTree {
+	/** Default leaf size (1 MB). */
+	public static final int DEFAULT_LEAF_SIZE = 1024 * 1024;
+	/** Leaf hash prefix. */
+	private static final byte LEAF_PREFIX = 0x00;
+	/** Node hash prefix. */
+	private static final byte NODE_PREFIX = 0x01;
+
+	/** Digest algorithm. */
+	private final String algorithm;
+	/** Leaf size. */
+	private final int leafSize;
+	/** Source size. */
+	private final long size;
+	/** Leaf hashes. */
+	private final ImmutableList<ByteString> leaves;
+	/** Root hash. */
+	private final ByteString root;
+
+	/**
+	 * Computes the SHA-256 tree hash of a source with the default leaf size in the calling thread.
+	 * @param source Source to hash.
+	 */
+	public static MerkleTree of(MemoryByteSource source) {
+		return of(source, Digests.SHA256, DEFAULT_LEAF_SIZE, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Computes the tree hash of a source.
+	 * @param source Source to hash.
+	 * @param algorithm Digest algorithm.
+	 * @param leafSize Leaf size.
+	 * @param executor Executor used to hash the leaves.
+	 * @throws IllegalArgumentException if the algorithm is not available or the leaf size is not
+	 *           positive.
+	 */
+	public static MerkleTree of(MemoryByteSource source, String algorithm, int leafSize, Executor executor) {
+		checkNotNull(source, "The source to hash must be provided");
+		checkArgument(leafSize > 0, "The leaf size must be > 0");
+		checkNotNull(executor, "The executor must be provided");
+		Digests.hasher(algorithm).dispose(); // checks the algorithm
+		final ByteString[] leaves = new ByteString[leafCount(source.size(), leafSize)];
+		hashLeaves(source, algorithm, leafSize, executor, leaves, 0, leaves.length);
+		return new MerkleTree(algorithm, leafSize, source.size(), leaves);
+	}
+
+	/** Returns the number of leaves of a source. */
+	private static int leafCount(long size, int leafSize) {
+		final long n = (size + leafSize - 1) / leafSize;
+		checkArgument(n <= Integer.MAX_VALUE, "Too many leaves, use a bigger leaf size");
+		return (int) n;
+	}
+
+	/** Computes the hash of a leaf. */
+	private static ByteString hashLeaf(MemoryByteSource source, String algorithm, int leafSize, int index)
+			throws IOException {
+		final DigestHasher hasher = Digests.hasher(algorithm);
+		try {
+			final MessageDigest md = hasher.get();
+			md.update(LEAF_PREFIX);
+			return source.slice((long) index * leafSize, leafSize).digest(md);
+		} finally {
+			hasher.dispose();
+		}
+	}
+
+	/** Computes the hashes of a range of leaves using an executor, waiting for all of them. */
+	private static void hashLeaves(final MemoryByteSource source, final String algorithm, final int leafSize,
+			Executor executor, final ByteString[] leaves, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		final CountDownLatch latch = new CountDownLatch(to - from);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int i = from; i < to; i++) {
+			final int index = i;
+			final Runnable task = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						leaves[index] = hashLeaf(source, algorithm, leafSize, index);
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						latch.countDown();
+					}
+				}
+			};
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+		Uninterruptibles.awaitUninterruptibly(latch);
+		final Throwable t = failure.get();
+		if (t != null) {
+			throw Throwables.propagate(t);
+		}
+	}
+
+	/** Constructor. */
+	private MerkleTree(String algorithm, int leafSize, long size, ByteString[] leaves) {
+		this.algorithm = algorithm;
+		this.leafSize = leafSize;
+		this.size = size;
+		this.leaves = ImmutableList.copyOf(leaves);
+		final DigestHasher hasher = Digests.hasher(algorithm);
+		try {
+			this.root = this.leaves.isEmpty() ? hasher.digest() : root(hasher, this.leaves);
+		} finally {
+			hasher.dispose();
+		}
+	}
+
+	/** Computes the root hash of a non-empty list of leaf hashes. */
+	private static ByteString root(DigestHasher hasher, List<ByteString> hashes) {
+		final int n = hashes.size();
+		if (n == 1) {
+			return hashes.get(0);
+		}
+		final int k = Integer.highestOneBit(n - 1);
+		final ByteString left = root(hasher, hashes.subList(0, k));
+		final ByteString right = root(hasher, hashes.subList(k, n));
+		hasher.get().update(NODE_PREFIX);
+		return hasher.update(left).update(right).digest();
+	}
+
+	/** Returns the digest algorithm. */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/** Returns the leaf size. */
+	public int getLeafSize() {
+		return leafSize;
+	}
+
+	/** Returns the size of the hashed source. */
+	public long getSize() {
+		return size;
+	}
+
+	/** Returns the root hash. */
+	public ByteString getRoot() {
+		return root;
+	}
+
+	/** Returns the leaf hashes. */
+	public ImmutableList<ByteString> getLeaves() {
+		return leaves;
+	}
+
+	/**
+	 * Verifies a leaf of a source against this tree.
+	 * @param source Source to verify.
+	 * @param index Leaf index.
+	 * @return Whether the leaf hash matches.
+	 */
+	public boolean verifyLeaf(MemoryByteSource source, int index) throws IOException {
+		checkNotNull(source, "The source to verify must be provided");
+		checkElementIndex(index, leaves.size());
+		return hashLeaf(source, algorithm, leafSize, index).equals(leaves.get(index));
+	}
+
+	/**
+	 * Computes the tree hash of a modified version of the hashed source, rehashing only the leaves
+	 * that overlap the changed range and, if the size has changed, the ones after it.
+	 * @param source Modified source.
+	 * @param offset Offset of the first changed byte.
+	 * @param length Number of changed bytes.
+	 * @param executor Executor used to hash the leaves.
+	 */
+	public MerkleTree update(MemoryByteSource source, long offset, long length, Executor executor) {
+		checkNotNull(source, "The source to hash must be provided");
+		checkSlice(offset, length);
+		checkNotNull(executor, "The executor must be provided");
+		final long newSize = source.size();
+		final ByteString[] hashes = new ByteString[leafCount(newSize, leafSize)];
+		int from = (int) Math.min(offset / leafSize, hashes.length);
+		int to = length == 0 ? from : (int) Math.min((offset + length - 1) / leafSize + 1, hashes.length);
+		if (newSize != size) {
+			// The last leaf of the old source may have grown or shrunk
+			from = Math.min(from, Math.max(0, Math.min(leaves.size(), hashes.length) - 1));
+			to = hashes.length;
+		}
+		for (int i = 0; i < hashes.length && i < leaves.size(); i++) {
+			hashes[i] = leaves.get(i);
+		}
+		hashLeaves(source, algorithm, leafSize, executor, hashes, from, to);
+		return new MerkleTree(algorithm, leafSize, newSize, hashes);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("algorithm", algorithm).add("leafSize", leafSize)
+				.add("size", size).add("root", root).toString();
+	}
+}
@@ -16,17 +16,24 @@
 package net.derquinse.common.io;
 
 import static net.derquinse.common.io.InternalPreconditions.checkChunkSize;
+import static net.derquinse.common.io.InternalPreconditions.checkSlice;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+import com.google.common.hash.Hasher;
 
 /**
  * Heap for byte source backed by a single byte buffer.
  * @author Andres Rodriguez
  */
 final class SingleDirectByteSource extends DirectByteSource {
+	/** Size of the scratch buffer used to feed hashers. */
+	private static final int HASHER_BUFFER_SIZE = 8192;
+
 	/** Backing source. */
 	private final BufferByteSource bytes;
 
@@ -58,6 +65,23 @@ final class SingleDirectByteSource extends DirectByteSource {
 		return bytes.copyTo(output);
 	}
 
+	@Override
+	public MemoryByteSource slice(long offset, long length) {
+		checkSlice(offset, length);
+		final long size = bytes.size();
+		if (offset >= size) {
+			return EmptyByteSource.DIRECT;
+		}
+		final int n = (int) Math.min(length, size - offset);
+		if (offset == 0 && n == size) {
+			return this;
+		}
+		final ByteBuffer b = bytes.view();
+		b.position(b.position() + (int) offset);
+		b.limit(b.position() + n);
+		return new SingleDirectByteSource(b.slice());
+	}
+
 	@Override
 	public MemoryByteSource merge() {
 		return this;
@@ -110,9 +134,36 @@ final class SingleDirectByteSource extends DirectByteSource {
 		return targetLength;
 	}
 
+	@Override
+	void update(MessageDigest md) {
+		md.update(bytes.view());
+	}
+
+	@Override
+	void putTo(Hasher hasher) {
+		// Hashers only accept arrays, so the contents are fed through a bounded scratch buffer
+		final ByteBuffer b = bytes.view();
+		final byte[] scratch = new byte[Math.min(b.remaining(), HASHER_BUFFER_SIZE)];
+		while (b.hasRemaining()) {
+			final int n = Math.min(scratch.length, b.remaining());
+			b.get(scratch, 0, n);
+			hasher.putBytes(scratch, 0, n);
+		}
+	}
+
 	@Override
 	int chunks() {
 		return 1;
 	}
 
+	@Override
+	ByteBuffer view() {
+		return bytes.view();
+	}
+
+	@Override
+	void free() {
+		DirectBuffers.free(bytes.buffer());
+	}
+
 }
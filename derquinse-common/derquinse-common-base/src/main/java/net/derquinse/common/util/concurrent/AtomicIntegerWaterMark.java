@@ -16,21 +16,33 @@
 package net.derquinse.common.util.concurrent;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.util.concurrent.Atomics.newReference;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import net.derquinse.common.base.IntegerWaterMark;
 
 import com.google.common.base.MoreObjects;
 
 /**
- * An atomic IntegerWaterMark. Provide access to the same mutation methods in a thread-safe way.
+ * An atomic IntegerWaterMark. Provide access to the same mutation methods in a thread-safe way. The
+ * current and maximum values are packed in a single long, so every mutation is a single
+ * compare-and-set that allocates nothing, and the minimum value is lowered afterwards with a
+ * monotonic compare-and-set. The returned watermarks are snapshots.
  * @author Andres Rodriguez
  */
 public final class AtomicIntegerWaterMark {
-	/** Current value. */
-	private final AtomicReference<IntegerWaterMark> ref;
+	/** Packed state updater. */
+	private static final AtomicLongFieldUpdater<AtomicIntegerWaterMark> STATE = AtomicLongFieldUpdater.newUpdater(
+			AtomicIntegerWaterMark.class, "state");
+	/** Minimum value updater. */
+	private static final AtomicIntegerFieldUpdater<AtomicIntegerWaterMark> MIN = AtomicIntegerFieldUpdater.newUpdater(
+			AtomicIntegerWaterMark.class, "min");
+
+	/** Packed state: maximum value in the high 32 bits and current value in the low 32 bits. */
+	private volatile long state;
+	/** Minimum value. */
+	private volatile int min;
 
 	/**
 	 * Creates a new high watermark with the provided initial value.
@@ -59,14 +71,58 @@ public final class AtomicIntegerWaterMark {
 	}
 
 	private AtomicIntegerWaterMark(IntegerWaterMark initialValue) {
-		this.ref = newReference(checkNotNull(initialValue, "Null initial values not allowed"));
+		checkNotNull(initialValue, "Null initial values not allowed");
+		this.state = pack(initialValue.get(), initialValue.getMax());
+		this.min = initialValue.getMin();
+	}
+
+	/** Packs the current and maximum values. */
+	private static long pack(int current, int max) {
+		return ((long) max << 32) | (current & 0xFFFFFFFFL);
+	}
+
+	/** Extracts the current value. */
+	private static int current(long state) {
+		return (int) state;
+	}
+
+	/** Extracts the maximum value. */
+	private static int max(long state) {
+		return (int) (state >>> 32);
+	}
+
+	/** Lowers the minimum value if needed, returning the resulting minimum. */
+	private int lowerMin(int value) {
+		int m;
+		while (value < (m = min)) {
+			if (MIN.compareAndSet(this, m, value)) {
+				return value;
+			}
+		}
+		return m;
+	}
+
+	/** Returns a snapshot for a state. */
+	private IntegerWaterMark snapshot(long s) {
+		final int current = current(s);
+		// The minimum may not have been lowered yet by a concurrent mutation
+		return IntegerWaterMark.of(current, Math.min(min, current), max(s));
+	}
+
+	/** Performs a compare-and-set from a state to a new current value, updating the minimum. */
+	private boolean update(long s, int value) {
+		if (!STATE.compareAndSet(this, s, pack(value, Math.max(value, max(s))))) {
+			return false;
+		}
+		lowerMin(value);
+		return true;
 	}
 
 	/**
 	 * Returns the current value.
 	 */
 	public IntegerWaterMark get() {
-		return ref.get();
+		return snapshot(state);
 	}
 
 	/**
@@ -75,26 +131,30 @@ public final class AtomicIntegerWaterMark {
 	 * @return The value set.
 	 */
 	public IntegerWaterMark set(int value) {
-		IntegerWaterMark current;
-		IntegerWaterMark newValue;
+		long s;
 		do {
-			current = ref.get();
-			newValue = current.set(value);
-			if (current == newValue) {
-				return current;
+			s = state;
+			if (current(s) == value) {
+				return snapshot(s);
 			}
-		} while (!ref.compareAndSet(current, newValue));
-		return newValue;
+		} while (!update(s, value));
+		return IntegerWaterMark.of(value, Math.min(min, value), Math.max(value, max(s)));
+	}
+
+	/** Returns whether a state has the values of a watermark. */
+	private boolean matches(long s, IntegerWaterMark expected) {
+		return s == pack(expected.get(), expected.getMax()) && Math.min(min, current(s)) == expected.getMin();
 	}
 
 	/**
-	 * Sets the value if the current reference is the same as the provided one.
-	 * @param expected Expected current reference.
+	 * Sets the value if the current watermark is equal to the provided one.
+	 * @param expected Expected current watermark.
 	 * @param value Value to set.
 	 * @return If the update was successful.
 	 */
 	public boolean compareAndSet(IntegerWaterMark expected, int value) {
-		return ref.compareAndSet(expected, expected.set(value));
+		final long s = state;
+		return matches(s, expected) && update(s, value);
 	}
 
 	/**
@@ -104,36 +164,41 @@ public final class AtomicIntegerWaterMark {
 	 * @return If the update was successful.
 	 */
 	public boolean compareAndSet(int expected, int value) {
-		final IntegerWaterMark current = ref.get();
-		if (current.get() == expected) {
-			return compareAndSet(current, value);
-		}
-		return false;
+		long s;
+		do {
+			s = state;
+			if (current(s) != expected) {
+				return false;
+			}
+		} while (!update(s, value));
+		return true;
 	}
-	
+
 	/**
 	 * Adds a certain amount to the current value.
 	 * @param value Value to add.
 	 * @return The value set.
 	 */
 	public IntegerWaterMark add(int value) {
-		IntegerWaterMark current;
-		IntegerWaterMark newValue;
+		long s;
+		int v;
 		do {
-			current = ref.get();
-			newValue = current.add(value);
-		} while (!ref.compareAndSet(current, newValue));
-		return newValue;
+			s = state;
+			v = current(s) + value;
+		} while (!update(s, v));
+		return IntegerWaterMark.of(v, Math.min(min, v), Math.max(v, max(s)));
 	}
 
 	/**
-	 * Adds a certain amount to the current value if the current reference is the same as the provided one.
-	 * @param expected Expected current reference.
+	 * Adds a certain amount to the current value if the current watermark is equal to the provided
+	 * one.
+	 * @param expected Expected current watermark.
 	 * @param value Value to set.
 	 * @return If the update was successful.
 	 */
 	public boolean compareAndAdd(IntegerWaterMark expected, int value) {
-		return ref.compareAndSet(expected, expected.add(value));
+		final long s = state;
+		return matches(s, expected) && update(s, current(s) + value);
 	}
 
 	/**
@@ -143,11 +208,7 @@ public final class AtomicIntegerWaterMark {
 	 * @return If the update was successful.
 	 */
 	public boolean compareAndAdd(int expected, int value) {
-		final IntegerWaterMark current = ref.get();
-		if (current.get() == expected) {
-			return compareAndAdd(current, value);
-		}
-		return false;
+		return compareAndSet(expected, expected + value);
 	}
 
 	/**
@@ -168,6 +229,6 @@ public final class AtomicIntegerWaterMark {
 
 	@Override
 	public String toString() {
-		return MoreObjects.toStringHelper(this).addValue(ref.get()).toString();
+		return MoreObjects.toStringHelper(this).addValue(get()).toString();
 	}
 }
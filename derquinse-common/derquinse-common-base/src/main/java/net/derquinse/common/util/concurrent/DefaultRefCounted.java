@@ -22,47 +22,95 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import javax.annotation.Nullable;
 
 import net.derquinse.common.base.Disposable;
-import net.derquinse.common.base.IntegerWaterMark;
 
 import com.google.common.base.MoreObjects;
-import com.google.common.util.concurrent.Atomics;
 import com.google.common.util.concurrent.MoreExecutors;
 
 /**
- * A supplier of reference counted disposable objects.
+ * A supplier of reference counted disposable objects. The reference count, the maximum count and
+ * whether the object has been shut down are packed in a single long, so acquiring and disposing a
+ * reference only allocate the returned handle.
  * @param <T> the type of the disposable object.
  * @author Andres Rodriguez
  */
 final class DefaultRefCounted<T> implements RefCounted<T> {
+	/** State updater. */
+	@SuppressWarnings("rawtypes")
+	private static final AtomicLongFieldUpdater<DefaultRefCounted> STATE = AtomicLongFieldUpdater.newUpdater(
+			DefaultRefCounted.class, "state");
+	/** Executor updater. */
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<DefaultRefCounted, Executor> EXECUTOR = AtomicReferenceFieldUpdater
+			.newUpdater(DefaultRefCounted.class, Executor.class, "executor");
+	/** Mask of the reference count, in the lower bits of the state. */
+	private static final long COUNT = 0x7fffffffL;
+	/** Shift of the maximum count, in the bits after the reference count. */
+	private static final int MAX_SHIFT = 31;
+	/** Closed bit. */
+	private static final long CLOSED = 1L << 62;
+
 	/** Referenced value. */
 	private final T value;
-	/** State. */
-	private final AtomicReference<State> state;
 	/** Shutdown task. */
 	private final FutureTask<Long> task;
-	/** Executor. */
+	/** State. */
+	private volatile long state = 0L;
+	/** Executor for the shutdown task, set by the first shutdown call. */
 	private volatile Executor executor;
 
 	DefaultRefCounted(T value, Runnable hook) {
 		this.value = checkNotNull(value, "The referenced value is mandatory");
-		this.state = Atomics.newReference(new State());
 		this.task = new FutureTask<Long>(new Hook(hook));
 	}
 
+	/** Returns the reference count of a state. */
+	private static int count(long s) {
+		return (int) (s & COUNT);
+	}
+
+	/** Returns the maximum count of a state. */
+	private static int max(long s) {
+		return (int) ((s >>> MAX_SHIFT) & COUNT);
+	}
+
+	/** Returns whether a state is closed. */
+	private static boolean closed(long s) {
+		return (s & CLOSED) != 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see net.derquinse.common.util.concurrent.RefCounted#get()
 	 */
 	public Disposable<T> get() {
+		final Disposable<T> d = tryAcquire();
+		checkState(d != null, "Already closed");
+		return d;
+	}
+
+	/**
+	 * Returns a new disposable reference if the object has not been shut down.
+	 * @return The new reference or {@code null} if the object has been shut down.
+	 */
+	@Nullable
+	public Disposable<T> tryAcquire() {
 		while (true) {
-			final State current = state.get();
-			final State next = current.inc();
-			if (state.compareAndSet(current, next)) {
-				return new RefDisposable(value);
+			final long current = state;
+			if (closed(current)) {
+				return null;
+			}
+			checkState(count(current) < COUNT, "Too many references");
+			final int count = count(current) + 1;
+			final long next = count > max(current) ? ((long) count << MAX_SHIFT) | count : current + 1;
+			if (STATE.compareAndSet(this, current, next)) {
+				return new RefDisposable<T>(this);
 			}
 		}
 	}
@@ -73,7 +121,7 @@ final class DefaultRefCounted<T> implements RefCounted<T> {
 	 */
 	@Override
 	public int getCount() {
-		return state.get().count();
+		return count(state);
 	}
 
 	/*
@@ -82,7 +130,7 @@ final class DefaultRefCounted<T> implements RefCounted<T> {
 	 */
 	@Override
 	public int getMaxCount() {
-		return state.get().max();
+		return max(state);
 	}
 
 	/**
@@ -90,10 +138,13 @@ final class DefaultRefCounted<T> implements RefCounted<T> {
 	 */
 	private void dec() {
 		while (true) {
-			final State current = state.get();
-			final State next = current.dec();
-			if (state.compareAndSet(current, next)) {
-				runHook();
+			final long current = state;
+			checkState(count(current) > 0, "No reference to remove");
+			final long next = current - 1;
+			if (STATE.compareAndSet(this, current, next)) {
+				if (closed(next) && count(next) == 0) {
+					executor.execute(task);
+				}
 				return;
 			}
 		}
@@ -105,23 +156,21 @@ final class DefaultRefCounted<T> implements RefCounted<T> {
 	@Override
 	public Future<Long> shutdown(Executor executor) {
 		checkNotNull(executor);
-		while (!tryShutdown(executor))
-			;
-		return task;
-	}
-
-	public boolean tryShutdown(Executor executor) {
-		final State current = state.get();
-		if (current.closed()) {
-			return true;
-		}
-		this.executor = executor;
-		final State next = current.close();
-		if (state.compareAndSet(current, next)) {
-			runHook();
-			return true;
+		// Published before closing, so it is visible to the thread disposing the last reference
+		EXECUTOR.compareAndSet(this, null, executor);
+		while (true) {
+			final long current = state;
+			if (closed(current)) {
+				return task;
+			}
+			final long next = current | CLOSED;
+			if (STATE.compareAndSet(this, current, next)) {
+				if (count(next) == 0) {
+					this.executor.execute(task);
+				}
+				return task;
+			}
 		}
-		return false;
 	}
 
 	/*
@@ -132,96 +181,45 @@ final class DefaultRefCounted<T> implements RefCounted<T> {
 		return shutdown(MoreExecutors.directExecutor());
 	}
 
-	private void runHook() {
-		State s = state.get();
-		if (s.closed() && s.count() == 0) {
-			executor.execute(task);
-		}
-	}
-
 	@Override
 	public String toString() {
-		State s = state.get();
-		return MoreObjects.toStringHelper(this).add("value", value).add("active", !s.closed()).add("count", s.count())
-				.add("max", s.max()).toString();
+		final long s = state;
+		return MoreObjects.toStringHelper(this).add("value", value).add("active", !closed(s)).add("count", count(s))
+				.add("max", max(s)).toString();
 	}
 
-	private final class RefDisposable implements Disposable<T> {
-		private final AtomicBoolean disposed = new AtomicBoolean(false);
+	/** Disposable reference. */
+	private static final class RefDisposable<T> implements Disposable<T> {
+		/** Disposed updater. */
+		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<RefDisposable> DISPOSED = AtomicIntegerFieldUpdater.newUpdater(
+				RefDisposable.class, "disposed");
+
+		/** Referenced object. */
+		private final DefaultRefCounted<T> owner;
+		/** Whether the reference has been disposed (1) or not (0). */
+		private volatile int disposed = 0;
 
-		RefDisposable(T value) {
+		RefDisposable(DefaultRefCounted<T> owner) {
+			this.owner = owner;
 		}
 
 		@Override
 		public T get() {
-			checkState(!disposed.get(), "Reference already disposed");
-			return value;
+			checkState(disposed == 0, "Reference already disposed");
+			return owner.value;
 		}
 
 		@Override
 		public void dispose() {
-			while (!disposed.get()) {
-				if (disposed.compareAndSet(false, true)) {
-					dec();
-				}
+			if (DISPOSED.compareAndSet(this, 0, 1)) {
+				owner.dec();
 			}
 		}
 
 		@Override
 		public String toString() {
-			return String.format("%s{%s}", disposed.get() ? "Disposed" : "Disposable", value);
-		}
-	}
-
-	/**
-	 * Reference state.
-	 */
-	private static class State {
-		/** Reference count. */
-		private final IntegerWaterMark count;
-		/** Whether is a closed state. */
-		private final boolean closed;
-
-		State() {
-			this.count = IntegerWaterMark.of();
-			this.closed = false;
-		}
-
-		State(IntegerWaterMark count, boolean closed) {
-			this.count = count;
-			this.closed = closed;
-		}
-
-		void checkOpen() {
-			checkState(!closed, "Already closed");
-		}
-
-		State close() {
-			checkOpen();
-			return new State(count, true);
-		}
-
-		boolean closed() {
-			return closed;
-		}
-
-		int count() {
-			return count.get();
-		}
-
-		int max() {
-			return count.getMax();
-		}
-
-		State inc() {
-			checkOpen();
-			return new State(count.inc(), false);
-		}
-
-		State dec() {
-			int current = count.get();
-			checkState(current > 0, "No reference to remove");
-			return new State(count.dec(), closed);
+			return String.format("%s{%s}", disposed != 0 ? "Disposed" : "Disposable", owner.value);
 		}
 	}
 
@@ -15,6 +15,12 @@
  */
 package net.derquinse.common.util.concurrent;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+import net.derquinse.common.base.Disposable;
+
 /**
  * Support methods for reference objects.
  * @author Andres Rodriguez
@@ -34,4 +40,23 @@ public final class Refs {
 		return new DefaultRefCounted<T>(value, hook);
 	}
 
+	/**
+	 * Returns a new disposable reference if the counted reference has not been shut down. The return
+	 * value will be valid until it is disposed.
+	 * @param ref Counted reference.
+	 * @return The new reference or {@code null} if the counted reference has been shut down.
+	 */
+	@Nullable
+	public static <T> Disposable<T> tryAcquire(RefCounted<T> ref) {
+		checkNotNull(ref, "The counted reference is mandatory");
+		if (ref instanceof DefaultRefCounted) {
+			return ((DefaultRefCounted<T>) ref).tryAcquire();
+		}
+		try {
+			return ref.get();
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
+
 }
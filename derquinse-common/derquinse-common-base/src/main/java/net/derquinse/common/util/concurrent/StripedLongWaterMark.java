@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.util.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.derquinse.common.base.LongWaterMark;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Long watermark for counters updated very frequently from many threads, e.g. bytes in flight or
+ * active sessions. As in {@code LongAdder}, the current value is spread over a fixed set of padded
+ * cells selected by thread, so concurrent updates do not contend on a single memory location.
+ * <p>
+ * Each cell also accumulates the drift of its value since the cell last updated the shared minimum
+ * and maximum. Only when the drift reaches the cell's share of the tolerance provided on creation
+ * is the value summed over every cell and folded into the extremes, so most updates touch a single
+ * cell. The extremes may then differ from the real ones by at most the tolerance plus the updates
+ * concurrent with the summation, no matter which threads increment and decrement. With tolerance 0
+ * (the default) every update is folded, so the extremes are exact if updates do not overlap, but
+ * every update reads all the cells.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class StripedLongWaterMark {
+	/** Maximum number of cells. */
+	private static final int MAX_CELLS = 64;
+	/** Maximum updater. */
+	private static final AtomicLongFieldUpdater<StripedLongWaterMark> MAX = AtomicLongFieldUpdater.newUpdater(
+			StripedLongWaterMark.class, "max");
+	/** Minimum updater. */
+	private static final AtomicLongFieldUpdater<StripedLongWaterMark> MIN = AtomicLongFieldUpdater.newUpdater(
+			StripedLongWaterMark.class, "min");
+
+	/** Initial value. */
+	private final long base;
+	/** Cells. */
+	private final Cell[] cells;
+	/** Mask for cell indexes. */
+	private final int mask;
+	/** Drift of a cell that triggers a fold into the extremes. */
+	private final long threshold;
+	/** Maximum value. */
+	private volatile long max;
+	/** Minimum value. */
+	private volatile long min;
+
+	/**
+	 * Creates a new object with the provided initial value and tolerance.
+	 * @param initialValue Inital value.
+	 * @param tolerance Maximum error of the minimum and maximum values (>= 0).
+	 * @return The created object.
+	 */
+	public static StripedLongWaterMark of(long initialValue, long tolerance) {
+		checkArgument(tolerance >= 0, "The tolerance must be >= 0");
+		return new StripedLongWaterMark(initialValue, tolerance);
+	}
+
+	/**
+	 * Creates a new object with the provided initial value and tolerance 0.
+	 * @param initialValue Inital value.
+	 * @return The created object.
+	 */
+	public static StripedLongWaterMark of(long initialValue) {
+		return of(initialValue, 0L);
+	}
+
+	/**
+	 * Creates a new object with initial value 0 and tolerance 0.
+	 * @return The created object.
+	 */
+	public static StripedLongWaterMark of() {
+		return of(0L);
+	}
+
+	/** Constructor. */
+	private StripedLongWaterMark(long initialValue, long tolerance) {
+		this.base = initialValue;
+		this.max = initialValue;
+		this.min = initialValue;
+		int n = 1;
+		final int target = Runtime.getRuntime().availableProcessors() * 2;
+		while (n < target && n < MAX_CELLS) {
+			n <<= 1;
+		}
+		this.cells = new Cell[n];
+		for (int i = 0; i < n; i++) {
+			cells[i] = new Cell();
+		}
+		this.mask = n - 1;
+		// Between folds each cell may drift up to threshold - 1 from both sides
+		this.threshold = tolerance / (2 * n) + 1;
+	}
+
+	/** Returns the cell of the current thread. */
+	private Cell cell() {
+		long h = Thread.currentThread().getId();
+		h *= 0x9E3779B97F4A7C15L;
+		return cells[(int) (h >>> 32) & mask];
+	}
+
+	/**
+	 * Adds a certain amount to the current value.
+	 * @param value Value to add.
+	 */
+	public void add(long value) {
+		if (cell().add(value, threshold)) {
+			fold(sum());
+		}
+	}
+
+	/** Folds a value into the minimum and maximum values. */
+	private void fold(long v) {
+		long m;
+		while (v > (m = max)) {
+			if (MAX.compareAndSet(this, m, v)) {
+				break;
+			}
+		}
+		while (v < (m = min)) {
+			if (MIN.compareAndSet(this, m, v)) {
+				break;
+			}
+		}
+	}
+
+	/** Adds one to the current value. */
+	public void inc() {
+		add(1L);
+	}
+
+	/** Subtract one to the current value. */
+	public void dec() {
+		add(-1L);
+	}
+
+	/** Returns the current value, which is exact if there are no concurrent updates. */
+	public long sum() {
+		long sum = base;
+		for (Cell c : cells) {
+			sum += c.value;
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns a snapshot with the current value and the minimum and maximum values.
+	 */
+	public LongWaterMark get() {
+		final long current = sum();
+		// The extremes may not have been updated yet by a concurrent update
+		return LongWaterMark.of(current, Math.min(min, current), Math.max(max, current));
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).addValue(get()).toString();
+	}
+
+	/** Padded cell. */
+	@SuppressWarnings("unused")
+	private static final class Cell {
+		/** Value updater. */
+		private static final AtomicLongFieldUpdater<Cell> VALUE = AtomicLongFieldUpdater.newUpdater(Cell.class, "value");
+		/** Drift updater. */
+		private static final AtomicLongFieldUpdater<Cell> DRIFT = AtomicLongFieldUpdater.newUpdater(Cell.class, "drift");
+
+		/** Padding to avoid false sharing with the previous cell. */
+		private long p0, p1, p2, p3, p4, p5, p6;
+		/** Sum of the values added to this cell. */
+		volatile long value;
+		/** Sum of the values added to this cell since its last fold. */
+		volatile long drift;
+		/** Padding to avoid false sharing with the next cell. */
+		private long q0, q1, q2, q3, q4, q5, q6;
+
+		/**
+		 * Adds a value.
+		 * @return Whether the drift has reached the threshold and the value must be folded.
+		 */
+		boolean add(long x, long threshold) {
+			VALUE.addAndGet(this, x);
+			final long d = DRIFT.addAndGet(this, x);
+			// If the reset fails another thread sharing the cell has updated the drift
+			return (d >= threshold || d <= -threshold) && DRIFT.compareAndSet(this, d, 0L);
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.util.concurrent;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.derquinse.common.base.Disposable;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.Atomics;
+
+/**
+ * Shared value that may be replaced while in use, e.g. reloaded configurations or loaded resources.
+ * Readers acquire disposable references to the current value without locking. Each value is a
+ * generation backed by a {@link RefCounted}: swapping publishes the new generation atomically and
+ * shuts the previous one down, so its hook runs once the references acquired before the swap have
+ * been disposed. Acquiring only retries if it races with a swap.
+ * @param <T> the type of the shared value.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class SwappableRef<T> implements Supplier<Disposable<T>> {
+	/** Empty hook. */
+	private static final Runnable NO_HOOK = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	/** Current generation. */
+	private final AtomicReference<Generation<T>> current;
+	/** Number of generations created. */
+	private final AtomicLong generations = new AtomicLong();
+	/** Number of generations which hook has not been run yet. */
+	private final AtomicInteger alive = new AtomicInteger();
+
+	/**
+	 * Creates a new swappable reference with no hook for the initial value.
+	 * @param value Initial value.
+	 */
+	public static <T> SwappableRef<T> of(T value) {
+		return of(value, NO_HOOK);
+	}
+
+	/**
+	 * Creates a new swappable reference.
+	 * @param value Initial value.
+	 * @param hook Hook to run once the initial value has been replaced and every reference to it
+	 *          disposed.
+	 */
+	public static <T> SwappableRef<T> of(T value, Runnable hook) {
+		return new SwappableRef<T>(value, hook);
+	}
+
+	/** Constructor. */
+	private SwappableRef(T value, Runnable hook) {
+		this.current = Atomics.newReference(generation(value, hook));
+	}
+
+	/** Creates a new generation. */
+	private Generation<T> generation(T value, Runnable hook) {
+		checkNotNull(value, "The referenced value is mandatory");
+		checkNotNull(hook, "The shutdown hook must be provided");
+		final RefCounted<T> ref = Refs.counted(value, new Release(hook));
+		alive.incrementAndGet();
+		return new Generation<T>(generations.incrementAndGet(), ref, false);
+	}
+
+	/**
+	 * Returns a new disposable reference to the current value, if not shut down. The return value
+	 * will be valid until it is disposed, even if the value is swapped in the meantime.
+	 * @return The new reference or {@code null} if this object has been shut down.
+	 */
+	@Nullable
+	public Disposable<T> tryAcquire() {
+		while (true) {
+			final Generation<T> g = current.get();
+			if (g.closed) {
+				return null;
+			}
+			final Disposable<T> d = Refs.tryAcquire(g.ref);
+			if (d != null) {
+				return d;
+			}
+			// The generation has been swapped concurrently
+		}
+	}
+
+	/**
+	 * Returns a new disposable reference to the current value. The return value will be valid until
+	 * it is disposed, even if the value is swapped in the meantime.
+	 * @throws IllegalStateException if this object has been shut down.
+	 */
+	@Override
+	public Disposable<T> get() {
+		final Disposable<T> d = tryAcquire();
+		checkState(d != null, "Already closed");
+		return d;
+	}
+
+	/**
+	 * Replaces the current value with one that needs no hook.
+	 * @see #swap(Object, Runnable)
+	 */
+	public Future<Long> swap(T value) {
+		return swap(value, NO_HOOK);
+	}
+
+	/**
+	 * Replaces the current value. The previous value is shut down and its hook run by the thread that
+	 * disposes its last reference.
+	 * @param value New value.
+	 * @param hook Hook to run once the new value has been replaced and every reference to it disposed.
+	 * @return A future which result is the execution time of the hook of the previous value.
+	 * @throws IllegalStateException if this object has been shut down, in which case the hook of the
+	 *           new value is run immediately.
+	 */
+	public Future<Long> swap(T value, Runnable hook) {
+		final Generation<T> next = generation(value, hook);
+		while (true) {
+			final Generation<T> g = current.get();
+			if (g.closed) {
+				next.ref.shutdown();
+				throw new IllegalStateException("Already closed");
+			}
+			if (current.compareAndSet(g, next)) {
+				return g.ref.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Shuts the reference down. No more references will be provided and the hook of the current
+	 * value will be run when its last reference is disposed. If the reference has been already shut
+	 * down this method is a no-op.
+	 * @return A future which result is the execution time of the hook of the current value.
+	 */
+	public Future<Long> shutdown() {
+		while (true) {
+			final Generation<T> g = current.get();
+			if (g.closed || current.compareAndSet(g, new Generation<T>(g.number, g.ref, true))) {
+				return g.ref.shutdown();
+			}
+		}
+	}
+
+	/** Returns the number of the current generation, starting at 1. */
+	public long getGeneration() {
+		return current.get().number;
+	}
+
+	/** Returns the number of generations which hook has not been run yet, including the current one. */
+	public int getAliveGenerations() {
+		return alive.get();
+	}
+
+	/** Returns the number of active references to the current value. */
+	public int getCount() {
+		return current.get().ref.getCount();
+	}
+
+	@Override
+	public String toString() {
+		final Generation<T> g = current.get();
+		return MoreObjects.toStringHelper(this).add("generation", g.number).add("active", !g.closed)
+				.add("alive", alive.get()).add("ref", g.ref).toString();
+	}
+
+	/** Generation. */
+	private static final class Generation<T> {
+		/** Generation number. */
+		final long number;
+		/** Reference to the value. */
+		final RefCounted<T> ref;
+		/** Whether the owner has been shut down. */
+		final boolean closed;
+
+		Generation(long number, RefCounted<T> ref, boolean closed) {
+			this.number = number;
+			this.ref = ref;
+			this.closed = closed;
+		}
+	}
+
+	/** Generation hook wrapper. */
+	private final class Release implements Runnable {
+		/** Value hook. */
+		private final Runnable hook;
+
+		Release(Runnable hook) {
+			this.hook = hook;
+		}
+
+		@Override
+		public void run() {
+			try {
+				hook.run();
+			} finally {
+				alive.decrementAndGet();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.util.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.derquinse.common.base.LongWaterMark;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Ticker;
+
+/**
+ * Long watermark which minimum and maximum values are computed over a sliding time window instead
+ * of since creation, e.g. the maximum number of concurrent requests in the last minute. The window
+ * is divided in a ring of buckets, each one covering a fixed interval and keeping the extremes
+ * reached during it. Buckets are reused once they fall out of the window, so the window actually
+ * covers between the window length minus one interval and the window length. Updates are lock-free
+ * and only allocate when they start a new interval.
+ * @author Andres Rodriguez
+ */
+@Beta
+@ThreadSafe
+public final class WindowedLongWaterMark {
+	/** Default number of buckets. */
+	private static final int DEFAULT_BUCKETS = 12;
+
+	/** Ticker. */
+	private final Ticker ticker;
+	/** Ticker value at creation. */
+	private final long origin;
+	/** Window length in nanoseconds. */
+	private final long window;
+	/** Bucket interval in nanoseconds. */
+	private final long interval;
+	/** Current value. */
+	private final AtomicLong current;
+	/** Buckets, indexed by interval number modulo the number of buckets. */
+	private final AtomicReferenceArray<Bucket> buckets;
+
+	/**
+	 * Creates a new object with initial value 0 and default number of buckets, using the system
+	 * ticker.
+	 * @param window Window length.
+	 * @param unit Window length unit.
+	 * @return The created object.
+	 */
+	public static WindowedLongWaterMark of(long window, TimeUnit unit) {
+		return of(0L, window, unit, DEFAULT_BUCKETS, Ticker.systemTicker());
+	}
+
+	/**
+	 * Creates a new object.
+	 * @param initialValue Initial value.
+	 * @param window Window length.
+	 * @param unit Window length unit.
+	 * @param buckets Number of buckets the window is divided in.
+	 * @param ticker Ticker used to measure time.
+	 * @return The created object.
+	 */
+	public static WindowedLongWaterMark of(long initialValue, long window, TimeUnit unit, int buckets, Ticker ticker) {
+		return new WindowedLongWaterMark(initialValue, window, unit, buckets, ticker);
+	}
+
+	/** Constructor. */
+	private WindowedLongWaterMark(long initialValue, long window, TimeUnit unit, int buckets, Ticker ticker) {
+		checkNotNull(unit, "The window unit must be provided");
+		this.ticker = checkNotNull(ticker, "The ticker must be provided");
+		checkArgument(buckets > 0, "The number of buckets must be > 0");
+		this.window = unit.toNanos(window);
+		checkArgument(this.window >= buckets, "The window must be at least one nanosecond per bucket");
+		this.interval = this.window / buckets;
+		this.origin = ticker.read();
+		this.current = new AtomicLong(initialValue);
+		this.buckets = new AtomicReferenceArray<Bucket>(buckets);
+		final Bucket unused = new Bucket(Long.MIN_VALUE, initialValue, initialValue);
+		for (int i = 0; i < buckets; i++) {
+			this.buckets.set(i, unused);
+		}
+	}
+
+	/** Returns the window length in the provided unit. */
+	public long getWindow(TimeUnit unit) {
+		return unit.convert(window, TimeUnit.NANOSECONDS);
+	}
+
+	/** Returns the number of buckets. */
+	public int getBuckets() {
+		return buckets.length();
+	}
+
+	/** Returns the current interval number. */
+	private long interval() {
+		return (ticker.read() - origin) / interval;
+	}
+
+	/** Records a change of the current value in the bucket of the current interval. */
+	private void record(long previous, long value) {
+		final long n = interval();
+		final int i = (int) (n % buckets.length());
+		Bucket b = buckets.get(i);
+		while (b.interval != n) {
+			if (b.interval > n) {
+				return; // the update took too long and its interval has already left the window
+			}
+			// The value at the start of the interval is part of it
+			if (buckets.compareAndSet(i, b, new Bucket(n, Math.min(previous, value), Math.max(previous, value)))) {
+				return;
+			}
+			b = buckets.get(i);
+		}
+		b.update(value);
+	}
+
+	/**
+	 * Sets the current value.
+	 * @param value New value.
+	 */
+	public void set(long value) {
+		record(current.getAndSet(value), value);
+	}
+
+	/**
+	 * Adds a certain amount to the current value.
+	 * @param value Value to add.
+	 */
+	public void add(long value) {
+		final long v = current.addAndGet(value);
+		record(v - value, v);
+	}
+
+	/** Adds one to the current value. */
+	public void inc() {
+		add(1L);
+	}
+
+	/** Subtract one to the current value. */
+	public void dec() {
+		add(-1L);
+	}
+
+	/** Returns the current value. */
+	public long current() {
+		return current.get();
+	}
+
+	/** Returns a snapshot with the current value and the minimum and maximum values in the window. */
+	public LongWaterMark get() {
+		final long n = interval();
+		final long v = current.get();
+		long min = v;
+		long max = v;
+		final int size = buckets.length();
+		for (int i = 0; i < size; i++) {
+			final Bucket b = buckets.get(i);
+			final long age = n - b.interval; // negative for unused buckets
+			if (age >= 0 && age < size) {
+				min = Math.min(min, b.min);
+				max = Math.max(max, b.max);
+			}
+		}
+		return LongWaterMark.of(v, min, max);
+	}
+
+	/** Returns the minimum value in the window. */
+	public long getWindowMin() {
+		return get().getMin();
+	}
+
+	/** Returns the maximum value in the window. */
+	public long getWindowMax() {
+		return get().getMax();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("window", window).addValue(get()).toString();
+	}
+
+	/** Extremes reached during an interval. */
+	private static final class Bucket {
+		/** Maximum updater. */
+		private static final AtomicLongFieldUpdater<Bucket> MAX = AtomicLongFieldUpdater.newUpdater(Bucket.class, "max");
+		/** Minimum updater. */
+		private static final AtomicLongFieldUpdater<Bucket> MIN = AtomicLongFieldUpdater.newUpdater(Bucket.class, "min");
+
+		/** Interval number. */
+		final long interval;
+		/** Maximum value in the interval. */
+		volatile long max;
+		/** Minimum value in the interval. */
+		volatile long min;
+
+		/** Constructor. */
+		Bucket(long interval, long min, long max) {
+			this.interval = interval;
+			this.min = min;
+			this.max = max;
+		}
+
+		/** Updates the extremes with a new value. */
+		void update(long v) {
+			long m;
+			while (v > (m = max)) {
+				if (MAX.compareAndSet(this, m, v)) {
+					return;
+				}
+			}
+			while (v < (m = min)) {
+				if (MIN.compareAndSet(this, m, v)) {
+					return;
+				}
+			}
+		}
+	}
+
+}
@@ -35,7 +35,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteSource;
 import com.google.common.io.Closer;
 import com.google.common.io.Files;
-import com.google.common.primitives.Ints;
 
 /**
  * Zip file loader.
@@ -97,7 +96,7 @@ public final class ZipFileLoader {
 		ZipEntry entry;
 		while ((entry = zis.getNextEntry()) != null) {
 			if (allowed < currentLoader.getMaxSize()) {
-				currentLoader = currentLoader.maxSize(Ints.saturatedCast(allowed));
+				currentLoader = currentLoader.maxSize(allowed);
 			}
 			try {
 				final MemoryByteSource data = currentLoader.load(zis);
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteSource;
+
+/**
+ * Tests for ByteEncoding.
+ * @author Andres Rodriguez
+ */
+public class ByteEncodingTest {
+	/** Checks an encoding against the Guava one. */
+	private void check(ByteEncoding encoding, BaseEncoding expected) throws IOException {
+		for (int n = 0; n < 50; n++) {
+			final byte[] bytes = RandomSupport.getBytes(n);
+			final String s = expected.encode(bytes);
+			final ByteString value = ByteString.copyFrom(bytes);
+			assertEquals(encoding.encodedLength(n), s.length());
+			assertEquals(encoding.encode(value), s);
+			assertEquals(encoding.decode(s), value);
+			assertEquals(encoding.decode(s.toCharArray(), 0, s.length()), value);
+			// Views
+			if (n > 2) {
+				final ByteString view = value.substring(1, n - 1);
+				assertEquals(encoding.encode(view), expected.encode(bytes, 1, n - 2));
+			}
+			// Targets
+			final char[] chars = new char[s.length() + 2];
+			assertEquals(encoding.encode(value, chars, 1), s.length());
+			assertEquals(new String(chars, 1, s.length()), s);
+			final StringBuilder sb = new StringBuilder();
+			encoding.encode(value, sb);
+			assertEquals(sb.toString(), s);
+			final ByteBuffer buffer = ByteBuffer.allocate(s.length());
+			encoding.encode(value, buffer);
+			assertEquals(new String(buffer.array(), Charsets.US_ASCII), s);
+		}
+		// Streaming
+		final byte[] large = RandomSupport.getBytes(100003);
+		final StringWriter w = new StringWriter();
+		assertEquals(encoding.encode(ByteSource.wrap(large), w), large.length);
+		assertEquals(w.toString(), expected.encode(large));
+		final StringBuilder sb = new StringBuilder();
+		encoding.encode(large, 0, large.length, sb);
+		assertEquals(sb.toString(), w.toString());
+	}
+
+	/** Checks that a value can not be decoded. */
+	private void invalid(ByteEncoding encoding, String value) {
+		try {
+			encoding.decode(value);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/** Base 16. */
+	@Test
+	public void base16() throws IOException {
+		check(ByteEncoding.base16(), BaseEncoding.base16().lowerCase());
+		check(ByteEncoding.base16Upper(), BaseEncoding.base16());
+		assertEquals(ByteEncoding.base16().decode("0aFf"), ByteString.copyFrom(new byte[] { 10, -1 }));
+		invalid(ByteEncoding.base16(), "abc");
+		invalid(ByteEncoding.base16(), "0g");
+	}
+
+	/** Base 32. */
+	@Test
+	public void base32() throws IOException {
+		check(ByteEncoding.base32(), BaseEncoding.base32());
+		assertEquals(ByteEncoding.base32().decode("my"), ByteEncoding.base32().decode("MY======"));
+		invalid(ByteEncoding.base32(), "MYM");
+		invalid(ByteEncoding.base32(), "M1");
+	}
+
+	/** Base 64. */
+	@Test
+	public void base64() throws IOException {
+		check(ByteEncoding.base64(), BaseEncoding.base64());
+		check(ByteEncoding.base64Url(), BaseEncoding.base64Url());
+		assertEquals(ByteEncoding.base64().decode("Zm8"), ByteString.copyFromUtf8("fo"));
+		invalid(ByteEncoding.base64(), "Z");
+		invalid(ByteEncoding.base64(), "Zm=8");
+	}
+
+	/** Ranges which end overflows. */
+	@Test
+	public void overflow() {
+		final byte[] bytes = new byte[10];
+		final ByteEncoding e = ByteEncoding.base16();
+		try {
+			e.encode(bytes, 5, Integer.MAX_VALUE, new char[40], 0);
+			fail("Range overflow");
+		} catch (IndexOutOfBoundsException ex) {
+			// ok
+		}
+		try {
+			e.encode(bytes, 2, 4, new char[40], Integer.MAX_VALUE);
+			fail("Target range overflow");
+		} catch (IndexOutOfBoundsException ex) {
+			// ok
+		}
+		try {
+			e.decode(new char[4], 1, Integer.MAX_VALUE);
+			fail("Decode range overflow");
+		} catch (IndexOutOfBoundsException ex) {
+			// ok
+		}
+		assertEquals(e.encode(bytes, 2, 4, new char[40], 32), 8);
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for ByteStringInterner.
+ * @author Andres Rodriguez
+ */
+public class ByteStringInternerTest {
+	/** Interning. */
+	@Test
+	public void intern() {
+		final ByteStringInterner interner = ByteStrings.interner();
+		final byte[] data = RandomSupport.getBytes(20);
+		final ByteString s1 = interner.intern(ByteString.copyFrom(data));
+		final ByteString s2 = interner.intern(ByteString.copyFrom(data));
+		assertSame(s2, s1);
+		assertEquals(interner.size(), 1L);
+		assertEquals(interner.internCount(), 2L);
+		assertEquals(interner.hitCount(), 1L);
+		assertEquals(interner.hitRate(), 0.5);
+		// Views are trimmed
+		final byte[] large = RandomSupport.getBytes(1000);
+		final ByteString view = ByteString.wrap(large).substring(100, 120);
+		final ByteString interned = interner.intern(view);
+		assertEquals(interned, view);
+		assertTrue(interned.isTrimmed());
+		assertSame(interner.intern(ByteString.copyFrom(large, 100, 20)), interned);
+		assertEquals(interner.size(), 2L);
+	}
+
+	/** Bounded interner. */
+	@Test
+	public void bounded() {
+		final ByteStringInterner interner = ByteStrings.interner(1);
+		final ByteString s1 = interner.intern(ByteString.copyFrom(RandomSupport.getBytes(20)));
+		final ByteString s2 = ByteString.copyFrom(RandomSupport.getBytes(20));
+		assertSame(interner.intern(s2), s2);
+		assertSame(interner.intern(ByteString.copyFrom(s1.toByteArray())), s1);
+		assertEquals(interner.size(), 1L);
+	}
+
+}
@@ -16,9 +16,16 @@
 package net.derquinse.common.base;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import net.derquinse.common.test.EqualityTests;
 import net.derquinse.common.test.HessianSerializabilityTests;
@@ -26,7 +33,10 @@ import net.derquinse.common.test.SerializabilityTests;
 
 import org.testng.annotations.Test;
 
+import com.google.common.collect.Lists;
 import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.UnsignedBytes;
 
 /**
  * Tests for ByteString
@@ -77,4 +87,123 @@ public class ByteStringTest {
 		assertEquals(h.toString(), s.toHexString());
 	}
 
+	/** Views. */
+	@Test
+	public void views() throws Exception {
+		final byte[] data = new byte[100];
+		R.nextBytes(data);
+		final ByteString s = ByteString.wrap(data);
+		final ByteString v = s.substring(10, 30);
+		assertEquals(v.size(), 20);
+		assertFalse(v.isTrimmed());
+		assertEquals(v.toByteArray(), Arrays.copyOfRange(data, 10, 30));
+		assertEquals(v.byteAt(0), data[10]);
+		EqualityTests.two(v, ByteString.copyFrom(data, 10, 20));
+		assertEquals(v.hashCode(), ByteString.copyFrom(data, 10, 20).hashCode());
+		assertEquals(v.toHexString(), ByteString.copyFrom(data, 10, 20).toHexString());
+		assertEquals(v.asReadOnlyByteBuffer().remaining(), 20);
+		assertEquals(ByteStreams.toByteArray(v.newInput()), v.toByteArray());
+		final ByteString t = v.trim();
+		assertTrue(t.isTrimmed());
+		assertEquals(t, v);
+		assertSame(t.trim(), t);
+		assertSame(s.substring(0), s);
+		assertSame(s.substring(5, 5), ByteString.EMPTY);
+		// Adjacent views are concatenated without copying
+		final ByteString c = v.concat(s.substring(30, 50));
+		assertEquals(c, s.substring(10, 50));
+		assertFalse(c.isTrimmed());
+		assertEquals(ByteString.copyFrom(Arrays.asList(s.substring(0, 10), v, s.substring(30))), s);
+		assertEquals(v.concat(t), ByteString.copyFrom(Arrays.asList(t, t)));
+		assertTrue(v.concat(t).isTrimmed());
+		SerializabilityTests.check(v);
+		try {
+			v.byteAt(20);
+			fail();
+		} catch (ArrayIndexOutOfBoundsException e) {
+		}
+	}
+
+	/** Output. */
+	@Test
+	public void output() throws Exception {
+		final byte[] data = new byte[100000];
+		R.nextBytes(data);
+		// Exact size
+		ByteString.Output os = ByteString.newOutput(100);
+		os.write(data, 0, 100);
+		assertEquals(os.size(), 100);
+		final ByteString exact = os.build();
+		assertEquals(exact.toByteArray(), Arrays.copyOf(data, 100));
+		os.write(data, 100, 10);
+		assertEquals(exact.toByteArray(), Arrays.copyOf(data, 100));
+		assertEquals(os.build().toByteArray(), Arrays.copyOf(data, 110));
+		// Chunked
+		os = ByteString.newOutput(0);
+		assertSame(os.build(), ByteString.EMPTY);
+		int i = 0;
+		while (i < data.length) {
+			final int n = Math.min(R.nextInt(5000), data.length - i);
+			if (n % 2 == 0) {
+				os.write(data[i++]);
+			} else {
+				os.write(data, i, n);
+				i += n;
+			}
+		}
+		assertEquals(os.size(), data.length);
+		assertEquals(os.build().toByteArray(), data);
+		os.write(ByteString.copyFrom(data, 10, 20));
+		assertEquals(os.build().substring(data.length), ByteString.copyFrom(data, 10, 20));
+	}
+
+	/** UTF-8. */
+	@Test
+	public void utf8() throws Exception {
+		final String ascii = "Plain ASCII text";
+		final String other = "Non-ASCII \u00f1 \u20ac \ud83d\ude00 text";
+		assertEquals(ByteString.copyFromUtf8(ascii).toByteArray(), ascii.getBytes("UTF-8"));
+		assertEquals(ByteString.copyFromUtf8(other).toByteArray(), other.getBytes("UTF-8"));
+		assertEquals(ByteString.copyFromUtf8(other).toStringUtf8(), other);
+		assertEquals(ByteString.copyFromUtf8(ascii).substring(6).toStringUtf8(), "ASCII text");
+		assertSame(ByteString.copyFromUtf8(""), ByteString.EMPTY);
+	}
+
+	/** Ordering. */
+	@Test
+	public void ordering() throws Exception {
+		final Comparator<byte[]> expected = UnsignedBytes.lexicographicalComparator();
+		final List<byte[]> arrays = Lists.newArrayList();
+		for (int i = 0; i < 200; i++) {
+			final byte[] bytes = new byte[R.nextInt(40)];
+			R.nextBytes(bytes);
+			arrays.add(bytes);
+			// Common prefixes
+			final byte[] other = bytes.clone();
+			if (other.length > 0) {
+				other[R.nextInt(other.length)]++;
+			}
+			arrays.add(other);
+			arrays.add(Arrays.copyOf(bytes, bytes.length + 1));
+		}
+		final byte[] shared = new byte[2000];
+		R.nextBytes(shared);
+		for (byte[] a : arrays) {
+			for (byte[] b : arrays.subList(0, 30)) {
+				final ByteString sa = ByteString.copyFrom(a);
+				// Views at an unaligned offset
+				System.arraycopy(b, 0, shared, 3, b.length);
+				final ByteString sb = ByteString.wrap(shared, 3, b.length);
+				assertEquals(Integer.signum(sa.compareTo(sb)), Integer.signum(expected.compare(a, b)));
+				assertEquals(Integer.signum(ByteString.comparator().compare(sb, sa)), Integer.signum(expected.compare(b, a)));
+				assertEquals(sa.equals(sb), Arrays.equals(a, b));
+				assertEquals(sa.constantTimeEquals(sb), Arrays.equals(a, b));
+				if (sa.equals(sb)) {
+					assertEquals(sa.hashCode(), sb.hashCode());
+					assertEquals(sa.hash64(), sb.hash64());
+				}
+			}
+		}
+	}
+
 }
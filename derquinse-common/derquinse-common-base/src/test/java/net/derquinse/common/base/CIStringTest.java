@@ -15,10 +15,14 @@
  */
 package net.derquinse.common.base;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import net.derquinse.common.test.EqualityTests;
+import net.derquinse.common.test.SerializabilityTests;
 
 import org.testng.annotations.Test;
 
@@ -62,4 +66,32 @@ public class CIStringTest {
 		assertNull(CIString.valueOf(null));
 	}
 
+	/**
+	 * Hash codes and character sequences.
+	 */
+	@Test
+	public void hash() {
+		final String s = "Content-Type-With-A-Very-Long-Name-Longer-Than-32";
+		final CIString cis = CIString.valueOf(s);
+		assertEquals(cis.hashCode(), s.substring(0, 32).toLowerCase().hashCode());
+		assertEquals(CIString.caseInsensitiveHash(new StringBuilder(s.toUpperCase())), cis.hashCode());
+		assertTrue(cis.contentEquals(s.toLowerCase()));
+		assertTrue(cis.contentEquals(new StringBuilder(s.toUpperCase())));
+		assertFalse(cis.contentEquals(s.substring(1)));
+		// Non-ASCII
+		EqualityTests.many(CIString.valueOf("\u00c1RBOL"), CIString.valueOf("\u00e1rbol"));
+		assertTrue(CIString.valueOf("\u00c1RBOL").contentEquals("\u00e1rBOL"));
+		// Same hash, different strings
+		assertEquals(CIString.valueOf("AZ").hashCode(), CIString.valueOf("b[").hashCode());
+		assertNotEquals(CIString.valueOf("AZ"), CIString.valueOf("b["));
+	}
+
+	/**
+	 * Serialization.
+	 */
+	@Test
+	public void serialization() throws Exception {
+		SerializabilityTests.check(CIString.valueOf(VALUE0));
+	}
+
 }
@@ -15,7 +15,11 @@
  */
 package net.derquinse.common.base;
 
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import net.derquinse.common.test.EqualityTests;
 import net.derquinse.common.test.RandomSupport;
@@ -23,8 +27,10 @@ import net.derquinse.common.test.RandomSupport;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
 
 /**
  * Tests for Digests
@@ -57,4 +63,83 @@ public class DigestsTest {
 		Assert.assertEquals(s1.toByteArray(), h.asBytes());
 	}
 
+	/**
+	 * Pooled hashers.
+	 */
+	@Test
+	public void hasher() throws Exception {
+		byte[] bytes = RandomSupport.getBytes(5 * 1024);
+		final ByteString expected = Digests.getDigest(bytes, Digests.sha1());
+		Assert.assertEquals(Digests.sha1(bytes), expected);
+		Assert.assertEquals(Digests.sha1(ByteSource.wrap(bytes)), expected);
+		final DigestHasher h1 = Digests.hasher(Digests.SHA1);
+		final MessageDigest md = h1.get();
+		h1.update(bytes, 0, 1000);
+		// Nested uses get a different instance
+		Assert.assertEquals(Digests.sha1(bytes), expected);
+		final DigestHasher h2 = Digests.hasher(Digests.SHA1);
+		Assert.assertNotSame(h2.get(), md);
+		h2.dispose();
+		h1.update(ByteString.copyFrom(bytes, 1000, bytes.length - 1000));
+		Assert.assertEquals(h1.digest(), expected);
+		Assert.assertEquals(h1.update(ByteSource.wrap(bytes)).digest(), expected);
+		h1.update(bytes, 0, 10);
+		h1.dispose();
+		h1.dispose();
+		try {
+			h1.get();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			// ok
+		}
+		// Returned instances are reset and reused
+		final DigestHasher h3 = Digests.hasher(Digests.SHA1);
+		Assert.assertSame(h3.get(), md);
+		Assert.assertEquals(h3.update(bytes).digest(), expected);
+		h3.dispose();
+	}
+
+	/**
+	 * Unknown algorithms.
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void unknown() {
+		Digests.hasher("NONE");
+	}
+
+	/** Checks a multiple digest result. */
+	private void checkAll(byte[] bytes, Map<String, ByteString> digests) {
+		Assert.assertEquals(ImmutableList.copyOf(digests.keySet()),
+				ImmutableList.of(Digests.MD5, Digests.SHA1, Digests.SHA256));
+		Assert.assertEquals(digests.get(Digests.MD5), Digests.md5(bytes));
+		Assert.assertEquals(digests.get(Digests.SHA1), Digests.sha1(bytes));
+		Assert.assertEquals(digests.get(Digests.SHA256), Digests.sha256(bytes));
+	}
+
+	/**
+	 * Multiple digests in a single pass.
+	 */
+	@Test
+	public void digestAll() throws Exception {
+		byte[] bytes = RandomSupport.getBytes(300 * 1024 + 7);
+		final ByteSource source = ByteSource.wrap(bytes);
+		checkAll(bytes, Digests.digestAll(source, Digests.MD5, Digests.SHA1, Digests.SHA256, Digests.MD5));
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			checkAll(bytes, Digests.digestAll(source, executor, Digests.MD5, Digests.SHA1, Digests.SHA256));
+		} finally {
+			executor.shutdown();
+		}
+		final Map<String, ByteString> empty = Digests.digestAll(ByteSource.empty(), Digests.SHA1);
+		Assert.assertEquals(empty.get(Digests.SHA1), Digests.sha1(new byte[0]));
+	}
+
+	/**
+	 * Multiple digests require at least one algorithm.
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void digestAllNone() throws Exception {
+		Digests.digestAll(ByteSource.empty());
+	}
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import net.derquinse.common.io.MemoryByteSource;
+import net.derquinse.common.test.EqualityTests;
+import net.derquinse.common.test.RandomSupport;
+import net.derquinse.common.test.SerializabilityTests;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for DirectByteString.
+ * @author Andres Rodriguez
+ */
+public class DirectByteStringTest {
+	/** Contracts shared with ByteString. */
+	@Test
+	public void contracts() throws Exception {
+		final ByteString heap = ByteString.copyFrom(RandomSupport.getBytes(1000));
+		final DirectByteString s1 = DirectByteString.copyOf(heap);
+		final DirectByteString s2 = DirectByteString.copyOf(heap.toByteArray());
+		EqualityTests.two(s1, s2);
+		assertTrue(s1.asReadOnlyByteBuffer().isDirect());
+		assertTrue(s1.asReadOnlyByteBuffer().isReadOnly());
+		assertEquals(s1.size(), heap.size());
+		assertEquals(s1.hashCode(), heap.hashCode());
+		assertEquals(s1.toHexString(), heap.toHexString());
+		assertEquals(s1.toString(), heap.toString());
+		assertTrue(s1.contentEquals(heap));
+		assertFalse(s1.contentEquals(heap.substring(1)));
+		assertEquals(s1.toByteString(), heap);
+		assertEquals(s1.byteAt(10), heap.byteAt(10));
+		final ByteBuffer target = ByteBuffer.allocate(1000);
+		s1.copyTo(target);
+		assertEquals(target.array(), heap.toByteArray());
+		SerializabilityTests.check(s1);
+	}
+
+	/** Views and wrapping. */
+	@Test
+	public void views() {
+		final byte[] data = RandomSupport.getBytes(100);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+		buffer.put(data).flip();
+		final DirectByteString s = DirectByteString.wrap(buffer);
+		assertEquals(buffer.position(), 0);
+		assertEquals(s.toByteArray(), data);
+		final DirectByteString sub = s.substring(10, 20);
+		assertEquals(sub.size(), 10);
+		assertTrue(sub.contentEquals(ByteString.copyFrom(data, 10, 10)));
+		assertSame(s.substring(0, 100), s);
+		assertSame(s.substring(5, 5), DirectByteString.EMPTY);
+		assertSame(DirectByteString.copyOf(new byte[0]), DirectByteString.EMPTY);
+		assertEquals(DirectByteString.copyFrom(ByteBuffer.wrap(data)), s);
+	}
+
+	/** Interoperation with memory byte sources and digests. */
+	@Test
+	public void interop() throws Exception {
+		final byte[] data = RandomSupport.getBytes(5000);
+		final MemoryByteSource direct = MemoryByteSource.directCopyOf(data);
+		final DirectByteString s = direct.toDirectByteString();
+		assertEquals(s.toByteArray(), data);
+		final MemoryByteSource wrapped = MemoryByteSource.wrap(s);
+		assertTrue(wrapped.isDirect());
+		assertEquals(wrapped.read(), data);
+		assertEquals(Digests.getDigest(s, Digests.sha256()), Digests.sha256(data));
+		assertEquals(s.hashCode(), ByteString.copyFrom(data).hashCode());
+	}
+
+}
@@ -109,4 +109,24 @@ public class IntegerWaterMarkTest {
 		notEquals(m.set(m.getMax() + 10).set(m.get()));
 	}
 
+	/**
+	 * Explicit values.
+	 */
+	@Test
+	public void explicit() {
+		final IntegerWaterMark w = IntegerWaterMark.of(3, -2, 8);
+		assertEquals(w.get(), 3);
+		assertEquals(w.getMin(), -2);
+		assertEquals(w.getMax(), 8);
+		EqualityTests.two(w, IntegerWaterMark.of(-2).set(8).set(3));
+	}
+
+	/**
+	 * Invalid explicit values.
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalid() {
+		IntegerWaterMark.of(9, -2, 8);
+	}
+
 }
@@ -110,4 +110,12 @@ public class LongWaterMarkTest {
 		notEquals(m.set(m.getMax() + 10).set(m.get()));
 	}
 
+	/**
+	 * Invalid explicit values.
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void invalid() {
+		LongWaterMark.of(9L, -2L, 8L);
+	}
+
 }
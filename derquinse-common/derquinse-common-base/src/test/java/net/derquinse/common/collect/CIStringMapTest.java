@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+
+import net.derquinse.common.base.CIString;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for CIStringMap.
+ * @author Andres Rodriguez
+ */
+public class CIStringMapTest {
+	/** Random operations checked against a hash map. */
+	@Test
+	public void map() {
+		final Random r = new Random(3L);
+		final CIStringMap<Integer> map = CIStringMap.create();
+		final Map<CIString, Integer> expected = Maps.newHashMap();
+		for (int i = 0; i < 20000; i++) {
+			final String s = "Header-" + r.nextInt(1000);
+			final String key = r.nextBoolean() ? s.toUpperCase() : s.toLowerCase();
+			final CIString cis = CIString.valueOf(key);
+			final int op = r.nextInt(4);
+			if (op == 0) {
+				assertEquals(map.remove(key), expected.remove(cis));
+			} else if (op == 1) {
+				assertEquals(map.remove(cis), expected.remove(cis));
+			} else {
+				assertEquals(map.put(key, i), expected.put(cis, i));
+			}
+			assertEquals(map.size(), expected.size());
+		}
+		assertEquals(map, expected);
+		for (int i = 0; i < 1000; i++) {
+			final String s = "HEADER-" + i;
+			final CIString cis = CIString.valueOf(s);
+			assertEquals(map.get(s), expected.get(cis));
+			assertEquals(map.get(new StringBuilder(s.toLowerCase())), expected.get(cis));
+			assertEquals(map.containsKey(s), expected.containsKey(cis));
+		}
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get("Header-1"));
+	}
+
+	/** Keys of other types. */
+	@Test
+	public void otherKeys() {
+		final CIStringMap<String> map = CIStringMap.create(10);
+		map.put("Content-Type", "text/plain");
+		assertEquals(map.get("content-type"), "text/plain");
+		assertEquals(map.get(CIString.valueOf("CONTENT-TYPE")), "text/plain");
+		assertNull(map.get(1));
+		assertFalse(map.containsKey(null));
+		assertEquals(map.keySet().iterator().next().toString(), "Content-Type");
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+/**
+ * Tests for FixedWidthByteStringMap and FixedWidthByteStringLongMap.
+ * @author Andres Rodriguez
+ */
+public class FixedWidthByteStringMapTest {
+	/** Test keys. */
+	private static List<ByteString> keys() {
+		final List<ByteString> keys = Lists.newArrayList();
+		for (int i = 0; i < 2000; i++) {
+			keys.add(Digests.sha256(Ints.toByteArray(i)));
+		}
+		return keys;
+	}
+
+	/** Random operations checked against a hash map. */
+	@Test
+	public void map() {
+		final Random r = new Random(2L);
+		final List<ByteString> keys = keys();
+		final FixedWidthByteStringMap<Integer> map = FixedWidthByteStringMap.create(32);
+		final Map<ByteString, Integer> expected = Maps.newHashMap();
+		for (int i = 0; i < 20000; i++) {
+			final ByteString key = keys.get(r.nextInt(keys.size()));
+			if (r.nextInt(3) == 0) {
+				assertEquals(map.remove(key), expected.remove(key));
+			} else {
+				assertEquals(map.put(key, i), expected.put(key, i));
+			}
+			assertEquals(map.size(), expected.size());
+		}
+		for (ByteString key : keys) {
+			assertEquals(map.get(key), expected.get(key));
+			assertEquals(map.containsKey(key), expected.containsKey(key));
+		}
+		assertEquals(map, expected);
+		assertEquals(Maps.newHashMap(map), expected);
+		assertNull(map.get(ByteString.copyFromUtf8("short")));
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(keys.get(0)));
+	}
+
+	/** Removal through the views. */
+	@Test
+	public void viewRemoval() {
+		final List<ByteString> keys = keys();
+		final FixedWidthByteStringMap<Integer> map = FixedWidthByteStringMap.create(32);
+		final Map<ByteString, Integer> expected = Maps.newHashMap();
+		for (int i = 0; i < 1000; i++) {
+			map.put(keys.get(i), i);
+			expected.put(keys.get(i), i);
+		}
+		assertTrue(map.keySet().removeAll(keys.subList(0, 100)));
+		expected.keySet().removeAll(keys.subList(0, 100));
+		assertTrue(map.keySet().remove(keys.get(500)));
+		expected.remove(keys.get(500));
+		assertTrue(map.values().retainAll(ImmutableSet.of(600, 700, 800)));
+		expected.values().retainAll(ImmutableSet.of(600, 700, 800));
+		assertEquals(map, expected);
+		final Iterator<Map.Entry<ByteString, Integer>> it = map.entrySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().getValue() != 700) {
+				it.remove();
+			}
+		}
+		assertEquals(map, ImmutableMap.of(keys.get(700), 700));
+	}
+
+	/** Long values. */
+	@Test
+	public void longMap() {
+		final Random r = new Random(3L);
+		final List<ByteString> keys = keys();
+		final FixedWidthByteStringLongMap map = FixedWidthByteStringLongMap.create(32, 10);
+		final Map<ByteString, Long> expected = Maps.newHashMap();
+		for (int i = 0; i < 20000; i++) {
+			final ByteString key = keys.get(r.nextInt(keys.size()));
+			if (r.nextInt(3) == 0) {
+				assertEquals(map.remove(key), expected.remove(key) != null);
+			} else {
+				final Long previous = expected.get(key);
+				final long value = (previous == null ? 0L : previous) + i;
+				expected.put(key, value);
+				assertEquals(map.addTo(key, i), value);
+			}
+			assertEquals(map.size(), expected.size());
+		}
+		for (ByteString key : keys) {
+			final Long value = expected.get(key);
+			assertEquals(map.get(key, -1L), value == null ? -1L : value.longValue());
+		}
+		int n = 0;
+		for (ByteString key : map.keys()) {
+			assertTrue(expected.containsKey(key));
+			n++;
+		}
+		assertEquals(n, expected.size());
+		for (Iterator<ByteString> it = map.keys().iterator(); it.hasNext();) {
+			final ByteString key = it.next();
+			if (key.byteAt(0) < 0) {
+				it.remove();
+				expected.remove(key);
+			}
+		}
+		assertEquals(map.size(), expected.size());
+		for (ByteString key : map.keys()) {
+			assertTrue(expected.containsKey(key));
+		}
+		assertTrue(map.put(Digests.sha256(new byte[0]), 7L));
+		assertFalse(map.put(Digests.sha256(new byte[0]), 8L));
+		assertEquals(map.get(Digests.sha256(new byte[0]), 0L), 8L);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.collect;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+/**
+ * Tests for FixedWidthByteStringSet.
+ * @author Andres Rodriguez
+ */
+public class FixedWidthByteStringSetTest {
+	/** Random operations checked against a hash set. */
+	@Test
+	public void random() {
+		final Random r = new Random(1L);
+		final List<ByteString> keys = Lists.newArrayList();
+		for (int i = 0; i < 2000; i++) {
+			keys.add(Digests.sha1(Ints.toByteArray(i)));
+		}
+		final FixedWidthByteStringSet set = FixedWidthByteStringSet.create(20);
+		final Set<ByteString> expected = Sets.newHashSet();
+		for (int i = 0; i < 20000; i++) {
+			final ByteString key = keys.get(r.nextInt(keys.size()));
+			if (r.nextInt(3) == 0) {
+				assertEquals(set.remove(key), expected.remove(key));
+			} else {
+				assertEquals(set.add(key), expected.add(key));
+			}
+			assertEquals(set.size(), expected.size());
+		}
+		for (ByteString key : keys) {
+			assertEquals(set.contains(key), expected.contains(key));
+		}
+		assertEquals(set, expected);
+		assertEquals(Sets.newHashSet(set), expected);
+		assertFalse(set.contains(ByteString.copyFromUtf8("short")));
+		assertFalse(set.contains("other"));
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(keys.get(0)));
+	}
+
+	/**
+	 * Removal through the iterator. One byte keys produce long clusters, which may wrap around the
+	 * end of the table.
+	 */
+	@Test
+	public void iteratorRemove() {
+		final Random r = new Random(4L);
+		for (int n = 0; n < 1000; n++) {
+			final FixedWidthByteStringSet set = FixedWidthByteStringSet.create(1);
+			final Set<ByteString> expected = Sets.newHashSet();
+			for (int i = r.nextInt(40); i > 0; i--) {
+				final ByteString key = ByteString.copyFrom(new byte[] { (byte) r.nextInt(256) });
+				set.add(key);
+				expected.add(key);
+			}
+			final Set<ByteString> all = ImmutableSet.copyOf(expected);
+			final Set<ByteString> visited = Sets.newHashSet();
+			final Iterator<ByteString> it = set.iterator();
+			while (it.hasNext()) {
+				final ByteString key = it.next();
+				assertTrue(visited.add(key), "Visited twice");
+				if (r.nextBoolean()) {
+					it.remove();
+					expected.remove(key);
+				}
+			}
+			assertEquals(visited, all);
+			assertEquals(set, expected);
+		}
+	}
+
+	/** Bulk removals. */
+	@Test
+	public void bulk() {
+		final FixedWidthByteStringSet set = FixedWidthByteStringSet.create(20);
+		final List<ByteString> keys = Lists.newArrayList();
+		for (int i = 0; i < 100; i++) {
+			keys.add(Digests.sha1(Ints.toByteArray(i)));
+		}
+		set.addAll(keys);
+		assertTrue(set.removeAll(keys.subList(0, 60)));
+		assertEquals(set, ImmutableSet.copyOf(keys.subList(60, 100)));
+		assertTrue(set.retainAll(keys.subList(50, 80)));
+		assertEquals(set, ImmutableSet.copyOf(keys.subList(60, 80)));
+	}
+
+	/** Keys of a different width. */
+	@Test
+	public void width() {
+		final FixedWidthByteStringSet set = FixedWidthByteStringSet.create(16, 100);
+		assertEquals(set.width(), 16);
+		try {
+			set.add(Digests.sha1(new byte[] { 1 }));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertTrue(set.add(Digests.md5(new byte[] { 1 })));
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * Tests for ChunkInterner.
+ * @author Andres Rodriguez
+ */
+public class ChunkInternerTest {
+	/** Loads two versions of the same data sharing all the chunks but the last one. */
+	private void exercise(boolean direct) throws IOException {
+		final ChunkInterner interner = ChunkInterner.of();
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(direct).chunkSize(1024)
+				.interner(interner);
+		final byte[] v1 = RandomSupport.getBytes(10240);
+		final byte[] v2 = v1.clone();
+		v2[v2.length - 1]++;
+		final MemoryByteSource s1 = loader.load(ByteSource.wrap(v1));
+		final MemoryByteSource s2 = loader.load(ByteSource.wrap(v2));
+		assertEquals(s1.read(), v1);
+		assertEquals(s2.read(), v2);
+		assertEquals(interner.chunkCount(), 20L);
+		assertEquals(interner.reusedChunkCount(), 9L);
+		assertEquals(interner.reusedByteCount(), 9216L);
+		assertEquals(interner.dedupRatio(), 0.45);
+		// Reused buffers must not alter loaded data
+		final MemoryByteSource s3 = loader.load(ByteSource.wrap(v1));
+		assertEquals(s1.read(), v1);
+		assertEquals(s2.read(), v2);
+		assertEquals(s3.read(), v1);
+		assertEquals(interner.reusedChunkCount(), 19L);
+	}
+
+	/** Heap. */
+	@Test
+	public void heap() throws IOException {
+		exercise(false);
+	}
+
+	/** Direct. */
+	@Test
+	public void direct() throws IOException {
+		exercise(true);
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for ChunksInputStream.
+ * @author Andres Rodriguez
+ */
+public class ChunksInputStreamTest {
+	/** Opens a chunks stream over the provided data. */
+	private ChunksInputStream open(MemoryByteSource source) throws IOException {
+		final InputStream is = source.openStream();
+		assertTrue(is instanceof ChunksInputStream);
+		return (ChunksInputStream) is;
+	}
+
+	/** Checks a source. */
+	private void check(MemoryByteSource source, byte[] data) throws IOException {
+		final int n = data.length;
+		assertEquals(ByteStreams.toByteArray(source.openStream()), data);
+		// Byte by byte
+		ChunksInputStream is = open(source);
+		for (int i = 0; i < n; i++) {
+			assertEquals(is.available(), n - i);
+			assertEquals(is.read(), data[i] & 0xff);
+		}
+		assertEquals(is.read(), -1);
+		assertEquals(is.available(), 0);
+		// Skip, mark and reset
+		is = open(source);
+		assertTrue(is.markSupported());
+		assertEquals(is.skip(1500), 1500L);
+		assertEquals(is.read(), data[1500] & 0xff);
+		is.mark(0);
+		final byte[] buffer = new byte[2500];
+		ByteStreams.readFully(is, buffer);
+		assertEquals(buffer, Arrays.copyOfRange(data, 1501, 4001));
+		is.reset();
+		assertEquals(is.available(), n - 1501);
+		assertEquals(is.readAllBytes(), Arrays.copyOfRange(data, 1501, n));
+		assertEquals(is.skip(10), 0L);
+		is.reset();
+		assertEquals(is.skip(Long.MAX_VALUE), (long) n - 1501);
+		assertEquals(is.read(buffer, 0, 10), -1);
+		// Transfer
+		is = open(source);
+		assertEquals(is.skip(3000), 3000L);
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		assertEquals(is.transferTo(os), (long) n - 3000);
+		assertEquals(os.toByteArray(), Arrays.copyOfRange(data, 3000, n));
+		assertEquals(is.read(), -1);
+		// Slices, which may have a smaller first chunk
+		final MemoryByteSource slice = source.slice(700, 5000);
+		assertEquals(ByteStreams.toByteArray(slice.openStream()), Arrays.copyOfRange(data, 700, 5700));
+		final InputStream sis = slice.openStream();
+		assertEquals(sis.skip(1400), 1400L);
+		assertEquals(sis.read(), data[2100] & 0xff);
+	}
+
+	/** Exercises a loader. */
+	private void exercise(boolean direct) throws IOException {
+		final byte[] data = RandomSupport.getBytes(10000);
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(direct).chunkSize(1024);
+		final MemoryByteSource source = loader.load(ByteSource.wrap(data));
+		assertEquals(source.chunks(), 10);
+		check(source, data);
+	}
+
+	/** Heap chunks. */
+	@Test
+	public void heap() throws IOException {
+		exercise(false);
+	}
+
+	/** Direct chunks. */
+	@Test
+	public void direct() throws IOException {
+		exercise(true);
+	}
+
+}
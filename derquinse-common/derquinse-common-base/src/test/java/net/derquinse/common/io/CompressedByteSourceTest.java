@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for CompressedByteSource.
+ * @author Andres Rodriguez
+ */
+public class CompressedByteSourceTest {
+	/** Compressible data. */
+	private static byte[] data() throws IOException {
+		return Strings.repeat("Compressed at rest. ", 5000).getBytes("UTF-8");
+	}
+
+	/** Checks the contents of a source. */
+	private void check(MemoryByteSource source, byte[] expected) throws IOException {
+		assertEquals(source.size(), expected.length);
+		assertEquals(source.read(), expected);
+		assertEquals(ByteStreams.toByteArray(source.openStream()), expected);
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		assertEquals(source.copyTo(os), expected.length);
+		assertEquals(os.toByteArray(), expected);
+		final int from = Math.min(10, expected.length);
+		assertEquals(source.slice(10, 100).read(), Arrays.copyOfRange(expected, from, Math.min(110, expected.length)));
+	}
+
+	/** Loads and checks compressed data. */
+	private void exercise(boolean direct) throws IOException {
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(direct).compressedAtRest(9);
+		assertTrue(loader.isCompressedAtRest());
+		assertEquals(loader.getCompressionLevel(), 9);
+		final byte[] data = data();
+		final MemoryByteSource source = loader.load(ByteSource.wrap(data));
+		assertTrue(source instanceof CompressedByteSource);
+		assertEquals(source.isDirect(), direct);
+		final CompressedByteSource compressed = (CompressedByteSource) source;
+		assertTrue(compressed.getCompressedSize() < data.length / 10);
+		check(source, data);
+		check(source.merge(), data);
+		check(source.toHeap(false), data);
+		check(source.toDirect(true), data);
+		check(compressed.inflate(), data);
+		assertEquals(compressed.getGzipped().isDirect(), direct);
+		assertEquals(ByteStreams.toByteArray(new GZIPInputStream(compressed.getGzipped().openStream())), data);
+	}
+
+	/** Heap. */
+	@Test
+	public void heap() throws IOException {
+		exercise(false);
+	}
+
+	/** Direct. */
+	@Test
+	public void direct() throws IOException {
+		exercise(true);
+	}
+
+	/** Incompressible data. */
+	@Test
+	public void random() throws IOException {
+		final byte[] data = RandomSupport.getBytes(50000);
+		check(MemoryByteSourceLoader.get().compressedAtRest(true).load(ByteSource.wrap(data)), data);
+		check(MemoryByteSourceLoader.get().compressedAtRest(true).load(ByteSource.wrap(new byte[0])), new byte[0]);
+	}
+
+	/** Inflated source cache. */
+	@Test
+	public void cache() throws IOException {
+		final InflatedSourceCache cache = InflatedSourceCache.of(1024 * 1024);
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().compressedAtRest(true).inflatedCache(cache);
+		final byte[] data = data();
+		final CompressedByteSource source = (CompressedByteSource) loader.load(ByteSource.wrap(data));
+		check(source, data);
+		assertEquals(cache.size(), 1L);
+		assertSame(source.inflate(), source.inflate());
+		assertEquals(cache.stats().missCount(), 1L);
+		assertTrue(cache.stats().hitCount() > 0L);
+	}
+
+	/** The maximum size applies to the uncompressed data. */
+	@Test(expectedExceptions = MaximumSizeExceededException.class)
+	public void maxSize() throws IOException {
+		MemoryByteSourceLoader.get().compressedAtRest(true).maxSize(1000).load(ByteSource.wrap(data()));
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * Tests for DigestedByteSource and digests computed while loading.
+ * @author Andres Rodriguez
+ */
+public class DigestedByteSourceTest {
+	/** Checks the digests of loaded data. */
+	private void check(DigestedByteSource loaded, byte[] data) throws Exception {
+		assertEquals(loaded.getSource().read(), data);
+		assertEquals(loaded.getDigest(Digests.SHA256), Digests.sha256(data));
+		assertEquals(loaded.getDigest(Digests.MD5), Digests.md5(data));
+	}
+
+	/** Hash on write. */
+	@Test
+	public void hashOnWrite() throws Exception {
+		final byte[] data = RandomSupport.getBytes(50000);
+		final MemoryByteSourceLoader base = MemoryByteSourceLoader.get().chunkSize(4096);
+		final MemoryByteSourceLoader loader = base.digest(Digests.SHA256, Digests.MD5);
+		assertEquals(loader.getDigests().size(), 2);
+		assertEquals(loader.digest(Digests.SHA256, Digests.MD5), loader);
+		assertEquals(loader.digest(), base);
+		check(loader.loadDigested(ByteSource.wrap(data)), data);
+		check(loader.direct(true).loadDigested(new ByteArrayInputStream(data)), data);
+		check(loader.compressedAtRest(true).loadDigested(ByteSource.wrap(data)), data);
+		// Already in memory
+		check(loader.loadDigested(MemoryByteSource.wrap(data)), data);
+		final MemoryOutputStream os = loader.openStream();
+		os.write(data, 0, 100);
+		os.write(data[100]);
+		os.write(data, 101, data.length - 101);
+		final Map<String, ByteString> digests = os.getDigests();
+		assertEquals(os.toByteSource().read(), data);
+		assertEquals(digests.get(Digests.SHA256), Digests.sha256(data));
+		assertTrue(base.openStream().getDigests().isEmpty());
+	}
+
+	/** Unknown algorithms. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void unknown() {
+		MemoryByteSourceLoader.get().digest("NONE");
+	}
+
+}
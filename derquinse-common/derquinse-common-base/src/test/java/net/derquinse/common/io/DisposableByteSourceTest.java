@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Tests for DisposableByteSource.
+ * @author Andres Rodriguez
+ */
+public class DisposableByteSourceTest {
+	/** Loads a disposable source. */
+	private static DisposableByteSource load(MemoryByteSourceLoader loader, byte[] data) throws IOException {
+		final MemoryByteSource source = loader.load(ByteSource.wrap(data));
+		assertTrue(source instanceof DisposableByteSource);
+		return (DisposableByteSource) source;
+	}
+
+	/** Checks that a disposed source can't be used. */
+	private static void checkDisposed(DisposableByteSource source) throws IOException {
+		assertTrue(source.isDisposed());
+		try {
+			source.read();
+			fail("Disposed source read");
+		} catch (IllegalStateException e) {
+			// ok
+		}
+		try {
+			source.get();
+			fail("Disposed source returned");
+		} catch (IllegalStateException e) {
+			// ok
+		}
+	}
+
+	/** Lifecycle. */
+	@Test
+	public void lifecycle() throws IOException {
+		final DirectMemoryTracker tracker = DirectMemoryTracker.of(0);
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(true).chunkSize(1024)
+				.disposable(tracker);
+		final byte[] data = RandomSupport.getBytes(5000);
+		final DisposableByteSource source = load(loader, data);
+		assertEquals(tracker.liveBytes(), 5000L);
+		assertEquals(tracker.liveSources(), 1L);
+		assertEquals(source.read(), data);
+		assertEquals(source.slice(1000, 2000).read(), load(loader, data).slice(1000, 2000).read());
+		final InputStream is = source.openStream();
+		source.dispose();
+		checkDisposed(source);
+		// The open stream keeps the memory alive.
+		assertTrue(tracker.liveBytes() >= 5000L);
+		assertEquals(ByteStreams.toByteArray(is), data);
+		is.close();
+		assertEquals(tracker.disposedCount(), 1L);
+		source.dispose();
+		assertEquals(tracker.disposedCount(), 1L);
+	}
+
+	/** Merged sources. */
+	@Test
+	public void merged() throws IOException {
+		final DirectMemoryTracker tracker = DirectMemoryTracker.of(0);
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(true).chunkSize(1024).merge(true)
+				.disposable(tracker);
+		final byte[] data = RandomSupport.getBytes(5000);
+		final DisposableByteSource source = load(loader, data);
+		assertEquals(source.chunks(), 1);
+		assertTrue(source.merge() == source);
+		assertEquals(source.read(), data);
+		source.dispose();
+		assertEquals(tracker.liveBytes(), 0L);
+	}
+
+	/** Heap sources are not affected. */
+	@Test
+	public void heap() throws IOException {
+		final MemoryByteSource source = MemoryByteSourceLoader.get().disposable(true)
+				.load(ByteSource.wrap(RandomSupport.getBytes(100)));
+		assertFalse(source instanceof DisposableByteSource);
+	}
+
+	/** Leak detection. */
+	@Test
+	public void leak() throws Exception {
+		final DirectMemoryTracker tracker = DirectMemoryTracker.of(1);
+		final MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(true).disposable(tracker);
+		load(loader, RandomSupport.getBytes(1000));
+		for (int i = 0; i < 50 && tracker.leakCount() == 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+			tracker.poll();
+		}
+		assertEquals(tracker.leakCount(), 1L);
+		assertEquals(tracker.liveBytes(), 0L);
+	}
+
+}
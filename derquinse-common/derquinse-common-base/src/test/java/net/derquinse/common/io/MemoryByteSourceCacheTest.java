@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.derquinse.common.test.RandomSupport;
+import net.derquinse.common.util.zip.MaybeCompressed;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Tests for MemoryByteSourceCache.
+ * @author Andres Rodriguez
+ */
+public class MemoryByteSourceCacheTest {
+	/** Creates a temporary file. */
+	private File file(byte[] data) throws IOException {
+		final File file = File.createTempFile("mbsc", ".bin");
+		file.deleteOnExit();
+		Files.write(data, file);
+		return file;
+	}
+
+	/** Hits and revalidation. */
+	@Test
+	public void revalidation() throws IOException {
+		final MemoryByteSourceCache cache = MemoryByteSourceCache.builder(MemoryByteSourceLoader.get())
+				.checkInterval(0, TimeUnit.SECONDS).build();
+		final byte[] data = RandomSupport.getBytes(5000);
+		final File file = file(data);
+		final MemoryByteSource s1 = cache.get(file);
+		assertEquals(s1.read(), data);
+		assertSame(cache.get(file), s1);
+		assertEquals(cache.stats().loadCount(), 1L);
+		final byte[] data2 = RandomSupport.getBytes(6000);
+		Files.write(data2, file);
+		assertEquals(cache.get(file).read(), data2);
+		assertEquals(cache.stats().loadCount(), 2L);
+		assertEquals(cache.changedCount(), 1L);
+		Files.write(data, file);
+		assertEquals(cache.revalidate(), 1);
+		assertEquals(cache.size(), 0L);
+		assertEquals(cache.changedCount(), 2L);
+		assertEquals(cache.get(file).read(), data);
+	}
+
+	/** Gzipped versions. */
+	@Test
+	public void gzip() throws IOException {
+		final MemoryByteSourceCache cache = MemoryByteSourceCache.builder(MemoryByteSourceLoader.get()).gzip(true)
+				.build();
+		final byte[] data = Strings.repeat("Cached file contents. ", 500).getBytes("UTF-8");
+		final File file = file(data);
+		final MaybeCompressed<MemoryByteSource> gzipped = cache.getMaybeGzipped(file);
+		assertTrue(gzipped.isCompressed());
+		assertTrue(gzipped.getPayload().size() < data.length);
+		assertEquals(cache.get(file).read(), data);
+	}
+
+	/** Asynchronous loads. */
+	@Test
+	public void async() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final MemoryByteSourceCache cache = MemoryByteSourceCache.builder(MemoryByteSourceLoader.get())
+					.executor(executor).build();
+			final byte[] data = RandomSupport.getBytes(100000);
+			final File file = file(data);
+			final List<ListenableFuture<MemoryByteSource>> futures = Lists.newArrayList();
+			for (int i = 0; i < 20; i++) {
+				futures.add(cache.getAsync(file));
+			}
+			for (ListenableFuture<MemoryByteSource> f : futures) {
+				assertEquals(f.get(10, TimeUnit.SECONDS).read(), data);
+			}
+			assertEquals(cache.stats().loadCount(), 1L);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -23,10 +23,18 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
 
@@ -63,6 +71,7 @@ public class MemoryByteSourceTest {
 		}
 		equals(source.read(), original, test, test2, "First Read");
 		equals(source.read(), original, test, test2, "Second Read");
+		equals(source.toByteString().toByteArray(), original, test, test2, "Byte String");
 	}
 
 	private void check(String test, byte[] original, MemoryByteSource source) throws IOException {
@@ -72,6 +81,21 @@ public class MemoryByteSourceTest {
 		check(test, "Heap Merged", original, source.toHeap(true));
 		check(test, "Direct", original, source.toDirect(false));
 		check(test, "Direct Merged", original, source.toDirect(true));
+		checkSlices(test, original, source);
+	}
+
+	/** Checks slices of a memory source. */
+	private void checkSlices(String test, byte[] original, MemoryByteSource source) throws IOException {
+		final int n = original.length;
+		final int[][] ranges = { { 0, n }, { 0, n + 10 }, { 1, n / 2 }, { n / 3, n / 3 }, { n / 2, n }, { n, 10 },
+				{ n + 1, 10 }, { 0, 0 } };
+		for (int[] r : ranges) {
+			final int from = Math.min(r[0], n);
+			final int to = Math.min(n, r[0] + r[1]);
+			final byte[] expected = Arrays.copyOfRange(original, from, Math.max(from, to));
+			final MemoryByteSource slice = source.slice(r[0], r[1]);
+			check(test, String.format("Slice(%d,%d)", r[0], r[1]), expected, slice);
+		}
 	}
 
 	/** Check Kind. */
@@ -178,6 +202,52 @@ public class MemoryByteSourceTest {
 		test("Direct Empty", 0, get().direct(true), true, 0);
 	}
 
+	/**
+	 * Chunked source larger than 2 GB, built by repeating the same chunk.
+	 */
+	@Test
+	public void large() throws IOException {
+		final int chunkSize = 1024 * 1024;
+		final int n = 2100;
+		final byte[] data = data(chunkSize);
+		final MemoryByteSource source = new ChunkedHeapByteSource(new Chunks<ByteArrayByteSource>(
+				Collections.nCopies(n, new ByteArrayByteSource(data))));
+		final long size = (long) chunkSize * n;
+		assertTrue(size > Integer.MAX_VALUE);
+		Assert.assertEquals(source.size(), size);
+		final long offset = size - chunkSize - 10;
+		final byte[] expected = new byte[20];
+		System.arraycopy(data, chunkSize - 10, expected, 0, 10);
+		System.arraycopy(data, 0, expected, 10, 10);
+		Assert.assertEquals(source.slice(offset, 20).read(), expected);
+		Assert.assertEquals(source.slice(size - 5, 100).read(), Arrays.copyOfRange(data, chunkSize - 5, chunkSize));
+		Assert.assertEquals(source.slice(offset, 20).toDirect(false).read(), expected);
+		Assert.assertEquals(source.slice(size, 1).size(), 0L);
+		try {
+			source.merge();
+			Assert.fail("Merged a source larger than 2 GB");
+		} catch (IllegalStateException e) {
+			// ok
+		}
+		Assert.assertEquals(get().maxSize(size).getMaxSize(), size);
+		// Re-chunking copies are not limited to 2 GB
+		Assert.assertEquals(MemoryByteSourceLoader.copier(false, chunkSize).getMaxSize(), Long.MAX_VALUE);
+		Assert.assertEquals(MemoryByteSourceLoader.copier(true, chunkSize).getMaxSize(), Long.MAX_VALUE);
+	}
+
+	/**
+	 * Slice to the end of a chunked source with a length that overflows the end offset.
+	 */
+	@Test
+	public void sliceToEnd() throws IOException {
+		final byte[] data = data(100);
+		final MemoryByteSource source = get().chunkSize(10).load(ByteSource.wrap(data));
+		Assert.assertEquals(source.chunks(), 10);
+		final byte[] expected = Arrays.copyOfRange(data, 5, 100);
+		Assert.assertEquals(source.slice(5, Long.MAX_VALUE).read(), expected);
+		Assert.assertEquals(source.toDirect(false).slice(5, Long.MAX_VALUE).read(), expected);
+	}
+
 	/**
 	 * More than maximum size.
 	 */
@@ -210,4 +280,30 @@ public class MemoryByteSourceTest {
 		test("Direct overflow chuncked", 456, get().direct(true).chunkSize(128).maxSize(384), true, 0);
 	}
 
+	/**
+	 * Digests and hashes computed from the memory chunks.
+	 */
+	@Test
+	public void digests() throws IOException {
+		final byte[] data = data(100000);
+		final ByteString sha256 = Digests.sha256(data);
+		final HashCode murmur = Hashing.murmur3_128().hashBytes(data);
+		for (boolean direct : new boolean[] { false, true }) {
+			for (int chunkSize : new int[] { 4096, 200000 }) {
+				final MemoryByteSourceLoader loader = get().direct(direct).chunkSize(chunkSize);
+				final ByteSource input = ByteSource.wrap(data);
+				for (MemoryByteSource source : Arrays.asList(loader.load(input), loader.disposable(true).load(input),
+						loader.compressedAtRest(true).load(input))) {
+					final String test = String.format("%s / %d / %s", direct, chunkSize, source);
+					Assert.assertEquals(source.digest(Digests.SHA256), sha256, test);
+					Assert.assertEquals(source.digest(Digests.sha256()), sha256, test);
+					Assert.assertEquals(source.hash(Hashing.murmur3_128()), murmur, test);
+					Assert.assertEquals(source.slice(1000, 5000).digest(Digests.SHA256),
+							Digests.sha256(Arrays.copyOfRange(data, 1000, 6000)), test);
+				}
+			}
+		}
+		Assert.assertEquals(get().load(ByteSource.empty()).digest(Digests.SHA256), Digests.sha256(new byte[0]));
+	}
+
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+import net.derquinse.common.base.Disposable;
+import net.derquinse.common.test.RandomSupport;
+import net.derquinse.common.util.zip.MaybeCompressed;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+
+/**
+ * Tests for MemoryContentStore.
+ * @author Andres Rodriguez
+ */
+public class MemoryContentStoreTest {
+	/** Checks a stored payload. */
+	private void check(MemoryContentStore store, ByteString key, byte[] expected) throws IOException {
+		final Disposable<MemoryByteSource> d = store.acquire(key);
+		assertNotNull(d);
+		try {
+			assertEquals(d.get().read(), expected);
+		} finally {
+			d.dispose();
+		}
+	}
+
+	/** Deduplication. */
+	@Test
+	public void dedup() throws IOException {
+		final MemoryContentStore store = MemoryContentStore.of(MemoryByteSourceLoader.get(), 1024 * 1024);
+		final byte[] data = RandomSupport.getBytes(10000);
+		final ByteString k1 = store.put(ByteSource.wrap(data));
+		final ByteString k2 = store.put(ByteSource.wrap(data.clone()));
+		assertEquals(k1, k2);
+		assertEquals(k1, Digests.sha256(data));
+		assertEquals(store.size(), 1L);
+		assertEquals(store.weight(), 10000L);
+		assertEquals(store.putCount(), 2L);
+		assertEquals(store.dedupCount(), 1L);
+		check(store, k1, data);
+		final ByteString k3 = store.put(ByteSource.wrap(RandomSupport.getBytes(5000)));
+		assertFalse(k1.equals(k3));
+		assertEquals(store.size(), 2L);
+		assertEquals(store.weight(), 15000L);
+	}
+
+	/** Eviction. */
+	@Test
+	public void eviction() throws IOException {
+		final MemoryContentStore store = MemoryContentStore.of(MemoryByteSourceLoader.get(), 100000);
+		final byte[] data = RandomSupport.getBytes(4000);
+		final ByteString key = store.put(ByteSource.wrap(data));
+		final Disposable<MemoryByteSource> d = store.acquire(key);
+		for (int i = 0; i < 100; i++) {
+			store.put(ByteSource.wrap(RandomSupport.getBytes(4000)));
+		}
+		assertTrue(store.weight() <= 100000L);
+		assertFalse(store.contains(key));
+		assertNull(store.acquire(key));
+		// The evicted payload is still referenced.
+		assertEquals(d.get().read(), data);
+		final long resident = store.residentWeight();
+		assertTrue(resident >= store.weight() + 4000L);
+		d.dispose();
+		assertEquals(store.residentWeight(), resident - 4000L);
+	}
+
+	/** Compression. */
+	@Test
+	public void compressed() throws IOException {
+		final MemoryContentStore store = MemoryContentStore.of(MemoryByteSourceLoader.get(), 1024 * 1024,
+				Digests.SHA1, true);
+		final byte[] data = Strings.repeat("Content addressed store. ", 1000).getBytes("UTF-8");
+		final ByteString key = store.put(ByteSource.wrap(data));
+		assertEquals(key, Digests.sha1(data));
+		assertTrue(store.weight() < data.length);
+		final Disposable<MaybeCompressed<MemoryByteSource>> stored = store.acquireStored(key);
+		assertTrue(stored.get().isCompressed());
+		stored.dispose();
+		check(store, key, data);
+		final byte[] small = Arrays.copyOf(data, 100);
+		check(store, store.put(ByteSource.wrap(small)), small);
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.Digests;
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.ByteSource;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Tests for MerkleTree.
+ * @author Andres Rodriguez
+ */
+public class MerkleTreeTest {
+	/** Computes a hash with a prefix. */
+	private static ByteString hash(int prefix, byte[]... parts) {
+		final MessageDigest md = Digests.sha256();
+		md.update((byte) prefix);
+		for (byte[] part : parts) {
+			md.update(part);
+		}
+		return ByteString.copyFrom(md.digest());
+	}
+
+	/** RFC 6962 construction. */
+	@Test
+	public void construction() {
+		final byte[] data = RandomSupport.getBytes(25);
+		final MemoryByteSource source = MemoryByteSource.directCopyOf(data);
+		final MerkleTree tree = MerkleTree.of(source, Digests.SHA256, 10, MoreExecutors.directExecutor());
+		final ByteString l0 = hash(0, Arrays.copyOfRange(data, 0, 10));
+		final ByteString l1 = hash(0, Arrays.copyOfRange(data, 10, 20));
+		final ByteString l2 = hash(0, Arrays.copyOfRange(data, 20, 25));
+		assertEquals(tree.getLeaves(), Arrays.asList(l0, l1, l2));
+		final ByteString n01 = hash(1, l0.toByteArray(), l1.toByteArray());
+		assertEquals(tree.getRoot(), hash(1, n01.toByteArray(), l2.toByteArray()));
+		assertEquals(tree.getSize(), 25L);
+		final MerkleTree single = MerkleTree.of(MemoryByteSource.wrap(Arrays.copyOf(data, 5)));
+		assertEquals(single.getRoot(), hash(0, Arrays.copyOf(data, 5)));
+		assertEquals(MerkleTree.of(MemoryByteSource.wrap(new byte[0])).getRoot(), Digests.sha256(new byte[0]));
+	}
+
+	/** Parallel hashing, verification and updates. */
+	@Test
+	public void parallel() throws Exception {
+		final byte[] data = RandomSupport.getBytes(100000);
+		final MemoryByteSource source = MemoryByteSourceLoader.get().chunkSize(4096).load(ByteSource.wrap(data));
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final MerkleTree sequential = MerkleTree.of(source, Digests.SHA1, 3000, MoreExecutors.directExecutor());
+			final MerkleTree tree = MerkleTree.of(source, Digests.SHA1, 3000, executor);
+			assertEquals(tree.getRoot(), sequential.getRoot());
+			assertEquals(tree.getLeaves().size(), 34);
+			final byte[] changed = data.clone();
+			changed[50000] ^= 1;
+			final MemoryByteSource modified = MemoryByteSource.wrap(changed);
+			assertTrue(tree.verifyLeaf(modified, 15));
+			assertFalse(tree.verifyLeaf(modified, 16));
+			final MerkleTree updated = tree.update(modified, 50000, 1, executor);
+			assertEquals(updated.getRoot(), MerkleTree.of(modified, Digests.SHA1, 3000, executor).getRoot());
+			assertFalse(updated.getRoot().equals(tree.getRoot()));
+			final byte[] longer = Arrays.copyOf(data, 110000);
+			final MemoryByteSource appended = MemoryByteSource.wrap(longer);
+			assertEquals(tree.update(appended, 100000, 10000, executor).getRoot(),
+					MerkleTree.of(appended, Digests.SHA1, 3000, executor).getRoot());
+			final MemoryByteSource shorter = MemoryByteSource.wrap(Arrays.copyOf(data, 40000));
+			assertEquals(tree.update(shorter, 40000, 0, executor).getRoot(),
+					MerkleTree.of(shorter, Digests.SHA1, 3000, executor).getRoot());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
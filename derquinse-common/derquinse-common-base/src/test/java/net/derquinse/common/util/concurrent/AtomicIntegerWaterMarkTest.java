@@ -20,6 +20,10 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 import java.security.SecureRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import net.derquinse.common.base.IntegerWaterMark;
 import net.derquinse.common.util.concurrent.AtomicIntegerWaterMark;
@@ -98,4 +102,56 @@ public class AtomicIntegerWaterMarkTest {
 		test(m.set(v), v);
 	}
 
+	/**
+	 * Contended increments and decrements.
+	 */
+	@Test
+	public void contention() throws InterruptedException {
+		final AtomicIntegerWaterMark w = AtomicIntegerWaterMark.of();
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 100000; i++) {
+						w.inc();
+						w.dec();
+					}
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		final IntegerWaterMark v = w.get();
+		assertEquals(v.get(), 0);
+		assertEquals(v.getMin(), 0);
+		assertTrue(v.getMax() >= 1 && v.getMax() <= threads);
+	}
+
+	/**
+	 * Compare and set.
+	 */
+	@Test
+	public void compareAndSet() {
+		final AtomicIntegerWaterMark w = AtomicIntegerWaterMark.of(IntegerWaterMark.of(5, -3, 10));
+		final IntegerWaterMark v = w.get();
+		assertEquals(v, IntegerWaterMark.of(5, -3, 10));
+		assertTrue(w.compareAndSet(v, 12));
+		assertEquals(w.get(), IntegerWaterMark.of(12, -3, 12));
+		assertTrue(!w.compareAndSet(v, 7));
+		assertTrue(w.compareAndAdd(12, -20));
+		assertEquals(w.get(), IntegerWaterMark.of(-8, -8, 12));
+		assertTrue(w.compareAndAdd(w.get(), Integer.MIN_VALUE + 8));
+		assertEquals(w.get().getMin(), Integer.MIN_VALUE);
+		assertTrue(!w.compareAndSet(0, 1));
+	}
+
 }
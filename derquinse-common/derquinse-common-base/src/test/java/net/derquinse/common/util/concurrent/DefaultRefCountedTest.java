@@ -17,6 +17,7 @@ package net.derquinse.common.util.concurrent;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.security.SecureRandom;
@@ -125,6 +126,23 @@ public class DefaultRefCountedTest {
 		ref.get();
 	}
 
+	/**
+	 * Try to acquire after shutdown.
+	 */
+	@Test(dependsOnMethods = "lessSimple")
+	public void tryAcquire() {
+		final Disposable<Target> d = Refs.tryAcquire(ref);
+		assertNotNull(d);
+		count(1, 1);
+		ref.shutdown();
+		assertNull(Refs.tryAcquire(ref));
+		assertEquals(t.getClosed(), 0);
+		d.dispose();
+		d.dispose();
+		count(0, 1);
+		assertEquals(t.getClosed(), 1);
+	}
+
 	/**
 	 * Concurrent.
 	 */
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.util.concurrent;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import net.derquinse.common.base.LongWaterMark;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for StripedLongWaterMark.
+ * @author Andres Rodriguez
+ */
+public class StripedLongWaterMarkTest {
+	/**
+	 * Single thread, where the extremes are exact.
+	 */
+	@Test
+	public void single() {
+		final StripedLongWaterMark m = StripedLongWaterMark.of(7L);
+		assertEquals(m.get(), LongWaterMark.of(7L));
+		m.add(5L);
+		m.dec();
+		m.add(-20L);
+		m.inc();
+		assertEquals(m.sum(), -8L);
+		assertEquals(m.get(), LongWaterMark.of(-8L, -9L, 12L));
+	}
+
+	/**
+	 * Single thread with tolerance, where the extremes differ from the real ones at most by the
+	 * tolerance.
+	 */
+	@Test
+	public void tolerance() {
+		final long tolerance = 1000L;
+		final StripedLongWaterMark m = StripedLongWaterMark.of(0L, tolerance);
+		final Random r = new Random(47L);
+		long value = 0L;
+		long min = 0L;
+		long max = 0L;
+		for (int i = 0; i < 100000; i++) {
+			final long v = r.nextInt(201) - 100;
+			m.add(v);
+			value += v;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		final LongWaterMark w = m.get();
+		assertEquals(w.get(), value);
+		assertTrue(w.getMax() <= max);
+		assertTrue(w.getMax() >= max - tolerance);
+		assertTrue(w.getMin() >= min);
+		assertTrue(w.getMin() <= min + tolerance);
+	}
+
+	/** Negative tolerance. */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void negativeTolerance() {
+		StripedLongWaterMark.of(0L, -1L);
+	}
+
+	/**
+	 * Contended increments and decrements.
+	 */
+	@Test
+	public void contention() throws InterruptedException {
+		final StripedLongWaterMark m = StripedLongWaterMark.of();
+		final int threads = 8;
+		final int depth = 3;
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 100000; i++) {
+						m.add(depth);
+						m.add(-depth);
+					}
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		final LongWaterMark v = m.get();
+		assertEquals(v.get(), 0L);
+		assertEquals(v.getMin(), 0L);
+		assertTrue(v.getMax() >= depth);
+		assertTrue(v.getMax() <= threads * depth);
+	}
+
+	/**
+	 * Increments and decrements alternating in different threads.
+	 */
+	@Test
+	public void crossThread() throws Exception {
+		final StripedLongWaterMark m = StripedLongWaterMark.of();
+		final int n = 10000;
+		final Semaphore incs = new Semaphore(1);
+		final Semaphore decs = new Semaphore(0);
+		final Thread inc = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < n; i++) {
+					incs.acquireUninterruptibly();
+					m.inc();
+					decs.release();
+				}
+			}
+		});
+		final Thread dec = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < n; i++) {
+					decs.acquireUninterruptibly();
+					m.dec();
+					incs.release();
+				}
+			}
+		});
+		inc.start();
+		dec.start();
+		inc.join(60000L);
+		dec.join(60000L);
+		assertEquals(m.get(), LongWaterMark.of(0L, 0L, 1L));
+	}
+
+	/** Runs contended increments and decrements and returns the elapsed time in nanoseconds. */
+	private static long contended(final Runnable update) throws InterruptedException {
+		final int threads = 4;
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 500000; i++) {
+						update.run();
+					}
+				}
+			});
+		}
+		final long t0 = System.nanoTime();
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		return System.nanoTime() - t0;
+	}
+
+	/** Best of several contended runs. */
+	private static long best(Runnable update) throws InterruptedException {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			best = Math.min(best, contended(update));
+		}
+		return best;
+	}
+
+	/**
+	 * Contended throughput with tolerance compared to AtomicLongWaterMark.
+	 */
+	@Test
+	public void throughput() throws InterruptedException {
+		final StripedLongWaterMark striped = StripedLongWaterMark.of(0L, 1024L);
+		final AtomicLongWaterMark atomic = AtomicLongWaterMark.of();
+		final long s = best(new Runnable() {
+			@Override
+			public void run() {
+				striped.inc();
+				striped.dec();
+			}
+		});
+		final long a = best(new Runnable() {
+			@Override
+			public void run() {
+				atomic.inc();
+				atomic.dec();
+			}
+		});
+		assertEquals(striped.sum(), 0L);
+		assertTrue(s <= a, String.format("Striped %d ns, atomic %d ns", s, a));
+	}
+
+}
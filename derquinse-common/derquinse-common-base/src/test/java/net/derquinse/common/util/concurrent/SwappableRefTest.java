@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.util.concurrent;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.derquinse.common.base.Disposable;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for SwappableRef.
+ * @author Andres Rodriguez
+ */
+public class SwappableRefTest {
+	/** Swap with an active reader. */
+	@Test
+	public void swap() throws Exception {
+		final Value v1 = new Value(1);
+		final Value v2 = new Value(2);
+		final SwappableRef<Value> ref = SwappableRef.of(v1, v1);
+		assertEquals(ref.getGeneration(), 1L);
+		assertEquals(ref.getAliveGenerations(), 1);
+		final Disposable<Value> d1 = ref.get();
+		assertEquals(ref.getCount(), 1);
+		final Future<Long> f = ref.swap(v2, v2);
+		assertEquals(ref.getGeneration(), 2L);
+		assertEquals(ref.getCount(), 0);
+		assertEquals(ref.getAliveGenerations(), 2);
+		// The old value is still usable
+		assertEquals(d1.get().id, 1);
+		assertFalse(f.isDone());
+		assertEquals(v1.disposed.get(), 0);
+		final Disposable<Value> d2 = ref.get();
+		assertEquals(d2.get().id, 2);
+		d1.dispose();
+		assertTrue(f.isDone());
+		assertEquals(v1.disposed.get(), 1);
+		assertEquals(ref.getAliveGenerations(), 1);
+		// Shutdown
+		final Future<Long> s = ref.shutdown();
+		assertNull(ref.tryAcquire());
+		assertFalse(s.isDone());
+		d2.dispose();
+		assertTrue(s.isDone());
+		assertEquals(v2.disposed.get(), 1);
+		assertEquals(ref.getAliveGenerations(), 0);
+		assertEquals(ref.shutdown(), s);
+	}
+
+	/** Get after shutdown. */
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void afterShutdown() {
+		final SwappableRef<Value> ref = SwappableRef.of(new Value(1));
+		ref.shutdown();
+		ref.get();
+	}
+
+	/** Swap after shutdown. */
+	@Test
+	public void swapAfterShutdown() {
+		final SwappableRef<Value> ref = SwappableRef.of(new Value(1));
+		ref.shutdown();
+		final Value v = new Value(2);
+		try {
+			ref.swap(v, v);
+			throw new AssertionError("Swap after shutdown");
+		} catch (IllegalStateException e) {
+			// ok
+		}
+		assertEquals(v.disposed.get(), 1);
+		assertEquals(ref.getAliveGenerations(), 0);
+	}
+
+	/** Concurrent readers and swaps. */
+	@Test
+	public void concurrent() throws Exception {
+		final int swaps = 1000;
+		final Value first = new Value(0);
+		final SwappableRef<Value> ref = SwappableRef.of(first, first);
+		final Value[] values = new Value[swaps];
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger errors = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 20000; i++) {
+						final Disposable<Value> d = ref.get();
+						if (d.get().disposed.get() != 0) {
+							errors.incrementAndGet();
+						}
+						d.dispose();
+					}
+				}
+			});
+		}
+		start.countDown();
+		for (int i = 0; i < swaps; i++) {
+			values[i] = new Value(i + 1);
+			ref.swap(values[i], values[i]);
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		assertEquals(errors.get(), 0);
+		assertEquals(ref.getAliveGenerations(), 1);
+		assertEquals(first.disposed.get(), 1);
+		for (int i = 0; i < swaps - 1; i++) {
+			assertEquals(values[i].disposed.get(), 1);
+		}
+		assertEquals(values[swaps - 1].disposed.get(), 0);
+		ref.shutdown();
+		assertEquals(values[swaps - 1].disposed.get(), 1);
+	}
+
+	/** Test value. */
+	private static final class Value implements Runnable {
+		/** Identifier. */
+		final int id;
+		/** Number of times disposed. */
+		final AtomicInteger disposed = new AtomicInteger();
+
+		Value(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public void run() {
+			disposed.incrementAndGet();
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.util.concurrent;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.derquinse.common.base.LongWaterMark;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Tests for WindowedLongWaterMark.
+ * @author Andres Rodriguez
+ */
+public class WindowedLongWaterMarkTest {
+	/** Manual ticker. */
+	private static final class ManualTicker extends Ticker {
+		/** Current time. */
+		private volatile long nanos = 1000L;
+
+		/** Advances the time. */
+		void advance(long time, TimeUnit unit) {
+			nanos += unit.toNanos(time);
+		}
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+	/** Sliding window. */
+	@Test
+	public void window() {
+		final ManualTicker ticker = new ManualTicker();
+		final WindowedLongWaterMark m = WindowedLongWaterMark.of(5L, 60L, TimeUnit.SECONDS, 6, ticker);
+		assertEquals(m.get(), LongWaterMark.of(5L));
+		m.add(10L);
+		m.dec();
+		assertEquals(m.get(), LongWaterMark.of(14L, 5L, 15L));
+		ticker.advance(30L, TimeUnit.SECONDS);
+		m.add(-10L);
+		assertEquals(m.get(), LongWaterMark.of(4L, 4L, 15L));
+		// The first interval leaves the window
+		ticker.advance(35L, TimeUnit.SECONDS);
+		assertEquals(m.get(), LongWaterMark.of(4L, 4L, 14L));
+		m.inc();
+		assertEquals(m.getWindowMax(), 14L);
+		// Only the current value remains
+		ticker.advance(60L, TimeUnit.SECONDS);
+		assertEquals(m.get(), LongWaterMark.of(5L));
+		m.set(2L);
+		assertEquals(m.current(), 2L);
+		assertEquals(m.getWindowMin(), 2L);
+		assertEquals(m.getWindowMax(), 5L);
+	}
+
+	/** Contended updates. */
+	@Test
+	public void contention() throws InterruptedException {
+		final WindowedLongWaterMark m = WindowedLongWaterMark.of(1L, TimeUnit.HOURS);
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < 100000; i++) {
+						m.inc();
+						m.dec();
+					}
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		final LongWaterMark v = m.get();
+		assertEquals(v.get(), 0L);
+		assertEquals(v.getMin(), 0L);
+		assertTrue(v.getMax() > 0 && v.getMax() <= threads);
+	}
+
+}
@@ -16,9 +16,13 @@
 package net.derquinse.common.gson;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
 import net.derquinse.common.base.ByteString;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.Interner;
 import com.google.common.hash.HashCode;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -42,8 +46,18 @@ public final class DerquinseGson {
 	 * @return The provided builder for method chaining.
 	 */
 	public static GsonBuilder decorate(GsonBuilder builder) {
+		return decorate(builder, null);
+	}
+
+	/**
+	 * Decorates a {@link GsonBuilder} with conquiris clases, interning the read byte strings.
+	 * @param builder Builder to decorate.
+	 * @param interner Interner for read byte strings. If {@code null} values are not interned.
+	 * @return The provided builder for method chaining.
+	 */
+	public static GsonBuilder decorate(GsonBuilder builder, @Nullable Interner<ByteString> interner) {
 		checkNotNull(builder, "The builder to decorate must be provided");
-		builder.registerTypeAdapter(ByteString.class, new GsonByteString());
+		builder.registerTypeAdapter(ByteString.class, new GsonByteString(interner));
 		builder.registerTypeAdapter(HashCode.class, new GsonHashCode());
 		return builder;
 	}
@@ -17,8 +17,12 @@ package net.derquinse.common.gson;
 
 import java.io.IOException;
 
+import javax.annotation.Nullable;
+
 import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.ByteStrings;
 
+import com.google.common.collect.Interner;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
@@ -29,8 +33,22 @@ import com.google.gson.stream.JsonWriter;
  * @author Andres Rodriguez
  */
 public final class GsonByteString extends TypeAdapter<ByteString> {
+	/** Interner for read values, if any. */
+	@Nullable
+	private final Interner<ByteString> interner;
+
 	/** Constructor. */
 	public GsonByteString() {
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param interner Interner for read values (e.g. {@link ByteStrings#interner()}). If {@code null}
+	 *          values are not interned.
+	 */
+	public GsonByteString(@Nullable Interner<ByteString> interner) {
+		this.interner = interner;
 	}
 
 	/*
@@ -44,7 +62,8 @@ public final class GsonByteString extends TypeAdapter<ByteString> {
 			return null;
 		}
 		final String string = in.nextString();
-		return ByteString.fromHexString(string);
+		final ByteString value = ByteString.fromHexString(string);
+		return interner != null ? interner.intern(value) : value;
 	}
 
 	/*
@@ -15,12 +15,19 @@
  */
 package net.derquinse.common.gson;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.ByteStringInterner;
+import net.derquinse.common.base.ByteStrings;
 import net.derquinse.common.test.GsonSerializabilityTests;
 import net.derquinse.common.test.RandomSupport;
 
 import org.testng.annotations.Test;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 /**
  * Tests for {@link GsonByteString}.
  * @author Andres Rodriguez
@@ -32,4 +39,16 @@ public class GsonByteStringTest {
 		ByteString s = ByteString.copyFrom(RandomSupport.getBytes(512));
 		GsonSerializabilityTests.check(DerquinseGson.get(), s);
 	}
+
+	/** Interning. */
+	@Test
+	public void interning() {
+		ByteStringInterner interner = ByteStrings.interner();
+		Gson gson = DerquinseGson.decorate(new GsonBuilder(), interner).create();
+		String json = gson.toJson(ByteString.copyFrom(RandomSupport.getBytes(32)));
+		ByteString s1 = gson.fromJson(json, ByteString.class);
+		ByteString s2 = gson.fromJson(json, ByteString.class);
+		assertSame(s2, s1);
+		assertEquals(interner.hitCount(), 1L);
+	}
 }
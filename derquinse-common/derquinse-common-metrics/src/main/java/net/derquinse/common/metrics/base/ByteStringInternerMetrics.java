@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.base;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.base.ByteStringInterner;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics for a {@link ByteStringInterner}.
+ * @author Andres Rodriguez
+ */
+public final class ByteStringInternerMetrics {
+	/** Interner to instrument. */
+	private final ByteStringInterner interner;
+	/** Number of interned entries. */
+	private final Size size;
+	/** Intern count. */
+	private final InternCount internCount;
+	/** Hit count. */
+	private final HitCount hitCount;
+	/** Hit rate. */
+	private final HitRate hitRate;
+
+	/** Creates metrics for a {@link ByteStringInterner}. */
+	public static ByteStringInternerMetrics of(ByteStringInterner interner) {
+		return new ByteStringInternerMetrics(interner);
+	}
+
+	/** Constructor. */
+	private ByteStringInternerMetrics(ByteStringInterner interner) {
+		this.interner = checkNotNull(interner, "The interner to extract metrics from must be provided");
+		this.size = new Size();
+		this.internCount = new InternCount();
+		this.hitCount = new HitCount();
+		this.hitRate = new HitRate();
+	}
+
+	/** Registers the interner metrics in a registry. */
+	public ByteStringInternerMetrics register(MetricRegistry registry, String baseName) {
+		registry.register(name(baseName, "size"), size);
+		registry.register(name(baseName, "internCount"), internCount);
+		registry.register(name(baseName, "hitCount"), hitCount);
+		registry.register(name(baseName, "hitRate"), hitRate);
+		return this;
+	}
+
+	/** Number of interned entries. */
+	public Gauge<Long> getSize() {
+		return size;
+	}
+
+	/** Intern count. */
+	public Gauge<Long> getInternCount() {
+		return internCount;
+	}
+
+	/** Hit count. */
+	public Gauge<Long> getHitCount() {
+		return hitCount;
+	}
+
+	/** Hit rate. */
+	public Gauge<Double> getHitRate() {
+		return hitRate;
+	}
+
+	/** Number of interned entries. */
+	private class Size implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.size();
+		}
+	}
+
+	/** Intern count. */
+	private class InternCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.internCount();
+		}
+	}
+
+	/** Hit count. */
+	private class HitCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.hitCount();
+		}
+	}
+
+	/** Hit rate. */
+	private class HitRate implements Gauge<Double> {
+		@Override
+		public Double getValue() {
+			return interner.hitRate();
+		}
+	}
+
+}
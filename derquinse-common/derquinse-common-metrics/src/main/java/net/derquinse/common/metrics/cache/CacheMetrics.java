@@ -20,15 +20,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Supplier;
 import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
 
 /**
- * Metrics for a Guava {@link Cache}. The cache must record stats for the metrics to be useful.
+ * Metrics for a Guava {@link Cache}, or any other source of {@link CacheStats}. The cache must
+ * record stats for the metrics to be useful.
  * @author Andres Rodriguez
  */
 public final class CacheMetrics {
-	/** Cache to instrument. */
-	private final Cache<?, ?> cache;
+	/** Statistics to instrument. */
+	private final Supplier<CacheStats> stats;
 	/** Average load penalty. */
 	private final AverageLoadPenalty averageLoadPenalty;
 	/** Eviction Count. */
@@ -55,13 +58,24 @@ public final class CacheMetrics {
 	private final TotalLoadTime totalLoadTime;
 
 	/** Creates metrics for a {@link Cache} based on its statistics. */
-	public static CacheMetrics of(Cache<?, ?> cache) {
-		return new CacheMetrics(cache);
+	public static CacheMetrics of(final Cache<?, ?> cache) {
+		checkNotNull(cache, "The cache to extract metrics from must be provided");
+		return new CacheMetrics(new Supplier<CacheStats>() {
+			@Override
+			public CacheStats get() {
+				return cache.stats();
+			}
+		});
+	}
+
+	/** Creates metrics from a supplier of cache statistics. */
+	public static CacheMetrics of(Supplier<CacheStats> stats) {
+		return new CacheMetrics(stats);
 	}
 
 	/** Constructor. */
-	private CacheMetrics(Cache<?, ?> cache) {
-		this.cache = checkNotNull(cache, "The cache to extract metrics from must be provided");
+	private CacheMetrics(Supplier<CacheStats> stats) {
+		this.stats = checkNotNull(stats, "The statistics to extract metrics from must be provided");
 		this.averageLoadPenalty = new AverageLoadPenalty();
 		this.evictionCount = new EvictionCount();
 		this.hitCount = new HitCount();
@@ -157,7 +171,7 @@ public final class CacheMetrics {
 	private class AverageLoadPenalty implements Gauge<Double> {
 		@Override
 		public Double getValue() {
-			return cache.stats().averageLoadPenalty();
+			return stats.get().averageLoadPenalty();
 		}
 	}
 
@@ -165,7 +179,7 @@ public final class CacheMetrics {
 	private class EvictionCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().evictionCount();
+			return stats.get().evictionCount();
 		}
 	}
 
@@ -173,7 +187,7 @@ public final class CacheMetrics {
 	private class HitCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().hitCount();
+			return stats.get().hitCount();
 		}
 	}
 
@@ -181,7 +195,7 @@ public final class CacheMetrics {
 	private class HitRate implements Gauge<Double> {
 		@Override
 		public Double getValue() {
-			return cache.stats().hitRate();
+			return stats.get().hitRate();
 		}
 	}
 
@@ -189,7 +203,7 @@ public final class CacheMetrics {
 	private class LoadCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().loadCount();
+			return stats.get().loadCount();
 		}
 	}
 
@@ -197,7 +211,7 @@ public final class CacheMetrics {
 	private class LoadExceptionCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().loadExceptionCount();
+			return stats.get().loadExceptionCount();
 		}
 	}
 
@@ -205,7 +219,7 @@ public final class CacheMetrics {
 	private class LoadExceptionRate implements Gauge<Double> {
 		@Override
 		public Double getValue() {
-			return cache.stats().loadExceptionRate();
+			return stats.get().loadExceptionRate();
 		}
 	}
 
@@ -213,7 +227,7 @@ public final class CacheMetrics {
 	private class LoadSuccessCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().loadSuccessCount();
+			return stats.get().loadSuccessCount();
 		}
 	}
 
@@ -221,7 +235,7 @@ public final class CacheMetrics {
 	private class MissCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().missCount();
+			return stats.get().missCount();
 		}
 	}
 
@@ -229,7 +243,7 @@ public final class CacheMetrics {
 	private class MissRate implements Gauge<Double> {
 		@Override
 		public Double getValue() {
-			return cache.stats().missRate();
+			return stats.get().missRate();
 		}
 	}
 
@@ -237,7 +251,7 @@ public final class CacheMetrics {
 	private class RequestCount implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().requestCount();
+			return stats.get().requestCount();
 		}
 	}
 
@@ -245,7 +259,7 @@ public final class CacheMetrics {
 	private class TotalLoadTime implements Gauge<Long> {
 		@Override
 		public Long getValue() {
-			return cache.stats().totalLoadTime();
+			return stats.get().totalLoadTime();
 		}
 	}
 
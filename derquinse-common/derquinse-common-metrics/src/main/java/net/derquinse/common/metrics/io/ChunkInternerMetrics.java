@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.io.ChunkInterner;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics for a {@link ChunkInterner}.
+ * @author Andres Rodriguez
+ */
+public final class ChunkInternerMetrics {
+	/** Interner to instrument. */
+	private final ChunkInterner interner;
+	/** Number of tracked chunks. */
+	private final Size size;
+	/** Interned chunks. */
+	private final ChunkCount chunkCount;
+	/** Interned bytes. */
+	private final ByteCount byteCount;
+	/** Reused chunks. */
+	private final ReusedChunkCount reusedChunkCount;
+	/** Reused bytes. */
+	private final ReusedByteCount reusedByteCount;
+	/** Dedup ratio. */
+	private final DedupRatio dedupRatio;
+
+	/** Creates metrics for a {@link ChunkInterner}. */
+	public static ChunkInternerMetrics of(ChunkInterner interner) {
+		return new ChunkInternerMetrics(interner);
+	}
+
+	/** Constructor. */
+	private ChunkInternerMetrics(ChunkInterner interner) {
+		this.interner = checkNotNull(interner, "The interner to extract metrics from must be provided");
+		this.size = new Size();
+		this.chunkCount = new ChunkCount();
+		this.byteCount = new ByteCount();
+		this.reusedChunkCount = new ReusedChunkCount();
+		this.reusedByteCount = new ReusedByteCount();
+		this.dedupRatio = new DedupRatio();
+	}
+
+	/** Registers the interner metrics in a registry. */
+	public ChunkInternerMetrics register(MetricRegistry registry, String baseName) {
+		registry.register(name(baseName, "size"), size);
+		registry.register(name(baseName, "chunkCount"), chunkCount);
+		registry.register(name(baseName, "byteCount"), byteCount);
+		registry.register(name(baseName, "reusedChunkCount"), reusedChunkCount);
+		registry.register(name(baseName, "reusedByteCount"), reusedByteCount);
+		registry.register(name(baseName, "dedupRatio"), dedupRatio);
+		return this;
+	}
+
+	/** Number of tracked chunks. */
+	public Gauge<Long> getSize() {
+		return size;
+	}
+
+	/** Interned chunks. */
+	public Gauge<Long> getChunkCount() {
+		return chunkCount;
+	}
+
+	/** Interned bytes. */
+	public Gauge<Long> getByteCount() {
+		return byteCount;
+	}
+
+	/** Reused chunks. */
+	public Gauge<Long> getReusedChunkCount() {
+		return reusedChunkCount;
+	}
+
+	/** Reused bytes. */
+	public Gauge<Long> getReusedByteCount() {
+		return reusedByteCount;
+	}
+
+	/** Dedup ratio. */
+	public Gauge<Double> getDedupRatio() {
+		return dedupRatio;
+	}
+
+	/** Number of tracked chunks. */
+	private class Size implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.size();
+		}
+	}
+
+	/** Interned chunks. */
+	private class ChunkCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.chunkCount();
+		}
+	}
+
+	/** Interned bytes. */
+	private class ByteCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.byteCount();
+		}
+	}
+
+	/** Reused chunks. */
+	private class ReusedChunkCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.reusedChunkCount();
+		}
+	}
+
+	/** Reused bytes. */
+	private class ReusedByteCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return interner.reusedByteCount();
+		}
+	}
+
+	/** Dedup ratio. */
+	private class DedupRatio implements Gauge<Double> {
+		@Override
+		public Double getValue() {
+			return interner.dedupRatio();
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.io.DirectMemoryTracker;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics for a {@link DirectMemoryTracker}.
+ * @author Andres Rodriguez
+ */
+public final class DirectMemoryMetrics {
+	/** Tracker to instrument. */
+	private final DirectMemoryTracker tracker;
+	/** Live bytes. */
+	private final LiveBytes liveBytes;
+	/** Live sources. */
+	private final LiveSources liveSources;
+	/** Allocation count. */
+	private final AllocationCount allocationCount;
+	/** Disposed count. */
+	private final DisposedCount disposedCount;
+	/** Leak count. */
+	private final LeakCount leakCount;
+
+	/** Creates metrics for a {@link DirectMemoryTracker}. */
+	public static DirectMemoryMetrics of(DirectMemoryTracker tracker) {
+		return new DirectMemoryMetrics(tracker);
+	}
+
+	/** Constructor. */
+	private DirectMemoryMetrics(DirectMemoryTracker tracker) {
+		this.tracker = checkNotNull(tracker, "The tracker to extract metrics from must be provided");
+		this.liveBytes = new LiveBytes();
+		this.liveSources = new LiveSources();
+		this.allocationCount = new AllocationCount();
+		this.disposedCount = new DisposedCount();
+		this.leakCount = new LeakCount();
+	}
+
+	/** Registers the tracker metrics in a registry. */
+	public DirectMemoryMetrics register(MetricRegistry registry, String baseName) {
+		registry.register(name(baseName, "liveBytes"), liveBytes);
+		registry.register(name(baseName, "liveSources"), liveSources);
+		registry.register(name(baseName, "allocationCount"), allocationCount);
+		registry.register(name(baseName, "disposedCount"), disposedCount);
+		registry.register(name(baseName, "leakCount"), leakCount);
+		return this;
+	}
+
+	/** Live bytes. */
+	public Gauge<Long> getLiveBytes() {
+		return liveBytes;
+	}
+
+	/** Live sources. */
+	public Gauge<Long> getLiveSources() {
+		return liveSources;
+	}
+
+	/** Allocation count. */
+	public Gauge<Long> getAllocationCount() {
+		return allocationCount;
+	}
+
+	/** Disposed count. */
+	public Gauge<Long> getDisposedCount() {
+		return disposedCount;
+	}
+
+	/** Leak count. */
+	public Gauge<Long> getLeakCount() {
+		return leakCount;
+	}
+
+	/** Live bytes. */
+	private class LiveBytes implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return tracker.liveBytes();
+		}
+	}
+
+	/** Live sources. */
+	private class LiveSources implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return tracker.liveSources();
+		}
+	}
+
+	/** Allocation count. */
+	private class AllocationCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return tracker.allocationCount();
+		}
+	}
+
+	/** Disposed count. */
+	private class DisposedCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return tracker.disposedCount();
+		}
+	}
+
+	/** Leak count, polling the tracker for new leaks. */
+	private class LeakCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			tracker.poll();
+			return tracker.leakCount();
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.io.MemoryByteSourceCache;
+import net.derquinse.common.metrics.cache.CacheMetrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Supplier;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Metrics for a {@link MemoryByteSourceCache}.
+ * @author Andres Rodriguez
+ */
+public final class MemoryByteSourceCacheMetrics {
+	/** Cache to instrument. */
+	private final MemoryByteSourceCache cache;
+	/** Metrics based on the cache statistics. */
+	private final CacheMetrics cacheMetrics;
+	/** Number of cached files. */
+	private final Size size;
+	/** Changed count. */
+	private final ChangedCount changedCount;
+
+	/** Creates metrics for a {@link MemoryByteSourceCache}. */
+	public static MemoryByteSourceCacheMetrics of(MemoryByteSourceCache cache) {
+		return new MemoryByteSourceCacheMetrics(cache);
+	}
+
+	/** Constructor. */
+	private MemoryByteSourceCacheMetrics(MemoryByteSourceCache cache) {
+		this.cache = checkNotNull(cache, "The cache to extract metrics from must be provided");
+		this.cacheMetrics = CacheMetrics.of(new Stats());
+		this.size = new Size();
+		this.changedCount = new ChangedCount();
+	}
+
+	/** Registers the cache metrics in a registry. */
+	public MemoryByteSourceCacheMetrics register(MetricRegistry registry, String baseName) {
+		cacheMetrics.register(registry, baseName);
+		registry.register(name(baseName, "size"), size);
+		registry.register(name(baseName, "changedCount"), changedCount);
+		return this;
+	}
+
+	/** Metrics based on the cache statistics. */
+	public CacheMetrics getCacheMetrics() {
+		return cacheMetrics;
+	}
+
+	/** Number of cached files. */
+	public Gauge<Long> getSize() {
+		return size;
+	}
+
+	/** Number of entries removed because the file had changed. */
+	public Gauge<Long> getChangedCount() {
+		return changedCount;
+	}
+
+	/** Cache statistics. */
+	private class Stats implements Supplier<CacheStats> {
+		@Override
+		public CacheStats get() {
+			return cache.stats();
+		}
+	}
+
+	/** Number of cached files. */
+	private class Size implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return cache.size();
+		}
+	}
+
+	/** Changed count. */
+	private class ChangedCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return cache.changedCount();
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.io.MemoryContentStore;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics for a {@link MemoryContentStore}.
+ * @author Andres Rodriguez
+ */
+public final class MemoryContentStoreMetrics {
+	/** Store to instrument. */
+	private final MemoryContentStore store;
+	/** Number of entries. */
+	private final Size size;
+	/** Stored bytes. */
+	private final Weight weight;
+	/** Resident bytes. */
+	private final ResidentWeight residentWeight;
+	/** Put count. */
+	private final PutCount putCount;
+	/** Dedup count. */
+	private final DedupCount dedupCount;
+	/** Dedup rate. */
+	private final DedupRate dedupRate;
+	/** Hit rate. */
+	private final HitRate hitRate;
+	/** Eviction count. */
+	private final EvictionCount evictionCount;
+
+	/** Creates metrics for a {@link MemoryContentStore}. */
+	public static MemoryContentStoreMetrics of(MemoryContentStore store) {
+		return new MemoryContentStoreMetrics(store);
+	}
+
+	/** Constructor. */
+	private MemoryContentStoreMetrics(MemoryContentStore store) {
+		this.store = checkNotNull(store, "The store to extract metrics from must be provided");
+		this.size = new Size();
+		this.weight = new Weight();
+		this.residentWeight = new ResidentWeight();
+		this.putCount = new PutCount();
+		this.dedupCount = new DedupCount();
+		this.dedupRate = new DedupRate();
+		this.hitRate = new HitRate();
+		this.evictionCount = new EvictionCount();
+	}
+
+	/** Registers the store metrics in a registry. */
+	public MemoryContentStoreMetrics register(MetricRegistry registry, String baseName) {
+		registry.register(name(baseName, "size"), size);
+		registry.register(name(baseName, "weight"), weight);
+		registry.register(name(baseName, "residentWeight"), residentWeight);
+		registry.register(name(baseName, "putCount"), putCount);
+		registry.register(name(baseName, "dedupCount"), dedupCount);
+		registry.register(name(baseName, "dedupRate"), dedupRate);
+		registry.register(name(baseName, "hitRate"), hitRate);
+		registry.register(name(baseName, "evictionCount"), evictionCount);
+		return this;
+	}
+
+	/** Number of entries. */
+	public Gauge<Long> getSize() {
+		return size;
+	}
+
+	/** Stored bytes. */
+	public Gauge<Long> getWeight() {
+		return weight;
+	}
+
+	/** Stored bytes, including evicted entries that are still referenced. */
+	public Gauge<Long> getResidentWeight() {
+		return residentWeight;
+	}
+
+	/** Put count. */
+	public Gauge<Long> getPutCount() {
+		return putCount;
+	}
+
+	/** Dedup count. */
+	public Gauge<Long> getDedupCount() {
+		return dedupCount;
+	}
+
+	/** Dedup rate. */
+	public Gauge<Double> getDedupRate() {
+		return dedupRate;
+	}
+
+	/** Hit rate. */
+	public Gauge<Double> getHitRate() {
+		return hitRate;
+	}
+
+	/** Eviction count. */
+	public Gauge<Long> getEvictionCount() {
+		return evictionCount;
+	}
+
+	/** Number of entries. */
+	private class Size implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return store.size();
+		}
+	}
+
+	/** Stored bytes. */
+	private class Weight implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return store.weight();
+		}
+	}
+
+	/** Resident bytes. */
+	private class ResidentWeight implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return store.residentWeight();
+		}
+	}
+
+	/** Put count. */
+	private class PutCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return store.putCount();
+		}
+	}
+
+	/** Dedup count. */
+	private class DedupCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return store.dedupCount();
+		}
+	}
+
+	/** Dedup rate. */
+	private class DedupRate implements Gauge<Double> {
+		@Override
+		public Double getValue() {
+			return store.dedupRate();
+		}
+	}
+
+	/** Hit rate. */
+	private class HitRate implements Gauge<Double> {
+		@Override
+		public Double getValue() {
+			return store.stats().hitRate();
+		}
+	}
+
+	/** Eviction count. */
+	private class EvictionCount implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return store.stats().evictionCount();
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.util.concurrent;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.util.concurrent.SwappableRef;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics for a {@link SwappableRef}.
+ * @author Andres Rodriguez
+ */
+public final class SwappableRefMetrics {
+	/** Reference to instrument. */
+	private final SwappableRef<?> ref;
+	/** Current generation. */
+	private final Generation generation;
+	/** Alive generations. */
+	private final AliveGenerations aliveGenerations;
+	/** Active references to the current value. */
+	private final Count count;
+
+	/** Creates metrics for a {@link SwappableRef}. */
+	public static SwappableRefMetrics of(SwappableRef<?> ref) {
+		return new SwappableRefMetrics(ref);
+	}
+
+	/** Constructor. */
+	private SwappableRefMetrics(SwappableRef<?> ref) {
+		this.ref = checkNotNull(ref, "The reference to extract metrics from must be provided");
+		this.generation = new Generation();
+		this.aliveGenerations = new AliveGenerations();
+		this.count = new Count();
+	}
+
+	/** Registers the reference metrics in a registry. */
+	public SwappableRefMetrics register(MetricRegistry registry, String baseName) {
+		registry.register(name(baseName, "generation"), generation);
+		registry.register(name(baseName, "aliveGenerations"), aliveGenerations);
+		registry.register(name(baseName, "count"), count);
+		return this;
+	}
+
+	/** Current generation. */
+	public Gauge<Long> getGeneration() {
+		return generation;
+	}
+
+	/** Alive generations. */
+	public Gauge<Integer> getAliveGenerations() {
+		return aliveGenerations;
+	}
+
+	/** Active references to the current value. */
+	public Gauge<Integer> getCount() {
+		return count;
+	}
+
+	/** Current generation. */
+	private class Generation implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return ref.getGeneration();
+		}
+	}
+
+	/** Alive generations. */
+	private class AliveGenerations implements Gauge<Integer> {
+		@Override
+		public Integer getValue() {
+			return ref.getAliveGenerations();
+		}
+	}
+
+	/** Active references to the current value. */
+	private class Count implements Gauge<Integer> {
+		@Override
+		public Integer getValue() {
+			return ref.getCount();
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.util.concurrent;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkNotNull;
+import net.derquinse.common.util.concurrent.WindowedLongWaterMark;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Metrics for a {@link WindowedLongWaterMark}.
+ * @author Andres Rodriguez
+ */
+public final class WindowedLongWaterMarkMetrics {
+	/** Watermark to instrument. */
+	private final WindowedLongWaterMark watermark;
+	/** Current value. */
+	private final Current current;
+	/** Minimum value in the window. */
+	private final WindowMin windowMin;
+	/** Maximum value in the window. */
+	private final WindowMax windowMax;
+
+	/** Creates metrics for a {@link WindowedLongWaterMark}. */
+	public static WindowedLongWaterMarkMetrics of(WindowedLongWaterMark watermark) {
+		return new WindowedLongWaterMarkMetrics(watermark);
+	}
+
+	/** Constructor. */
+	private WindowedLongWaterMarkMetrics(WindowedLongWaterMark watermark) {
+		this.watermark = checkNotNull(watermark, "The watermark to extract metrics from must be provided");
+		this.current = new Current();
+		this.windowMin = new WindowMin();
+		this.windowMax = new WindowMax();
+	}
+
+	/** Registers the watermark metrics in a registry. */
+	public WindowedLongWaterMarkMetrics register(MetricRegistry registry, String baseName) {
+		registry.register(name(baseName, "current"), current);
+		registry.register(name(baseName, "windowMin"), windowMin);
+		registry.register(name(baseName, "windowMax"), windowMax);
+		return this;
+	}
+
+	/** Current value. */
+	public Gauge<Long> getCurrent() {
+		return current;
+	}
+
+	/** Minimum value in the window. */
+	public Gauge<Long> getWindowMin() {
+		return windowMin;
+	}
+
+	/** Maximum value in the window. */
+	public Gauge<Long> getWindowMax() {
+		return windowMax;
+	}
+
+	/** Current value. */
+	private class Current implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return watermark.current();
+		}
+	}
+
+	/** Minimum value in the window. */
+	private class WindowMin implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return watermark.getWindowMin();
+		}
+	}
+
+	/** Maximum value in the window. */
+	private class WindowMax implements Gauge<Long> {
+		@Override
+		public Long getValue() {
+			return watermark.getWindowMax();
+		}
+	}
+
+}
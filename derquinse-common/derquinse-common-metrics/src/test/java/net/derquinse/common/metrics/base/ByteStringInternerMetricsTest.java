@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.base;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map.Entry;
+
+import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.ByteStringInterner;
+import net.derquinse.common.base.ByteStrings;
+import net.derquinse.common.base.Digests;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tests for ByteStringInternerMetrics.
+ * @author Andres Rodriguez
+ */
+public class ByteStringInternerMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		ByteStringInterner interner = ByteStrings.interner();
+		ByteString s1 = interner.intern(Digests.sha1(new byte[] { 1, 2, 3 }));
+		ByteString s2 = interner.intern(Digests.sha1(new byte[] { 1, 2, 3 }));
+		MetricRegistry metrics = new MetricRegistry();
+		ByteStringInternerMetrics.of(interner).register(metrics, "interner");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("interner.hitRate").getValue(), 0.5);
+		assertEquals(metrics.getGauges().get("interner.size").getValue(), 1L);
+		assertEquals(s1, s2);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map.Entry;
+
+import net.derquinse.common.io.ChunkInterner;
+import net.derquinse.common.io.MemoryByteSource;
+import net.derquinse.common.io.MemoryByteSourceLoader;
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteSource;
+
+/**
+ * Tests for ChunkInternerMetrics.
+ * @author Andres Rodriguez
+ */
+public class ChunkInternerMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		ChunkInterner interner = ChunkInterner.of();
+		MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().chunkSize(1024).interner(interner);
+		ByteSource data = RandomSupport.getSource(10240);
+		MemoryByteSource s1 = loader.load(data);
+		MemoryByteSource s2 = loader.load(data);
+		MetricRegistry metrics = new MetricRegistry();
+		ChunkInternerMetrics.of(interner).register(metrics, "interner");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("interner.dedupRatio").getValue(), 0.5);
+		assertEquals(s1.read(), s2.read());
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map.Entry;
+
+import net.derquinse.common.io.DirectMemoryTracker;
+import net.derquinse.common.io.DisposableByteSource;
+import net.derquinse.common.io.MemoryByteSourceLoader;
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tests for DirectMemoryMetrics.
+ * @author Andres Rodriguez
+ */
+public class DirectMemoryMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		DirectMemoryTracker tracker = DirectMemoryTracker.of(0);
+		MemoryByteSourceLoader loader = MemoryByteSourceLoader.get().direct(true).disposable(tracker);
+		DisposableByteSource s1 = (DisposableByteSource) loader.load(RandomSupport.getSource(1000));
+		DisposableByteSource s2 = (DisposableByteSource) loader.load(RandomSupport.getSource(2000));
+		s1.dispose();
+		MetricRegistry metrics = new MetricRegistry();
+		DirectMemoryMetrics.of(tracker).register(metrics, "direct");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("direct.liveBytes").getValue(), 2000L);
+		assertEquals(metrics.getGauges().get("direct.disposedCount").getValue(), 1L);
+		s2.dispose();
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Map.Entry;
+
+import net.derquinse.common.io.MemoryByteSourceCache;
+import net.derquinse.common.io.MemoryByteSourceLoader;
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.Files;
+
+/**
+ * Tests for MemoryByteSourceCacheMetrics.
+ * @author Andres Rodriguez
+ */
+public class MemoryByteSourceCacheMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		MemoryByteSourceCache cache = MemoryByteSourceCache.builder(MemoryByteSourceLoader.get()).build();
+		for (int i = 0; i < 10; i++) {
+			File file = File.createTempFile("mbscm", ".bin");
+			file.deleteOnExit();
+			Files.write(RandomSupport.getBytes(1000), file);
+			cache.get(file);
+			cache.get(file);
+		}
+		MetricRegistry metrics = new MetricRegistry();
+		MemoryByteSourceCacheMetrics.of(cache).register(metrics, "cache");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("cache.size").getValue(), 10L);
+		assertEquals(metrics.getGauges().get("cache.hitRate").getValue(), 0.5);
+		assertEquals(metrics.getGauges().get("cache.changedCount").getValue(), 0L);
+	}
+}
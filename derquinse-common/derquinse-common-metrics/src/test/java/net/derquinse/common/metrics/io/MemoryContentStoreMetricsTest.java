@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.io;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map.Entry;
+
+import net.derquinse.common.io.MemoryByteSourceLoader;
+import net.derquinse.common.io.MemoryContentStore;
+import net.derquinse.common.test.RandomSupport;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteSource;
+
+/**
+ * Tests for MemoryContentStoreMetrics.
+ * @author Andres Rodriguez
+ */
+public class MemoryContentStoreMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		MemoryContentStore store = MemoryContentStore.of(MemoryByteSourceLoader.get(), 1024 * 1024);
+		for (int i = 0; i < 100; i++) {
+			ByteSource data = RandomSupport.getSource(1000);
+			store.put(data);
+			store.put(data);
+		}
+		MetricRegistry metrics = new MetricRegistry();
+		MemoryContentStoreMetrics.of(store).register(metrics, "store");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("store.dedupRate").getValue(), 0.5);
+	}
+}
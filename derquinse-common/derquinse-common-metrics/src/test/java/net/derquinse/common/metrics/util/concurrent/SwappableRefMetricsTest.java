@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.util.concurrent;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map.Entry;
+
+import net.derquinse.common.base.Disposable;
+import net.derquinse.common.util.concurrent.SwappableRef;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tests for SwappableRefMetrics.
+ * @author Andres Rodriguez
+ */
+public class SwappableRefMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		final SwappableRef<String> ref = SwappableRef.of("v1");
+		final Disposable<String> d = ref.get();
+		ref.swap("v2");
+		ref.get();
+		MetricRegistry metrics = new MetricRegistry();
+		SwappableRefMetrics.of(ref).register(metrics, "config");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("config.generation").getValue(), 2L);
+		assertEquals(metrics.getGauges().get("config.aliveGenerations").getValue(), 2);
+		assertEquals(metrics.getGauges().get("config.count").getValue(), 1);
+		d.dispose();
+		assertEquals(metrics.getGauges().get("config.aliveGenerations").getValue(), 1);
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.derquinse.common.metrics.util.concurrent;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import net.derquinse.common.util.concurrent.WindowedLongWaterMark;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Tests for WindowedLongWaterMarkMetrics.
+ * @author Andres Rodriguez
+ */
+public class WindowedLongWaterMarkMetricsTest {
+	/** Register metrics. */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void register() throws Exception {
+		final WindowedLongWaterMark watermark = WindowedLongWaterMark.of(1L, TimeUnit.MINUTES);
+		watermark.add(5L);
+		watermark.add(-7L);
+		MetricRegistry metrics = new MetricRegistry();
+		WindowedLongWaterMarkMetrics.of(watermark).register(metrics, "requests");
+		for (Entry<String, Gauge> entry : metrics.getGauges().entrySet()) {
+			System.out.printf("%s - %s\n", entry.getKey(), entry.getValue().getValue());
+		}
+		assertEquals(metrics.getGauges().get("requests.current").getValue(), -2L);
+		assertEquals(metrics.getGauges().get("requests.windowMin").getValue(), -2L);
+		assertEquals(metrics.getGauges().get("requests.windowMax").getValue(), 5L);
+	}
+}
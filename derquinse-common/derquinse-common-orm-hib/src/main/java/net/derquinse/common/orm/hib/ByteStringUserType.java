@@ -21,12 +21,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 
+import javax.annotation.Nullable;
+
 import net.derquinse.common.base.ByteString;
+import net.derquinse.common.base.ByteStrings;
 
 import org.hibernate.HibernateException;
 import org.hibernate.usertype.UserType;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Interner;
 
 /**
  * An hibernate user type representing a ByteString as a byte array.
@@ -41,8 +45,22 @@ public class ByteStringUserType implements UserType {
 		return new String[] { ByteStringUserType.class.getName() };
 	}
 
+	/** Interner for read values, if any. */
+	@Nullable
+	private final Interner<ByteString> interner;
+
 	/** Default constructor. */
 	public ByteStringUserType() {
+		this(null);
+	}
+
+	/**
+	 * Constructor.
+	 * @param interner Interner for read values (e.g. {@link ByteStrings#interner()}). If {@code null}
+	 *          values are not interned.
+	 */
+	public ByteStringUserType(@Nullable Interner<ByteString> interner) {
+		this.interner = interner;
 	}
 
 	@Override
@@ -73,7 +91,11 @@ public class ByteStringUserType implements UserType {
 	@Override
 	public Object nullSafeGet(ResultSet rs, String[] names, Object owner) throws HibernateException, SQLException {
 		final byte[] bytes = rs.getBytes(names[0]);
-		return bytes == null ? null : ByteString.copyFrom(bytes);
+		if (bytes == null) {
+			return null;
+		}
+		final ByteString value = ByteString.copyFrom(bytes);
+		return interner != null ? interner.intern(value) : value;
 	}
 
 	/*